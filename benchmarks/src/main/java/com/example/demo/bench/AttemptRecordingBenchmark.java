@@ -0,0 +1,94 @@
+package com.example.demo.bench;
+
+import com.example.demo.Question;
+import com.example.demo.Quiz;
+import com.example.demo.QuizEngine;
+import com.example.demo.QuizSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Full take-quiz path through QuizEngine: start a session, answer every
+// question and finish, which records the attempt in the store, indexes and
+// leaderboard through the ingest pipeline. Run with -t to change the thread
+// count beyond the variants here.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AttemptRecordingBenchmark {
+    @Param({"100", "10000"})
+    int userCount;
+
+    @Param({"10"})
+    int questionsPerQuiz;
+
+    private QuizEngine engine;
+    private Quiz quiz;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new QuizEngine();
+        quiz = engine.createQuiz("Benchmark Quiz");
+        for (int i = 0; i < questionsPerQuiz; i++) {
+            quiz = engine.addQuestion(quiz, new Question("Question " + i,
+                    Arrays.asList("A", "B", "C", "D"), Arrays.asList(i % 4)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object recordAttempt() {
+        return takeQuiz();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object recordAttemptContended() {
+        return takeQuiz();
+    }
+
+    // Submit path only: the attempt is enqueued on the ingest pipeline and not
+    // waited for, so this measures what a caller pays when the ring has room.
+    @Benchmark
+    @Threads(8)
+    public Object recordAttemptEnqueueOnly() {
+        return engine.finishAsync(answerQuiz().getId());
+    }
+
+    private Object takeQuiz() {
+        return engine.finish(answerQuiz().getId());
+    }
+
+    private QuizSession answerQuiz() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        QuizSession session = engine.startSession("user" + random.nextInt(userCount), quiz);
+        for (int i = 0; i < questionsPerQuiz; i++) {
+            engine.submitAnswer(session.getId(), 1L << random.nextInt(4));
+        }
+        return session;
+    }
+}
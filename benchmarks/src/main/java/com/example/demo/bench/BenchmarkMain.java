@@ -0,0 +1,20 @@
+package com.example.demo.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Entry point of benchmarks.jar. Accepts the usual JMH command line and always
+// adds the GC profiler, so every run reports allocation rate per operation
+// (gc.alloc.rate.norm) next to the timings.
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.bench;
+
+import com.example.demo.DuplicateDetector;
+import com.example.demo.Question;
+import com.example.demo.Quiz;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Batch near-duplicate pass over a generated bank at several pool sizes;
+// one question in a hundred is an edited copy of an earlier one. Compare
+// the parallelism rows for scaling, on a machine with that many cores.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DuplicateBenchmark {
+    @Param({"1000000"})
+    int questionCount;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    private List<Quiz> quizzes;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] vocabulary = new String[30_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            char[] word = new char[3 + random.nextInt(7)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            vocabulary[i] = new String(word);
+        }
+        List<Question> questions = new ArrayList<>(questionCount);
+        for (int i = 0; i < questionCount; i++) {
+            if (i > 0 && i % 100 == 0) {
+                Question source = questions.get(random.nextInt(i));
+                String[] words = source.getTitle().split(" ");
+                words[random.nextInt(words.length)] = vocabulary[random.nextInt(vocabulary.length)];
+                questions.add(new Question(String.join(" ", words), source.getOptions(), Arrays.asList(0)));
+                continue;
+            }
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < 12; w++) {
+                title.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+            }
+            questions.add(new Question(title.toString().trim() + "?", Arrays.asList(
+                    vocabulary[random.nextInt(vocabulary.length)], vocabulary[random.nextInt(vocabulary.length)],
+                    vocabulary[random.nextInt(vocabulary.length)]), Arrays.asList(0)));
+        }
+        quizzes = new ArrayList<>();
+        for (int from = 0; from < questionCount; from += 50_000) {
+            quizzes.add(new Quiz("Quiz " + from, questions.subList(from, Math.min(questionCount, from + 50_000))));
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<List<DuplicateDetector.Match>> findGroups() {
+        return DuplicateDetector.findGroups(quizzes, DuplicateDetector.DEFAULT_THRESHOLD, pool);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.bench;
+
+import com.example.demo.Question;
+import com.example.demo.Quiz;
+import com.example.demo.QuizAttempt;
+import com.example.demo.QuizEngine;
+import com.example.demo.QuizSession;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+// Retained heap per attempt, per session and per question, measured with JOL
+// by walking the object graph, so the numbers follow the JVM's real layout
+// (compressed oops, alignment) rather than estimates. Each username arrives
+// as its own String, as it does when parsed from a login request; quiz
+// titles are shared through the Quiz. Objects shared by every instance (the
+// quiz, its questions, interned names) are excluded, so what is left is the
+// cost that grows with load.
+//
+// Attempts and sessions are checked against the sizes QuizAttempt and
+// QuizSession document, and the run exits with status 1 when either is
+// exceeded, so a field added without updating the budget fails the check.
+//
+//   java -cp benchmarks.jar com.example.demo.bench.FootprintReport [count]
+public class FootprintReport {
+    private static final int USERS = 1000;
+    private static final int QUESTIONS = 20;
+    // Documented in QuizAttempt and QuizSession, for a 20-question quiz
+    static final double ATTEMPT_BYTES = 40;
+    static final double STARTED_SESSION_BYTES = 640;
+    static final double FINISHED_SESSION_BYTES = 680;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        System.out.println(VM.current().details());
+        System.out.println(ClassLayout.parseClass(QuizAttempt.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(QuizSession.class).toPrintable());
+
+        Quiz quiz = new Quiz("Footprint", questions(QUESTIONS));
+        QuizAttempt[] attempts = new QuizAttempt[count];
+        for (int i = 0; i < count; i++) {
+            attempts[i] = new QuizAttempt(freshUsername(i), quiz.getTitle(), i % (QUESTIONS + 1), QUESTIONS);
+        }
+        boolean withinBudget = report("attempt", attempts, quiz, ATTEMPT_BYTES, count);
+        System.out.println(GraphLayout.parseInstance((Object) attempts[0]).toFootprint());
+
+        try (QuizEngine engine = new QuizEngine()) {
+            QuizSession[] sessions = new QuizSession[count];
+            for (int i = 0; i < count; i++) {
+                sessions[i] = engine.startSession(freshUsername(i), quiz, i);
+            }
+            withinBudget &= report("session, started", sessions, quiz, STARTED_SESSION_BYTES, count);
+            System.out.println(GraphLayout.parseInstance((Object) sessions[0]).subtract(
+                    GraphLayout.parseInstance(quiz)).toFootprint());
+            for (int i = 0; i < count; i++) {
+                engine.finish(sessions[i].getId());
+            }
+            // Finished sessions stay live with their result for the expiry retention period
+            withinBudget &= report("session, finished", sessions, quiz, FINISHED_SESSION_BYTES, count);
+        }
+
+        Question[] questions = questions(count).toArray(new Question[0]);
+        report("question (4 options)", questions, null, Double.NaN, count);
+        System.out.println(GraphLayout.parseInstance((Object) questions[0]).toFootprint());
+        if (!withinBudget) {
+            System.out.println("Footprint over budget");
+            System.exit(1);
+        }
+    }
+
+    // Prints the bytes per instance and whether they fit the budget (NaN: none).
+    private static boolean report(String what, Object[] instances, Object shared, double budget, int count) {
+        GraphLayout graph = GraphLayout.parseInstance((Object) instances);
+        if (shared != null) {
+            graph = graph.subtract(GraphLayout.parseInstance(shared));
+        }
+        graph = graph.subtract(GraphLayout.parseInstance(internedNames(instances)));
+        long bytes = graph.totalSize() - VM.current().sizeOf(instances);
+        double each = (double) bytes / count;
+        boolean fits = !(each > budget);
+        System.out.printf("%-22s %8.1f bytes each (%d instances, %d objects)%s%n",
+                what, each, count, graph.totalCount() - 1,
+                Double.isNaN(budget) ? "" : String.format(", budget %.0f%s", budget, fits ? "" : " EXCEEDED"));
+        return fits;
+    }
+
+    // The intern tables' copies of the names the instances refer to, shared by all of them.
+    private static Object[] internedNames(Object[] instances) {
+        Set<String> names = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object instance : instances) {
+            if (instance instanceof QuizAttempt) {
+                names.add(((QuizAttempt) instance).getUsername());
+                names.add(((QuizAttempt) instance).getQuizTitle());
+            } else if (instance instanceof QuizSession) {
+                names.add(((QuizSession) instance).getUsername());
+            }
+        }
+        return names.toArray();
+    }
+
+    private static String freshUsername(int i) {
+        return new String("candidate-" + (i % USERS));
+    }
+
+    private static List<Question> questions(int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question("Question " + i,
+                    Arrays.asList("Option A" + i, "Option B" + i, "Option C" + i, "Option D" + i),
+                    Arrays.asList(i % 4)));
+        }
+        return questions;
+    }
+}
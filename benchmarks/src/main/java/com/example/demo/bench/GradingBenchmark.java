@@ -0,0 +1,83 @@
+package com.example.demo.bench;
+
+import com.example.demo.AnswerMask;
+import com.example.demo.Question;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Grading one submission the way the old submitButton handler did (collect
+// the checked indices into a List and compare) against the bitmask compare,
+// plus grading a whole attempt in one pass.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GradingBenchmark {
+    @Param({"10", "100"})
+    int questionsPerAttempt;
+
+    private Question question;
+    private boolean[] checked;
+    private List<Integer> legacyCorrectAnswers;
+    private long[] answerKey;
+    private long[] answers;
+
+    @Setup
+    public void setup() {
+        question = new Question("Pick the primes", Arrays.asList("2", "4", "5", "9"), Arrays.asList(0, 2));
+        checked = new boolean[] {true, false, true, false};
+        legacyCorrectAnswers = new ArrayList<>(Arrays.asList(0, 2));
+
+        Random random = new Random(42);
+        answerKey = new long[questionsPerAttempt];
+        answers = new long[questionsPerAttempt];
+        for (int i = 0; i < questionsPerAttempt; i++) {
+            answerKey[i] = 1L + random.nextInt(15);
+            answers[i] = random.nextBoolean() ? answerKey[i] : 1L + random.nextInt(15);
+        }
+    }
+
+    @Benchmark
+    public boolean legacyListEquals() {
+        List<Integer> selectedAnswers = new ArrayList<>();
+        for (int i = 0; i < checked.length; i++) {
+            if (checked[i]) {
+                selectedAnswers.add(i);
+            }
+        }
+        return selectedAnswers.equals(legacyCorrectAnswers);
+    }
+
+    @Benchmark
+    public boolean maskCompare() {
+        long selectedMask = 0;
+        for (int i = 0; i < checked.length; i++) {
+            if (checked[i]) {
+                selectedMask |= 1L << i;
+            }
+        }
+        return question.isCorrect(selectedMask);
+    }
+
+    @Benchmark
+    public int gradeWholeAttempt() {
+        return AnswerMask.grade(answerKey, answers);
+    }
+}
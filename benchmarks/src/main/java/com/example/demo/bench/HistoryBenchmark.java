@@ -0,0 +1,89 @@
+package com.example.demo.bench;
+
+import com.example.demo.AttemptStore;
+import com.example.demo.HistoryPager;
+import com.example.demo.QuizAttempt;
+import com.example.demo.QuizEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Building one user's history for showQuizHistory: materializing QuizAttempt
+// objects versus reading the store columns through the flyweight cursor,
+// versus opening the paged view, which formats only its first page.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+    @Param({"1000", "10000"})
+    int userCount;
+
+    @Param({"10", "1000"})
+    int attemptsPerUser;
+
+    private QuizEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        engine = new QuizEngine();
+        AttemptStore store = engine.getAttemptStore();
+        long now = System.currentTimeMillis();
+        for (int attempt = 0; attempt < attemptsPerUser; attempt++) {
+            for (int user = 0; user < userCount; user++) {
+                store.append("user" + user, "Quiz " + (attempt % 20), attempt % 11, 10, now + attempt);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.close();
+    }
+
+    @Benchmark
+    public List<QuizAttempt> materializeHistory() {
+        return engine.getHistory(randomUser());
+    }
+
+    @Benchmark
+    public long scanHistoryCursor() {
+        AttemptStore.Cursor cursor = engine.historyCursor(randomUser());
+        long total = 0;
+        while (cursor.next()) {
+            total += cursor.getScore() + cursor.getEpochMillis() + cursor.getQuizTitle().length();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public List<HistoryPager.Row> openFirstPage() {
+        return engine.historyPager(randomUser(), null, HistoryPager.Sort.NEWEST_FIRST, 50).getPage(0);
+    }
+
+    @Benchmark
+    public List<HistoryPager.Row> openSortedByScore() {
+        return engine.historyPager(randomUser(), null, HistoryPager.Sort.HIGHEST_SCORE, 50).getPage(0);
+    }
+
+    private String randomUser() {
+        return "user" + ThreadLocalRandom.current().nextInt(userCount);
+    }
+}
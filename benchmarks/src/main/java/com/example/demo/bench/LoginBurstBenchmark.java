@@ -0,0 +1,85 @@
+package com.example.demo.bench;
+
+import com.example.demo.Authenticator;
+import com.example.demo.PasswordHasher;
+import com.example.demo.QuizEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Login storm at exam start: many threads verifying passwords through the
+// bounded Authenticator pool. Sample mode reports latency percentiles;
+// logins shed by a full queue return at once and count as operations too.
+// tokenCheck is the path every later request takes once a token is issued.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoginBurstBenchmark {
+    private static final int USERS = 1000;
+
+    @Param({"10000", "100000"})
+    int hashIterations;
+
+    @Param({"64"})
+    int queueCapacity;
+
+    private Authenticator authenticator;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<String, String> credentials = new ConcurrentHashMap<>();
+        String hash = PasswordHasher.hash("password", hashIterations);
+        for (int i = 0; i < USERS; i++) {
+            credentials.put("user" + i, hash);
+        }
+        authenticator = new Authenticator(credentials::get, username -> QuizEngine.Role.USER,
+                Runtime.getRuntime().availableProcessors(), queueCapacity, Authenticator.DEFAULT_TOKEN_TTL_MILLIS);
+        token = authenticator.issueToken("user0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        authenticator.close();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object loginBurst() {
+        try {
+            return authenticator.verifyAsync("user" + ThreadLocalRandom.current().nextInt(USERS), "password").join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                return e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String tokenCheck() {
+        return authenticator.authenticate(token);
+    }
+}
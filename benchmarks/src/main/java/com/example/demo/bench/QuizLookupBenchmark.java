@@ -0,0 +1,59 @@
+package com.example.demo.bench;
+
+import com.example.demo.Quiz;
+import com.example.demo.QuizEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Finding a quiz by title and listing the catalog, as showTakeQuizDialog does.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuizLookupBenchmark {
+    @Param({"10", "1000"})
+    int quizCount;
+
+    private QuizEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new QuizEngine();
+        for (int i = 0; i < quizCount; i++) {
+            engine.createQuiz("Quiz " + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.close();
+    }
+
+    @Benchmark
+    public Quiz findQuiz() {
+        return engine.findQuiz("Quiz " + ThreadLocalRandom.current().nextInt(quizCount));
+    }
+
+    @Benchmark
+    public List<Quiz> listQuizzes() {
+        return engine.getQuizzes();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo;
+
+// Expected a posteriori (EAP) ability estimate over the IrtModel grid with a
+// standard normal prior. Each response adds its log-likelihood at every grid
+// point, so an update costs GRID_POINTS evaluations however many questions
+// have been answered. Not thread-safe; QuizSession guards it.
+final class AbilityEstimator {
+    private final double[] logPosterior = IrtModel.LOG_PRIOR.clone();
+    private double theta;
+    private double standardError = 1.0;
+
+    // An unanswered (timed out) question counts as incorrect.
+    void update(Question question, boolean correct) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int g = 0; g < IrtModel.GRID_POINTS; g++) {
+            double p = IrtModel.probability(question, IrtModel.theta(g));
+            // Keep away from log(0) for extreme items
+            p = Math.min(1 - 1e-12, Math.max(1e-12, p));
+            logPosterior[g] += Math.log(correct ? p : 1 - p);
+            max = Math.max(max, logPosterior[g]);
+        }
+        double weightSum = 0;
+        double mean = 0;
+        double squares = 0;
+        for (int g = 0; g < IrtModel.GRID_POINTS; g++) {
+            double weight = Math.exp(logPosterior[g] - max);
+            double point = IrtModel.theta(g);
+            weightSum += weight;
+            mean += weight * point;
+            squares += weight * point * point;
+        }
+        mean /= weightSum;
+        theta = mean;
+        standardError = Math.sqrt(Math.max(0, squares / weightSum - mean * mean));
+    }
+
+    double getTheta() {
+        return theta;
+    }
+
+    double getStandardError() {
+        return standardError;
+    }
+}
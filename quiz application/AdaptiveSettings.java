@@ -0,0 +1,36 @@
+package com.example.demo;
+
+// Makes a quiz adaptive: each next question is the most informative one at
+// the candidate's current ability estimate. The test stops once the estimate's
+// standard error reaches the target (after at least minQuestions), or after
+// maxQuestions. A target of 0 always runs to maxQuestions.
+public final class AdaptiveSettings {
+    private final int minQuestions;
+    private final int maxQuestions;
+    private final double targetStandardError;
+
+    public AdaptiveSettings(int minQuestions, int maxQuestions, double targetStandardError) {
+        if (minQuestions < 1 || maxQuestions < minQuestions) {
+            throw new IllegalArgumentException("Need 1 <= minimum <= maximum questions, got "
+                    + minQuestions + " and " + maxQuestions);
+        }
+        if (!(targetStandardError >= 0) || Double.isInfinite(targetStandardError)) {
+            throw new IllegalArgumentException("Target standard error cannot be negative: " + targetStandardError);
+        }
+        this.minQuestions = minQuestions;
+        this.maxQuestions = maxQuestions;
+        this.targetStandardError = targetStandardError;
+    }
+
+    public int getMinQuestions() {
+        return minQuestions;
+    }
+
+    public int getMaxQuestions() {
+        return maxQuestions;
+    }
+
+    public double getTargetStandardError() {
+        return targetStandardError;
+    }
+}
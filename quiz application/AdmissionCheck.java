@@ -0,0 +1,285 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Self-checking run of AdmissionController's queueing and shedding on a
+// simulated clock, so it needs no timing luck and takes milliseconds. Prints
+// one line per check and exits with status 1 if any fails; the seed (default
+// 1) drives the randomized arrivals and the retry jitter, and a run is
+// repeated to show the same seed gives the same outcome.
+//
+//   java -cp app.jar com.example.demo.AdmissionCheck [seed]
+public class AdmissionCheck {
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+    private int failures;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        AdmissionCheck check = new AdmissionCheck();
+        check.burst(seed);
+        check.clientRateLimit(seed);
+        check.loginKeys(seed);
+        check.fifoAndBackoff(seed);
+        check.waitTooLong(seed);
+        check.abandoned(seed);
+        check.randomArrivals(seed);
+        if (check.failures > 0) {
+            System.out.println(check.failures + " admission check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All admission checks passed");
+    }
+
+    // 100/s with a burst of 10, 2 per client, a queue of 20 and a fixed limit of 5.
+    private AdmissionController gate(long seed) {
+        now.set(0);
+        return new AdmissionController("check", 100, 10, 1, 2, 20, 1000, 100, 5, 5,
+                now::get, new SplittableRandom(seed));
+    }
+
+    private void check(String name, boolean passed, Object detail) {
+        System.out.println((passed ? "ok      " : "FAILED  ") + name + ": " + detail);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    // 40 clients at once: the limit admits 5, the queue holds 20 in arrival order, the rest are shed.
+    private void burst(long seed) {
+        AdmissionController gate = gate(seed);
+        List<AdmissionController.Ticket> tickets = new ArrayList<>();
+        int queueFull = 0;
+        for (int i = 0; i < 40; i++) {
+            try {
+                tickets.add(gate.enqueue("client-" + i));
+            } catch (AdmissionController.Rejection e) {
+                queueFull += e.getReason() == AdmissionController.Reason.QUEUE_FULL ? 1 : 0;
+            }
+        }
+        int admitted = 0;
+        boolean ordered = true;
+        for (int i = 0; i < tickets.size(); i++) {
+            if (tickets.get(i).poll()) {
+                admitted++;
+            } else {
+                ordered &= tickets.get(i).getPosition() == i - 4;
+            }
+        }
+        check("burst admits the limit", admitted == 5 && gate.getInFlight() == 5, admitted + " admitted");
+        check("burst queues in arrival order", gate.getQueueDepth() == 20 && ordered, gate.getQueueDepth() + " queued");
+        check("burst sheds past the queue", queueFull == 15, queueFull + " shed as queue full");
+        gate.close();
+    }
+
+    // A client over its own rate is told when its next token comes; others are unaffected.
+    private void clientRateLimit(long seed) {
+        AdmissionController gate = gate(seed);
+        gate.enqueue("alice").release();
+        gate.enqueue("alice").release();
+        long retryMillis = -1;
+        try {
+            gate.enqueue("alice");
+        } catch (AdmissionController.Rejection e) {
+            if (e.getReason() == AdmissionController.Reason.RATE_LIMITED) {
+                retryMillis = e.getRetryAfterMillis();
+            }
+        }
+        check("client over its rate is limited", retryMillis > 0 && retryMillis <= 1000,
+                "retry after " + retryMillis + " ms");
+        boolean otherAdmitted = gate.enqueue("bob").poll();
+        now.addAndGet(1000 * MILLI);
+        boolean refilled = gate.enqueue("alice").poll();
+        check("other clients and refilled buckets pass", otherAdmitted && refilled,
+                "bob " + otherAdmitted + ", alice after 1 s " + refilled);
+        gate.close();
+    }
+
+    // A hall behind one address signs in freely, while one username retried
+    // from another address is limited there without locking its owner out.
+    private void loginKeys(long seed) {
+        AdmissionController gate = gate(seed);
+        boolean hall = true;
+        for (int i = 0; i < 6; i++) {
+            AdmissionController.Ticket ticket = gate.enqueue(AdmissionController.loginKey("student-" + i, "10.0.0.1"));
+            hall &= ticket.poll();
+            ticket.release();
+        }
+        check("many users behind one address pass", hall, "6 logins from 10.0.0.1");
+        boolean attackerLimited = false;
+        for (int i = 0; i < 3 && !attackerLimited; i++) {
+            try {
+                gate.enqueue(AdmissionController.loginKey("student-0", "10.9.9.9")).release();
+            } catch (AdmissionController.Rejection e) {
+                attackerLimited = e.getReason() == AdmissionController.Reason.RATE_LIMITED;
+            }
+        }
+        // Past the global burst of 10, which is not what this checks
+        now.addAndGet(100 * MILLI);
+        AdmissionController.Ticket owner = gate.enqueue(AdmissionController.loginKey("student-0", "10.0.0.1"));
+        boolean ownerPasses = owner.poll();
+        owner.release();
+        check("guessing from elsewhere limits only the guesser", attackerLimited && ownerPasses,
+                "guesser limited " + attackerLimited + ", owner passes " + ownerPasses);
+        gate.close();
+    }
+
+    // Each release admits exactly the head of the line; slow work cuts the limit.
+    private void fifoAndBackoff(long seed) {
+        AdmissionController gate = gate(seed);
+        List<AdmissionController.Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            tickets.add(gate.enqueue("client-" + i));
+        }
+        boolean fifo = true;
+        for (int i = 0; i < 5; i++) {
+            fifo &= tickets.get(i).poll();
+        }
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(10 * MILLI);
+            tickets.get(i).release();
+            fifo &= tickets.get(5 + i).poll() && gate.getQueueDepth() == 9 - i && !tickets.get(6 + i).poll();
+        }
+        check("releases admit the head in order", fifo, gate.getQueueDepth() + " still queued");
+        check("quick work keeps the limit", gate.getLimit() == 5, "limit " + gate.getLimit());
+        now.addAndGet(500 * MILLI);
+        tickets.get(5).release();
+        check("slow work cuts the limit", gate.getLimit() == 4 && gate.getInFlight() == 4,
+                "limit " + gate.getLimit() + ", in flight " + gate.getInFlight());
+        gate.close();
+    }
+
+    // At 10/s, the 11th waiter would wait over the 1 s maximum and is shed with a jittered retry time.
+    private void waitTooLong(long seed) {
+        List<Long> first = shedRetries(seed);
+        List<Long> second = shedRetries(seed);
+        boolean spread = true;
+        for (long retry : first) {
+            spread &= retry >= 1000 && retry <= 1500;
+        }
+        check("long waits are shed", first.size() == 10, first.size() + " shed");
+        check("shed retry times are jittered within half again", spread && first.stream().distinct().count() > 1,
+                first);
+        check("same seed, same retry times", first.equals(second), second);
+    }
+
+    private List<Long> shedRetries(long seed) {
+        now.set(0);
+        AdmissionController gate = new AdmissionController("check", 10, 1, 1, 2, 1000, 1000, 100, 100, 100,
+                now::get, new SplittableRandom(seed));
+        List<Long> retries = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            try {
+                gate.enqueue("client-" + i);
+            } catch (AdmissionController.Rejection e) {
+                if (e.getReason() == AdmissionController.Reason.WAIT_TOO_LONG) {
+                    retries.add(e.getRetryAfterMillis());
+                }
+            }
+        }
+        gate.close();
+        return retries;
+    }
+
+    // A queued ticket nobody polls gives its place back; one that is polled keeps it.
+    private void abandoned(long seed) {
+        AdmissionController gate = gate(seed);
+        List<AdmissionController.Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            tickets.add(gate.enqueue("client-" + i));
+        }
+        for (int second = 1; second <= AdmissionController.ABANDON_SECONDS + 1; second++) {
+            now.addAndGet(1000 * MILLI);
+            tickets.get(6).poll();
+            for (int i = 0; i < 5; i++) {
+                tickets.get(i).poll();
+            }
+            gate.tick();
+        }
+        boolean dropped = false;
+        try {
+            tickets.get(5).poll();
+        } catch (AdmissionController.Rejection e) {
+            dropped = e.getReason() == AdmissionController.Reason.ABANDONED;
+        }
+        check("unpolled ticket is dropped", dropped && gate.getQueueDepth() == 1,
+                gate.getQueueDepth() + " queued");
+        tickets.get(0).release();
+        check("polled ticket moves up", tickets.get(6).poll(), "admitted after a release");
+        gate.close();
+    }
+
+    // Seeded arrivals at twice the token rate for 2 s, each admitted request
+    // held 40 ms: the line never overflows, admission follows arrival order,
+    // and nothing is shed for a reason other than load.
+    private void randomArrivals(long seed) {
+        String first = arrivals(seed);
+        String second = arrivals(seed);
+        check("same seed, same admissions and sheds", first.equals(second), first);
+    }
+
+    private String arrivals(long seed) {
+        AdmissionController gate = gate(seed);
+        SplittableRandom random = new SplittableRandom(seed);
+        List<AdmissionController.Ticket> waiting = new ArrayList<>();
+        List<long[]> running = new ArrayList<>();
+        List<AdmissionController.Ticket> handles = new ArrayList<>();
+        long end = 2000 * MILLI;
+        long nextArrival = 0;
+        int arrivals = 0;
+        int shed = 0;
+        int admitted = 0;
+        int lastAdmitted = -1;
+        boolean ordered = true;
+        boolean bounded = true;
+        boolean loadOnly = true;
+        for (long t = 0; t <= end + 1000 * MILLI; t += MILLI) {
+            now.set(t);
+            for (int r = running.size() - 1; r >= 0; r--) {
+                if (running.get(r)[1] <= t) {
+                    handles.get((int) running.get(r)[0]).release();
+                    running.remove(r);
+                }
+            }
+            while (t <= end && nextArrival <= t) {
+                try {
+                    AdmissionController.Ticket ticket = gate.enqueue("client-" + arrivals);
+                    handles.add(ticket);
+                    waiting.add(ticket);
+                } catch (AdmissionController.Rejection e) {
+                    handles.add(null);
+                    shed++;
+                    loadOnly &= e.getReason() == AdmissionController.Reason.QUEUE_FULL
+                            || e.getReason() == AdmissionController.Reason.WAIT_TOO_LONG;
+                }
+                arrivals++;
+                // Exponential gaps averaging 5 ms: 200 arrivals a second
+                nextArrival += (long) (-Math.log(1 - random.nextDouble()) * 5 * MILLI);
+            }
+            gate.tick();
+            for (int w = 0; w < waiting.size(); w++) {
+                AdmissionController.Ticket ticket = waiting.get(w);
+                if (ticket.poll()) {
+                    int index = handles.indexOf(ticket);
+                    ordered &= index > lastAdmitted;
+                    lastAdmitted = index;
+                    running.add(new long[] {index, t + 40 * MILLI});
+                    waiting.remove(w--);
+                    admitted++;
+                }
+            }
+            bounded &= gate.getQueueDepth() <= 20;
+        }
+        check("random arrivals are admitted in arrival order", ordered, admitted + " admitted");
+        check("random arrivals never overflow the line", bounded, "queue limit 20");
+        check("random arrivals are shed only for load", loadOnly && shed > 0 && admitted + shed == arrivals,
+                arrivals + " arrivals, " + shed + " shed");
+        gate.close();
+        return arrivals + " arrivals, " + admitted + " admitted, " + shed + " shed";
+    }
+}
@@ -0,0 +1,600 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Admission control for an entry point everyone hits at once at exam start
+// (login, starting a quiz). A request first takes a token from its client's
+// bucket, so a client hammering retry is turned away with the time until its
+// next token. The client key is the caller's choice: the username once
+// authenticated, loginKey before that. It then joins one FIFO queue, whose
+// head is admitted when the global token bucket has a token and fewer than
+// `limit` admitted requests are still running. The limit follows the latency
+// of admitted work (AIMD): cut by a tenth, at most once per typical service
+// time, when a request takes longer than the target, and raised by 1/limit
+// per quick request while the limit is what holds the queue back. A surge
+// therefore turns into queueing delay, with each waiter told its position and
+// expected wait, while admitted work runs at the rate the backend sustains.
+// Arrivals are shed at the door only when the queue is full or its expected
+// wait exceeds maxWait, with a jittered retry time so shed clients come back
+// spread out.
+//
+// Callers release every ticket: after the admitted work, or to leave the
+// queue. A queued ticket nobody has polled or waited on for ABANDON_SECONDS
+// is dropped, so clients that go away give their place back. One admitted
+// while its client was away (between polls) holds a slot of the limit, so it
+// is dropped if not claimed within CLAIM_SECONDS.
+public class AdmissionController implements Closeable {
+    public enum Reason { RATE_LIMITED, QUEUE_FULL, WAIT_TOO_LONG, ABANDONED, CLOSED }
+
+    static final long ABANDON_SECONDS = 30;
+    static final long CLAIM_SECONDS = 5;
+    private static final double BACKOFF = 0.9;
+    private static final double LATENCY_SMOOTHING = 0.05;
+    private static final long SWEEP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Shed clients are told to retry after the overload plus up to half as much again
+    private static final double RETRY_JITTER = 0.5;
+    private static final LongSupplier SYSTEM_CLOCK = System::nanoTime;
+
+    private enum State { QUEUED, ADMITTED, RELEASED, CANCELLED }
+
+    private final String name;
+    private final double userRate;
+    private final double userBurst;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final long targetLatencyNanos;
+    private final int maxLimit;
+    private final LongSupplier clock;
+    // Retry jitter; used under the lock
+    private final SplittableRandom random;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dispatcherWakeup = lock.newCondition();
+    private final TokenBucket global;
+    private final Map<String, TokenBucket> clientBuckets = new HashMap<>();
+    private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+    // Queued and admitted tickets by id
+    private final Map<String, Ticket> tickets = new HashMap<>();
+    private final Map<Reason, Long> rejections = new EnumMap<>(Reason.class);
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final Thread dispatcher;
+    private double limit;
+    private int inFlight;
+    private long sequence;
+    private long admitted;
+    private long smoothedLatencyNanos;
+    private long lastDecrease;
+    private long nextSweep;
+    private long dispatcherWakeAt = Long.MAX_VALUE;
+    private boolean closed;
+
+    public AdmissionController(String name, double rate, double burst, double userRate, double userBurst,
+                               int maxQueue, long maxWaitMillis, long targetLatencyMillis,
+                               int initialLimit, int maxLimit) {
+        this(name, rate, burst, userRate, userBurst, maxQueue, maxWaitMillis, targetLatencyMillis,
+                initialLimit, maxLimit, SYSTEM_CLOCK, new SplittableRandom());
+    }
+
+    // With a clock other than System::nanoTime nothing runs on its own: there is
+    // no dispatcher thread, and the caller advances time and calls tick(), so a
+    // run with a fixed clock sequence and seed always ends the same way.
+    AdmissionController(String name, double rate, double burst, double userRate, double userBurst,
+                        int maxQueue, long maxWaitMillis, long targetLatencyMillis,
+                        int initialLimit, int maxLimit, LongSupplier clock, SplittableRandom random) {
+        if (!(rate > 0) || !(userRate > 0) || burst < 1 || userBurst < 1) {
+            throw new IllegalArgumentException("Rates must be positive and bursts at least 1");
+        }
+        if (maxQueue < 0 || maxWaitMillis < 0 || targetLatencyMillis <= 0 || initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Need a positive latency target and 1 <= initial limit <= maximum limit");
+        }
+        this.name = name;
+        this.userRate = userRate;
+        this.userBurst = userBurst;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.clock = clock;
+        this.random = random;
+        long now = clock.getAsLong();
+        this.global = new TokenBucket(rate, burst, now);
+        this.nextSweep = now + SWEEP_NANOS;
+        if (clock == SYSTEM_CLOCK) {
+            this.dispatcher = new Thread(this::runDispatcher, "admission-" + name);
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        } else {
+            this.dispatcher = null;
+        }
+    }
+
+    // Reads quiz.admission.<name>.{rate,burst,userRate,userBurst,queue,maxWaitSeconds,targetMillis,limit,maxLimit}
+    // over the given defaults.
+    static AdmissionController fromProperties(String name, double rate, double userRate, long targetLatencyMillis,
+                                              int initialLimit) {
+        String prefix = "quiz.admission." + name + ".";
+        double configuredRate = doubleProperty(prefix + "rate", rate);
+        int configuredLimit = Integer.getInteger(prefix + "limit", initialLimit);
+        return new AdmissionController(name,
+                configuredRate,
+                doubleProperty(prefix + "burst", Math.max(1, configuredRate / 4)),
+                doubleProperty(prefix + "userRate", userRate),
+                doubleProperty(prefix + "userBurst", 5),
+                Integer.getInteger(prefix + "queue", 50_000),
+                TimeUnit.SECONDS.toMillis(Long.getLong(prefix + "maxWaitSeconds", 300)),
+                Long.getLong(prefix + "targetMillis", targetLatencyMillis),
+                configuredLimit,
+                Integer.getInteger(prefix + "maxLimit", configuredLimit * 16));
+    }
+
+    private static double doubleProperty(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    // Client key for a login or registration: the claimed username from the
+    // client's address. A username alone would let failed logins from anywhere
+    // lock its owner out, and an address alone would make a whole exam hall
+    // behind one NAT share a single bucket.
+    public static String loginKey(String username, String address) {
+        return address + "/" + username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Joins the queue, admitted at once when nobody is ahead and there is
+    // capacity. Throws Rejection when the client is over its rate or the
+    // arrival is shed.
+    public Ticket enqueue(String client) {
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            if (closed) {
+                throw reject(Reason.CLOSED, 0, "Admission is closed.");
+            }
+            TokenBucket bucket = clientBuckets.get(client);
+            if (bucket == null) {
+                bucket = new TokenBucket(userRate, userBurst, now);
+                clientBuckets.put(client, bucket);
+            }
+            if (!bucket.tryTake(now)) {
+                throw reject(Reason.RATE_LIMITED, bucket.nanosUntilToken(now), "Too many attempts, slow down.");
+            }
+            int waiting = queue.size();
+            if (waiting >= maxQueue) {
+                throw reject(Reason.QUEUE_FULL, jittered(estimatedWaitNanos(waiting) - maxWaitNanos),
+                        "The waiting line is full.");
+            }
+            long expectedWait = estimatedWaitNanos(waiting + 1);
+            if (expectedWait > maxWaitNanos) {
+                throw reject(Reason.WAIT_TOO_LONG, jittered(expectedWait - maxWaitNanos),
+                        "The wait is too long right now.");
+            }
+            Ticket ticket = new Ticket(client, now);
+            tickets.put(ticket.id, ticket);
+            queue.addLast(ticket);
+            dispatch(now);
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A queued or admitted ticket by id, or null once released or dropped.
+    public Ticket find(String ticketId) {
+        lock.lock();
+        try {
+            return ticketId == null ? null : tickets.get(ticketId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdmittedCount() {
+        lock.lock();
+        try {
+            return admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount(Reason reason) {
+        lock.lock();
+        try {
+            return rejections.getOrDefault(reason, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            long total = 0;
+            for (long count : rejections.values()) {
+                total += count;
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Enqueue to admission, for every admitted ticket.
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Ticket ticket : queue) {
+                ticket.cancel(Reason.CLOSED);
+            }
+            queue.clear();
+            dispatcherWakeup.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Admits from the head while tokens and the limit allow. Under the lock.
+    private void dispatch(long now) {
+        if (now >= nextSweep) {
+            sweep(now);
+        }
+        while (!queue.isEmpty() && inFlight < (int) limit) {
+            if (!global.tryTake(now)) {
+                long due = now + global.nanosUntilToken(now);
+                if (due < dispatcherWakeAt) {
+                    dispatcherWakeup.signal();
+                }
+                return;
+            }
+            Ticket ticket = queue.pollFirst();
+            ticket.state = State.ADMITTED;
+            ticket.admittedAt = now;
+            inFlight++;
+            admitted++;
+            queueWait.record(now - ticket.enqueuedAt);
+            ticket.ready.signalAll();
+        }
+    }
+
+    // Runs what the dispatcher thread would, for a controller on its own clock.
+    void tick() {
+        lock.lock();
+        try {
+            dispatch(clock.getAsLong());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Admits the head when the global bucket refills, since no release or
+    // arrival may come to do it, and runs the periodic sweep.
+    private void runDispatcher() {
+        lock.lock();
+        try {
+            while (!closed) {
+                long now = clock.getAsLong();
+                dispatch(now);
+                long wakeAt = nextSweep;
+                if (!queue.isEmpty() && inFlight < (int) limit) {
+                    wakeAt = Math.min(wakeAt, now + global.nanosUntilToken(now));
+                }
+                dispatcherWakeAt = wakeAt;
+                dispatcherWakeup.awaitNanos(wakeAt - now);
+                dispatcherWakeAt = Long.MAX_VALUE;
+            }
+        } catch (InterruptedException e) {
+            // Daemon thread; nothing to clean up
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops abandoned tickets and the buckets of clients who have been idle long enough to refill.
+    private void sweep(long now) {
+        nextSweep = now + SWEEP_NANOS;
+        long abandonBefore = now - TimeUnit.SECONDS.toNanos(ABANDON_SECONDS);
+        long claimBefore = now - TimeUnit.SECONDS.toNanos(CLAIM_SECONDS);
+        boolean dropped = tickets.values().removeIf(ticket -> {
+            if (ticket.waiters > 0 || ticket.claimed) {
+                return false;
+            }
+            if (ticket.state == State.ADMITTED) {
+                if (ticket.admittedAt > claimBefore) {
+                    return false;
+                }
+                inFlight--;
+            } else if (ticket.lastSeen > abandonBefore) {
+                return false;
+            }
+            ticket.cancel(Reason.ABANDONED);
+            return true;
+        });
+        if (dropped) {
+            queue.removeIf(ticket -> ticket.state == State.CANCELLED);
+        }
+        clientBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private void completed(long latencyNanos, long now) {
+        smoothedLatencyNanos = smoothedLatencyNanos == 0 ? latencyNanos
+                : smoothedLatencyNanos + (long) (LATENCY_SMOOTHING * (latencyNanos - smoothedLatencyNanos));
+        if (latencyNanos > targetLatencyNanos) {
+            // Work admitted before a cut is still slow; let it drain before cutting again
+            if (now - lastDecrease > smoothedLatencyNanos) {
+                limit = Math.max(1, limit * BACKOFF);
+                lastDecrease = now;
+            }
+        } else if (inFlight + 1 >= (int) limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    // Time for `position` queued requests to be admitted: the token rate,
+    // or the limit over the measured service time when that is lower.
+    private long estimatedWaitNanos(int position) {
+        double perSecond = global.rate;
+        if (smoothedLatencyNanos > 0) {
+            perSecond = Math.min(perSecond, (int) limit * 1e9 / smoothedLatencyNanos);
+        }
+        return (long) (position / perSecond * 1e9);
+    }
+
+    private long jittered(long nanos) {
+        long base = Math.max(TimeUnit.SECONDS.toNanos(1), nanos);
+        return base + (long) (base * RETRY_JITTER * random.nextDouble());
+    }
+
+    private Rejection reject(Reason reason, long retryAfterNanos, String message) {
+        rejections.merge(reason, 1L, Long::sum);
+        return new Rejection(reason, TimeUnit.NANOSECONDS.toMillis(retryAfterNanos), message);
+    }
+
+    // A place in the queue, then a permit for the admitted work.
+    public final class Ticket {
+        private final String id = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+        private final String client;
+        private final long order = sequence++;
+        private final long enqueuedAt;
+        private final Condition ready = lock.newCondition();
+        private State state = State.QUEUED;
+        private Reason cancelReason;
+        private long admittedAt;
+        private long lastSeen;
+        private int waiters;
+        // Admission reported to the caller, who now owns the release
+        private boolean claimed;
+
+        private Ticket(String client, long now) {
+            this.client = client;
+            this.enqueuedAt = now;
+            this.lastSeen = now;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        // The key enqueue charged.
+        public String getClient() {
+            return client;
+        }
+
+        // Whether the ticket has been admitted; keeps a queued ticket from
+        // being dropped as abandoned. Throws Rejection if it was dropped.
+        public boolean poll() {
+            lock.lock();
+            try {
+                lastSeen = clock.getAsLong();
+                return claim();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Waits up to the timeout for admission. An interrupt ends the wait
+        // early with the interrupt status kept.
+        public boolean await(long timeout, TimeUnit unit) {
+            lock.lock();
+            try {
+                long remaining = unit.toNanos(timeout);
+                waiters++;
+                try {
+                    while (state == State.QUEUED && remaining > 0) {
+                        remaining = ready.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    waiters--;
+                    lastSeen = clock.getAsLong();
+                }
+                return claim();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 1 for the head of the queue, 0 once admitted. Counts from the head,
+        // so tickets ahead that left the queue early keep this an upper bound.
+        public int getPosition() {
+            lock.lock();
+            try {
+                return queuePosition();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long getEstimatedWaitMillis() {
+            lock.lock();
+            try {
+                return TimeUnit.NANOSECONDS.toMillis(estimatedWaitNanos(queuePosition()));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Ends the admitted work, feeding its latency to the limit, or leaves
+        // the queue. Releasing twice does nothing.
+        public void release() {
+            lock.lock();
+            try {
+                long now = clock.getAsLong();
+                if (state == State.QUEUED) {
+                    state = State.RELEASED;
+                    queue.remove(this);
+                    tickets.remove(id);
+                } else if (state == State.ADMITTED) {
+                    state = State.RELEASED;
+                    tickets.remove(id);
+                    inFlight--;
+                    completed(now - admittedAt, now);
+                    dispatch(now);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int queuePosition() {
+            Ticket head = queue.peekFirst();
+            return state != State.QUEUED || head == null ? 0 : (int) (order - head.order + 1);
+        }
+
+        private boolean claim() {
+            if (state == State.CANCELLED) {
+                throw new Rejection(cancelReason, 0, cancelReason == Reason.CLOSED
+                        ? "Admission is closed." : "Your place in line expired.");
+            }
+            if (state == State.RELEASED) {
+                throw new IllegalStateException("Ticket already released");
+            }
+            if (state == State.ADMITTED) {
+                claimed = true;
+                return true;
+            }
+            return false;
+        }
+
+        private void cancel(Reason reason) {
+            state = State.CANCELLED;
+            cancelReason = reason;
+            ready.signalAll();
+        }
+    }
+
+    // Why a request was turned away and when the client should try again.
+    public static final class Rejection extends RejectedExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        private final Reason reason;
+        private final long retryAfterMillis;
+
+        Rejection(Reason reason, long retryAfterMillis, String message) {
+            super(message);
+            this.reason = reason;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+
+        // Whole seconds for a Retry-After header, at least 1.
+        public long getRetryAfterSeconds() {
+            return Math.max(1, (retryAfterMillis + 999) / 1000);
+        }
+    }
+
+    // Refills continuously at `rate` tokens per second up to `burst`. Guarded by the controller's lock.
+    private static final class TokenBucket {
+        final double rate;
+        final double burst;
+        double tokens;
+        long updatedAt;
+
+        TokenBucket(double rate, double burst, long now) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+            this.updatedAt = now;
+        }
+
+        boolean tryTake(long now) {
+            refill(now);
+            // Tolerates the rounding of a wakeup timed for the next token
+            if (tokens >= 1 - 1e-9) {
+                tokens = Math.max(0, tokens - 1);
+                return true;
+            }
+            return false;
+        }
+
+        long nanosUntilToken(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate * 1e9);
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - updatedAt) * rate / 1e9);
+            updatedAt = now;
+        }
+    }
+}
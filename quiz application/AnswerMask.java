@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Answers are stored as a bitmask with bit i set when option i is selected,
+// so grading is a single long compare and does not depend on list order.
+public final class AnswerMask {
+    public static final int MAX_OPTIONS = Long.SIZE;
+
+    private AnswerMask() {
+    }
+
+    public static long of(Collection<Integer> indices) {
+        long mask = 0;
+        for (int index : indices) {
+            mask |= bit(index);
+        }
+        return mask;
+    }
+
+    public static long of(int... indices) {
+        long mask = 0;
+        for (int index : indices) {
+            mask |= bit(index);
+        }
+        return mask;
+    }
+
+    public static List<Integer> toList(long mask) {
+        List<Integer> indices = new ArrayList<>(Long.bitCount(mask));
+        while (mask != 0) {
+            indices.add(Long.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+        }
+        return indices;
+    }
+
+    public static boolean contains(long mask, int index) {
+        return (mask & bit(index)) != 0;
+    }
+
+    // Number of answers that exactly match the key, in one pass with no allocation.
+    public static int grade(long[] key, long[] answers) {
+        return grade(key, answers, Math.min(key.length, answers.length));
+    }
+
+    // Grades only the first answeredCount answers; the rest count as unanswered.
+    public static int grade(long[] key, long[] answers, int answeredCount) {
+        int score = 0;
+        for (int i = 0; i < answeredCount; i++) {
+            if (key[i] == answers[i]) {
+                score++;
+            }
+        }
+        return score;
+    }
+
+    private static long bit(int index) {
+        if (index < 0 || index >= MAX_OPTIONS) {
+            throw new IllegalArgumentException("Option index out of range: " + index);
+        }
+        return 1L << index;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo;
+
+// Candidate arrival rate, per second, over the seconds since a load run
+// started. Parsed from short specs so runs can be configured from the
+// command line:
+//   steady:R                       R arrivals per second throughout
+//   spike:PEAK:RAMP:HALFLIFE[:BASE] rises linearly to PEAK over RAMP seconds
+//                                  (the exam start), then decays towards BASE
+//                                  (default 0), halving every HALFLIFE seconds
+//   ramp:FROM:TO:SECONDS           linear from FROM to TO, then holds TO
+public interface ArrivalCurve {
+    double rateAt(double seconds);
+
+    static ArrivalCurve steady(double rate) {
+        requireRate(rate);
+        return seconds -> rate;
+    }
+
+    static ArrivalCurve spike(double peak, double rampSeconds, double halfLifeSeconds, double base) {
+        requireRate(peak);
+        requireRate(base);
+        if (!(rampSeconds >= 0) || !(halfLifeSeconds > 0)) {
+            throw new IllegalArgumentException("Ramp cannot be negative and half-life must be positive");
+        }
+        return seconds -> {
+            if (seconds < rampSeconds) {
+                return peak * seconds / rampSeconds;
+            }
+            return base + (peak - base) * Math.pow(0.5, (seconds - rampSeconds) / halfLifeSeconds);
+        };
+    }
+
+    static ArrivalCurve ramp(double from, double to, double rampSeconds) {
+        requireRate(from);
+        requireRate(to);
+        if (!(rampSeconds > 0)) {
+            throw new IllegalArgumentException("Ramp must take a positive number of seconds");
+        }
+        return seconds -> seconds >= rampSeconds ? to : from + (to - from) * seconds / rampSeconds;
+    }
+
+    static ArrivalCurve parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "steady":
+                    if (parts.length == 2) {
+                        return steady(Double.parseDouble(parts[1]));
+                    }
+                    break;
+                case "spike":
+                    if (parts.length == 4 || parts.length == 5) {
+                        return spike(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                                Double.parseDouble(parts[3]), parts.length == 5 ? Double.parseDouble(parts[4]) : 0);
+                    }
+                    break;
+                case "ramp":
+                    if (parts.length == 4) {
+                        return ramp(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                                Double.parseDouble(parts[3]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number in arrival curve '" + spec + "'");
+        }
+        throw new IllegalArgumentException("Unknown arrival curve '" + spec
+                + "'; use steady:R, spike:PEAK:RAMP:HALFLIFE[:BASE] or ramp:FROM:TO:SECONDS");
+    }
+
+    private static void requireRate(double rate) {
+        if (!(rate >= 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("Arrival rate must be a non-negative number: " + rate);
+        }
+    }
+}
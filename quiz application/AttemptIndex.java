@@ -0,0 +1,290 @@
+package com.example.demo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Secondary indexes over AttemptStore rows, maintained as attempts are
+// recorded: rows per quiz, a skip list of rows per second of timestamp, and
+// rows per 10% score band. query() estimates how many rows each applicable
+// index would yield and how many rows each plan, a store scan included, would
+// examine before reaching the limit, walks the cheapest and checks the
+// remaining criteria against the store's columns. Whichever index is walked,
+// results are newest first (latest recorded row first), so a limit keeps the
+// same rows for the same data.
+public class AttemptIndex {
+    private static final long TIME_BUCKET_MILLIS = 1000;
+    private static final int SCORE_BUCKETS = Leaderboard.HISTOGRAM_BUCKETS;
+
+    private final AttemptStore store;
+    private final Map<String, RowList> byQuiz = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, RowList> byTime = new ConcurrentSkipListMap<>();
+    private final RowList[] byScore = new RowList[SCORE_BUCKETS];
+
+    public AttemptIndex(AttemptStore store) {
+        this.store = store;
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            byScore[i] = new RowList();
+        }
+    }
+
+    public void add(long row, String quizTitle, int score, int totalQuestions, long epochMillis) {
+        int r = (int) row;
+        byQuiz.computeIfAbsent(quizTitle, k -> new RowList()).add(r);
+        byTime.computeIfAbsent(Math.floorDiv(epochMillis, TIME_BUCKET_MILLIS), k -> new RowList()).add(r);
+        byScore[Leaderboard.basisPoints(score, totalQuestions) / 1000].add(r);
+    }
+
+    // Index as of the last add(); the caller keeps add() from running meanwhile.
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(byQuiz.size());
+        for (Map.Entry<String, RowList> quiz : byQuiz.entrySet()) {
+            out.writeUTF(quiz.getKey());
+            quiz.getValue().writeTo(out);
+        }
+        out.writeInt(byTime.size());
+        for (Map.Entry<Long, RowList> bucket : byTime.entrySet()) {
+            out.writeLong(bucket.getKey());
+            bucket.getValue().writeTo(out);
+        }
+        for (RowList rows : byScore) {
+            rows.writeTo(out);
+        }
+    }
+
+    // Loads an index written by writeTo into this empty one.
+    void readFrom(DataInput in) throws IOException {
+        int quizzes = in.readInt();
+        for (int i = 0; i < quizzes; i++) {
+            String quizTitle = in.readUTF();
+            byQuiz.put(quizTitle, RowList.readFrom(in));
+        }
+        int buckets = in.readInt();
+        for (int i = 0; i < buckets; i++) {
+            long bucket = in.readLong();
+            byTime.put(bucket, RowList.readFrom(in));
+        }
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            byScore[i] = RowList.readFrom(in);
+        }
+    }
+
+    public AttemptStore.Cursor query(AttemptQuery query) {
+        int[] rows = matchingRows(query);
+        return store.rows(rows, rows.length);
+    }
+
+    int[] matchingRows(AttemptQuery query) {
+        if (query.getLimit() == 0) {
+            return new int[0];
+        }
+        int limit = query.getLimit();
+        long size = store.size();
+        int quizId = -1;
+        RowList quizRows = null;
+        if (query.getQuizTitle() != null) {
+            quizId = store.findQuizId(query.getQuizTitle());
+            quizRows = byQuiz.get(query.getQuizTitle());
+            if (quizId < 0 || quizRows == null) {
+                return new int[0];
+            }
+        }
+        int lowBand = bandOf(query.getMinPercentage());
+        int highBand = bandOf(query.getMaxPercentage());
+        List<RowList> bands = query.hasScoreRange()
+                ? Arrays.asList(byScore).subList(lowBand, highBand + 1) : null;
+        long bandRows = bands == null ? size : count(bands);
+
+        // The narrowest index bounds how many rows can match; every plan's cost is
+        // the rows it is expected to examine before reaching the limit.
+        long matches = Math.min(size, Math.min(quizRows == null ? size : quizRows.size(), bandRows));
+        Collection<RowList> timeBuckets = null;
+        long timeRows = -1;
+        long[] bucketCount = new long[1];
+        if (query.hasTimeRange()) {
+            timeBuckets = timeBuckets(query).values();
+            timeRows = countTimeRows(timeBuckets, size, limit, bucketCount);
+            if (timeRows >= 0) {
+                matches = Math.min(matches, timeRows);
+            }
+        }
+        int plan = 0;
+        long best = walkCost(size, matches, limit);
+        if (quizRows != null && walkCost(quizRows.size(), matches, limit) < best) {
+            best = walkCost(quizRows.size(), matches, limit);
+            plan = 1;
+        }
+        if (timeRows >= 0 && bucketCount[0] + walkCost(timeRows, matches, limit) < best) {
+            best = bucketCount[0] + walkCost(timeRows, matches, limit);
+            plan = 2;
+        }
+        if (bands != null && bands.size() + walkCost(bandRows, matches, limit) < best) {
+            plan = 3;
+        }
+
+        // Every plan walks newest first and stops at the limit: the store and a quiz's
+        // list backwards, several time buckets or score bands merged backwards.
+        Matcher matcher = new Matcher(query, quizId);
+        switch (plan) {
+            case 1:
+                matcher.scanNewestFirst(List.of(quizRows));
+                break;
+            case 2:
+                matcher.scanNewestFirst(timeBuckets);
+                break;
+            case 3:
+                matcher.scanNewestFirst(bands);
+                break;
+            default:
+                for (long row = size - 1; row >= 0; row--) {
+                    if (!matcher.test((int) row)) {
+                        break;
+                    }
+                }
+        }
+        return matcher.result();
+    }
+
+    private Map<Long, RowList> timeBuckets(AttemptQuery query) {
+        long from = Math.floorDiv(query.getFromMillis(), TIME_BUCKET_MILLIS);
+        long to = Math.floorDiv(query.getToMillis(), TIME_BUCKET_MILLIS);
+        return byTime.subMap(from, true, to, true);
+    }
+
+    private static long count(Collection<RowList> lists) {
+        long total = 0;
+        for (RowList rows : lists) {
+            total += rows.size();
+        }
+        return total;
+    }
+
+    // Rows in the time range, with the number of buckets in visited[0], or -1
+    // once visiting the buckets alone costs more than walking the store would,
+    // even if the range were the only criterion. A wide range over many small
+    // buckets is given up on early that way.
+    private static long countTimeRows(Collection<RowList> buckets, long size, int limit, long[] visited) {
+        long total = 0;
+        for (RowList rows : buckets) {
+            total += rows.size();
+            if (++visited[0] >= walkCost(size, total, limit)) {
+                return -1;
+            }
+        }
+        return total;
+    }
+
+    // Rows a newest-first walk over candidates examines before it has limit of
+    // the expected matches, assuming matches are spread evenly among them.
+    private static long walkCost(long candidates, long matches, int limit) {
+        if (matches <= limit) {
+            return candidates;
+        }
+        return (long) Math.ceil((double) candidates * limit / matches);
+    }
+
+    private static int bandOf(double percentage) {
+        int basisPoints = (int) Math.round(Math.max(0, Math.min(100, percentage)) * 100);
+        return basisPoints / 1000;
+    }
+
+    private final class Matcher {
+        private final AttemptQuery query;
+        private final int quizId;
+        private final int minBasisPoints;
+        private final int maxBasisPoints;
+        private int[] matches = new int[16];
+        private int count;
+
+        Matcher(AttemptQuery query, int quizId) {
+            this.query = query;
+            this.quizId = quizId;
+            this.minBasisPoints = (int) Math.ceil(query.getMinPercentage() * 100);
+            this.maxBasisPoints = (int) Math.floor(query.getMaxPercentage() * 100);
+        }
+
+        // Walks lists of ascending rows newest row first across all of them, a
+        // backward k-way merge on a max-heap of list cursors, and stops at the limit.
+        void scanNewestFirst(Collection<RowList> lists) {
+            int[][] rows = new int[lists.size()][];
+            int[] next = new int[rows.length];
+            int[] heap = new int[rows.length];
+            int live = 0;
+            for (RowList list : lists) {
+                int size = list.size();
+                if (size > 0) {
+                    rows[live] = list.rows();
+                    next[live] = size - 1;
+                    heap[live] = live;
+                    live++;
+                }
+            }
+            for (int i = live / 2 - 1; i >= 0; i--) {
+                siftDown(heap, live, i, rows, next);
+            }
+            while (live > 0) {
+                int top = heap[0];
+                if (!test(rows[top][next[top]])) {
+                    return;
+                }
+                if (--next[top] < 0) {
+                    heap[0] = heap[--live];
+                }
+                if (live > 0) {
+                    siftDown(heap, live, 0, rows, next);
+                }
+            }
+        }
+
+        private void siftDown(int[] heap, int live, int i, int[][] rows, int[] next) {
+            int list = heap[i];
+            int row = rows[list][next[list]];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= live) {
+                    break;
+                }
+                if (child + 1 < live && rows[heap[child + 1]][next[heap[child + 1]]]
+                        > rows[heap[child]][next[heap[child]]]) {
+                    child++;
+                }
+                if (rows[heap[child]][next[heap[child]]] <= row) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = list;
+        }
+
+        // Returns false once the limit is reached.
+        boolean test(int row) {
+            if (quizId >= 0 && store.quizIdAt(row) != quizId) {
+                return true;
+            }
+            long timestamp = store.epochMillisAt(row);
+            if (timestamp < query.getFromMillis() || timestamp >= query.getToMillis()) {
+                return true;
+            }
+            int basisPoints = Leaderboard.basisPoints(store.scoreAt(row), store.totalAt(row));
+            if (basisPoints < minBasisPoints || basisPoints > maxBasisPoints) {
+                return true;
+            }
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, count * 2);
+            }
+            matches[count++] = row;
+            return count < query.getLimit();
+        }
+
+        int[] result() {
+            return Arrays.copyOf(matches, count);
+        }
+    }
+}
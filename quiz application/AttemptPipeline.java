@@ -0,0 +1,266 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Attempt ingest: any number of threads enqueue finished attempts on a bounded
+// multi-producer, single-consumer ring; one writer thread drains whatever has
+// accumulated and hands it to the batch writer (store, log, indexes, leaderboard)
+// in one go. Producers only claim a slot and publish, and wait for room when
+// the ring is full, so a slow disk pushes back on submitters instead of
+// growing memory. Each returned future completes once its batch is durable.
+public final class AttemptPipeline implements Closeable {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    public static final int DEFAULT_MAX_BATCH = 1024;
+
+    private final int mask;
+    private final int maxBatch;
+    private final Slot[] slots;
+    // Slot i is free for producer sequence s when sequences[i] == s, and holds
+    // an attempt for the consumer at sequence s when sequences[i] == s + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final Function<List<QuizAttempt>, CompletableFuture<Void>> writer;
+    private final Thread consumer;
+    private volatile boolean consumerParked;
+    // Slow path only: producers that found the ring full wait here for the consumer
+    private final ReentrantLock fullLock = new ReentrantLock();
+    private final Condition notFull = fullLock.newCondition();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private volatile boolean closed;
+    // Producers between their closed check and publishing; the consumer only
+    // stops once this is zero, so nothing published around close is left behind
+    private final AtomicInteger activeProducers = new AtomicInteger();
+
+    private final LongAdder fullWaits = new LongAdder();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private final LatencyHistogram lag = new LatencyHistogram();
+
+    // writer applies a batch in order and returns a future for its durability.
+    public AttemptPipeline(int capacity, int maxBatch, Function<List<QuizAttempt>, CompletableFuture<Void>> writer) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.maxBatch = maxBatch;
+        this.writer = writer;
+        this.slots = new Slot[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.consumer = new Thread(this::drain, "attempt-pipeline");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public CompletableFuture<Void> submit(QuizAttempt attempt) {
+        CompletableFuture<Void> recordedFuture = new CompletableFuture<>();
+        long enqueuedNanos = System.nanoTime();
+        activeProducers.incrementAndGet();
+        try {
+            publish(attempt, recordedFuture, enqueuedNanos);
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return recordedFuture;
+    }
+
+    private void publish(QuizAttempt attempt, CompletableFuture<Void> recordedFuture, long enqueuedNanos) {
+        boolean waited = false;
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Attempt pipeline is closed");
+            }
+            long sequence = tail.get();
+            int index = (int) sequence & mask;
+            long available = sequences.get(index);
+            if (available == sequence) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    Slot slot = slots[index];
+                    slot.attempt = attempt;
+                    slot.future = recordedFuture;
+                    slot.enqueuedNanos = enqueuedNanos;
+                    sequences.lazySet(index, sequence + 1);
+                    break;
+                }
+            } else if (available < sequence) {
+                // Full: the consumer has not yet freed this slot from the previous lap
+                if (!waited) {
+                    fullWaits.increment();
+                    waited = true;
+                }
+                awaitSlot(index, sequence);
+            }
+        }
+    }
+
+    private void awaitSlot(int index, long sequence) {
+        fullLock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            while (sequences.get(index) < sequence && !closed) {
+                notFull.await(1, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the attempt pipeline", e);
+        } finally {
+            waitingProducers.decrementAndGet();
+            fullLock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public long getQueueDepth() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    // Submitters that found the ring full and had to wait.
+    public long getFullWaits() {
+        return fullWaits.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    public double getMeanBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) recorded.get() / count;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    // Enqueue to durable, per attempt.
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    // Writes everything already enqueued and waits for it to become durable.
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<QuizAttempt> batch = new ArrayList<>(maxBatch);
+        CompletableFuture<?> lastDurable = CompletableFuture.completedFuture(null);
+        while (true) {
+            long next = head;
+            int count = 0;
+            while (count < maxBatch && sequences.get((int) (next + count) & mask) == next + count + 1) {
+                count++;
+            }
+            if (count == 0) {
+                if (closed && activeProducers.get() == 0 && tail.get() == head) {
+                    break;
+                }
+                // Producers unpark us when they see this flag; the timeout covers a missed wakeup
+                consumerParked = true;
+                if (sequences.get((int) next & mask) != next + 1 && !closed) {
+                    LockSupport.parkNanos(this, 1_000_000);
+                }
+                consumerParked = false;
+                continue;
+            }
+            List<CompletableFuture<Void>> futures = new ArrayList<>(count);
+            long[] enqueued = new long[count];
+            for (int i = 0; i < count; i++) {
+                int index = (int) (next + i) & mask;
+                Slot slot = slots[index];
+                batch.add(slot.attempt);
+                futures.add(slot.future);
+                enqueued[i] = slot.enqueuedNanos;
+                slot.attempt = null;
+                slot.future = null;
+                // Hand the slot back to producers for the next lap
+                sequences.lazySet(index, next + i + mask + 1);
+            }
+            head = next + count;
+            if (waitingProducers.get() > 0) {
+                fullLock.lock();
+                try {
+                    notFull.signalAll();
+                } finally {
+                    fullLock.unlock();
+                }
+            }
+            lastDurable = write(batch, futures, enqueued, count);
+            batch.clear();
+        }
+        lastDurable.exceptionally(e -> null).join();
+    }
+
+    private CompletableFuture<?> write(List<QuizAttempt> batch, List<CompletableFuture<Void>> futures,
+                                       long[] enqueued, int count) {
+        batches.incrementAndGet();
+        recorded.addAndGet(count);
+        lastBatchSize = count;
+        if (count > maxBatchSize) {
+            maxBatchSize = count;
+        }
+        CompletableFuture<Void> durable;
+        try {
+            durable = writer.apply(batch);
+        } catch (RuntimeException e) {
+            durable = CompletableFuture.failedFuture(e);
+        }
+        // Completions run on the log's writer thread, off this one
+        return durable.whenComplete((ignored, error) -> {
+            long now = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                lag.record(now - enqueued[i]);
+                if (error == null) {
+                    futures.get(i).complete(null);
+                } else {
+                    futures.get(i).completeExceptionally(error);
+                }
+            }
+        });
+    }
+
+    private static final class Slot {
+        QuizAttempt attempt;
+        CompletableFuture<Void> future;
+        long enqueuedNanos;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo;
+
+// Filter over recorded attempts. Every criterion is optional; unset criteria
+// match everything. Percentages are inclusive bounds on score / total.
+public class AttemptQuery {
+    private String quizTitle;
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private double minPercentage = 0;
+    private double maxPercentage = 100;
+    private int limit = Integer.MAX_VALUE;
+
+    public AttemptQuery quiz(String quizTitle) {
+        this.quizTitle = quizTitle;
+        return this;
+    }
+
+    // Attempts with fromMillis <= timestamp < toMillis.
+    public AttemptQuery between(long fromMillis, long toMillis) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        return this;
+    }
+
+    public AttemptQuery scoreBetween(double minPercentage, double maxPercentage) {
+        this.minPercentage = minPercentage;
+        this.maxPercentage = maxPercentage;
+        return this;
+    }
+
+    // Results are newest first, so a limit keeps the most recent matches; 0 matches nothing.
+    public AttemptQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public String getQuizTitle() {
+        return quizTitle;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public double getMinPercentage() {
+        return minPercentage;
+    }
+
+    public double getMaxPercentage() {
+        return maxPercentage;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    boolean hasTimeRange() {
+        return fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+    }
+
+    boolean hasScoreRange() {
+        return minPercentage > 0 || maxPercentage < 100;
+    }
+}
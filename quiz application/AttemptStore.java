@@ -0,0 +1,336 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Stream;
+
+// Off-heap, memory-mapped columnar store of quiz attempts. Usernames and quiz
+// titles are dictionary-encoded; each attempt is one row across the user,
+// quiz, score, total and timestamp columns. A previous-row-for-user column
+// chains each user's attempts so history is read newest-first without a scan.
+//
+// One writer appends at a time; readers are lock-free and see a row once
+// size() covers it. flush() forces the columns and then records the durable
+// row count, which is where recovery resumes replaying the attempt log.
+// Rows must be appended in the same order their log records are queued.
+public class AttemptStore implements Closeable {
+    private static final int META_MAGIC = 0x41545453;
+    private static final int META_VERSION = 1;
+
+    private final Path directory;
+    private final boolean temporary;
+    private final StringDictionary userDictionary;
+    private final StringDictionary quizDictionary;
+    private final MappedColumn userColumn;
+    private final MappedColumn quizColumn;
+    private final MappedColumn scoreColumn;
+    private final MappedColumn totalColumn;
+    private final MappedColumn timestampColumn;
+    private final MappedColumn previousRowColumn;
+    private final FileChannel metaChannel;
+    private final MappedByteBuffer meta;
+    private volatile AtomicIntegerArray userHeads = new AtomicIntegerArray(0);
+    // Attempts per user, grown together with userHeads
+    private volatile AtomicIntegerArray userCounts = new AtomicIntegerArray(0);
+    private volatile long rowCount;
+
+    private AttemptStore(Path directory, boolean temporary) throws IOException {
+        this.directory = directory;
+        this.temporary = temporary;
+        Files.createDirectories(directory);
+        this.userDictionary = new StringDictionary(directory.resolve("users.dict"));
+        this.quizDictionary = new StringDictionary(directory.resolve("quizzes.dict"));
+        this.userColumn = new MappedColumn(directory.resolve("user.col"), Integer.BYTES);
+        this.quizColumn = new MappedColumn(directory.resolve("quiz.col"), Integer.BYTES);
+        this.scoreColumn = new MappedColumn(directory.resolve("score.col"), Integer.BYTES);
+        this.totalColumn = new MappedColumn(directory.resolve("total.col"), Integer.BYTES);
+        this.timestampColumn = new MappedColumn(directory.resolve("timestamp.col"), Long.BYTES);
+        this.previousRowColumn = new MappedColumn(directory.resolve("previous.col"), Integer.BYTES);
+
+        this.metaChannel = FileChannel.open(directory.resolve("store.meta"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+        if (meta.getInt(0) == 0) {
+            meta.putInt(0, META_MAGIC);
+            meta.putInt(4, META_VERSION);
+            meta.putLong(8, 0);
+            meta.force();
+        } else if (meta.getInt(0) != META_MAGIC || meta.getInt(4) != META_VERSION) {
+            throw new IOException("Unrecognized attempt store: " + directory);
+        }
+        loadRows(meta.getLong(8));
+    }
+
+    public static AttemptStore open(Path directory) throws IOException {
+        return new AttemptStore(directory, false);
+    }
+
+    // Store in a fresh temporary directory that is deleted on close.
+    public static AttemptStore createTemporary() throws IOException {
+        return new AttemptStore(Files.createTempDirectory("quiz-attempts"), true);
+    }
+
+    public long size() {
+        return rowCount;
+    }
+
+    public synchronized long append(String username, String quizTitle, int score, int totalQuestions, long epochMillis)
+            throws IOException {
+        long row = rowCount;
+        if (row >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("Attempt store is full");
+        }
+        int userId = userDictionary.idOf(username);
+        int quizId = quizDictionary.idOf(quizTitle);
+        AtomicIntegerArray heads = headsFor(userId);
+
+        userColumn.putInt(row, userId);
+        quizColumn.putInt(row, quizId);
+        scoreColumn.putInt(row, score);
+        totalColumn.putInt(row, totalQuestions);
+        timestampColumn.putLong(row, epochMillis);
+        previousRowColumn.putInt(row, heads.get(userId));
+        rowCount = row + 1;
+        // Readers that observe the new head also observe the row written above
+        heads.set(userId, (int) row);
+        userCounts.incrementAndGet(userId);
+        return row;
+    }
+
+    public long append(QuizAttempt attempt) throws IOException {
+        return append(attempt.getUsername(), attempt.getQuizTitle(), attempt.getScore(),
+                attempt.getTotalQuestions(), attempt.getEpochMillis());
+    }
+
+    // Append wrapper for callers that cannot propagate IOException.
+    long appendUnchecked(QuizAttempt attempt) {
+        try {
+            return append(attempt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Attempts by one user, newest first.
+    public Cursor forUser(String username) {
+        int userId = userDictionary.find(username);
+        AtomicIntegerArray heads = userHeads;
+        int head = userId < 0 || userId >= heads.length() ? -1 : heads.get(userId);
+        return new Cursor(head, true);
+    }
+
+    public int countForUser(String username) {
+        int userId = userDictionary.find(username);
+        AtomicIntegerArray counts = userCounts;
+        return userId < 0 || userId >= counts.length() ? 0 : counts.get(userId);
+    }
+
+    // The user's newest row and attempt count, read together so a pager can
+    // walk exactly count rows back from head while appends continue.
+    synchronized int[] userChain(String username) {
+        int userId = userDictionary.find(username);
+        AtomicIntegerArray heads = userHeads;
+        if (userId < 0 || userId >= heads.length()) {
+            return new int[] {-1, 0};
+        }
+        return new int[] {heads.get(userId), userCounts.get(userId)};
+    }
+
+    // The same user's previous row, or -1.
+    int previousRowAt(long row) {
+        return previousRowColumn.getInt(row);
+    }
+
+    // Every attempt, oldest first.
+    public Cursor scan() {
+        return new Cursor(-1, false);
+    }
+
+    // Attempts from the given row on, oldest first.
+    Cursor scanFrom(long row) {
+        Cursor cursor = new Cursor(-1, false);
+        cursor.nextRow = row;
+        return cursor;
+    }
+
+    // The given rows, in array order.
+    public Cursor rows(int[] rows, int count) {
+        return new Cursor(rows, count);
+    }
+
+    int findQuizId(String quizTitle) {
+        return quizDictionary.find(quizTitle);
+    }
+
+    int quizIdAt(long row) {
+        return quizColumn.getInt(row);
+    }
+
+    int scoreAt(long row) {
+        return scoreColumn.getInt(row);
+    }
+
+    int totalAt(long row) {
+        return totalColumn.getInt(row);
+    }
+
+    long epochMillisAt(long row) {
+        return timestampColumn.getLong(row);
+    }
+
+    public synchronized void flush() throws IOException {
+        flush(rowCount);
+    }
+
+    // Forces the columns but records at most durableRows as recoverable, so
+    // rows not yet durable elsewhere (the attempt log) get replayed instead.
+    public synchronized void flush(long durableRows) throws IOException {
+        userDictionary.force();
+        quizDictionary.force();
+        for (MappedColumn column : columns()) {
+            column.force();
+        }
+        meta.putLong(8, Math.min(rowCount, durableRows));
+        meta.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (MappedColumn column : columns()) {
+            column.close();
+        }
+        metaChannel.close();
+        userDictionary.close();
+        quizDictionary.close();
+        if (temporary) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private MappedColumn[] columns() {
+        return new MappedColumn[] {
+                userColumn, quizColumn, scoreColumn, totalColumn, timestampColumn, previousRowColumn
+        };
+    }
+
+    private void loadRows(long durableRows) throws IOException {
+        for (MappedColumn column : columns()) {
+            column.mapExisting(durableRows);
+        }
+        AtomicIntegerArray heads = new AtomicIntegerArray(Math.max(16, userDictionary.size()));
+        for (int i = 0; i < heads.length(); i++) {
+            heads.set(i, -1);
+        }
+        AtomicIntegerArray counts = new AtomicIntegerArray(heads.length());
+        for (long row = 0; row < durableRows; row++) {
+            int userId = userColumn.getInt(row);
+            heads.set(userId, (int) row);
+            counts.incrementAndGet(userId);
+        }
+        userHeads = heads;
+        userCounts = counts;
+        rowCount = durableRows;
+    }
+
+    private AtomicIntegerArray headsFor(int userId) {
+        AtomicIntegerArray heads = userHeads;
+        if (userId < heads.length()) {
+            return heads;
+        }
+        AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(userId + 1, heads.length() * 2));
+        AtomicIntegerArray counts = userCounts;
+        AtomicIntegerArray grownCounts = new AtomicIntegerArray(grown.length());
+        for (int i = 0; i < grown.length(); i++) {
+            grown.set(i, i < heads.length() ? heads.get(i) : -1);
+            grownCounts.set(i, i < counts.length() ? counts.get(i) : 0);
+        }
+        userCounts = grownCounts;
+        userHeads = grown;
+        return grown;
+    }
+
+    // Flyweight over store rows: next() moves to the following row and the
+    // getters read straight from the mapped columns without allocating.
+    public final class Cursor {
+        private final boolean userChain;
+        private final int[] rowList;
+        private final long limit;
+        private long nextRow;
+        private long row = -1;
+
+        private Cursor(int head, boolean userChain) {
+            this.userChain = userChain;
+            this.rowList = null;
+            this.limit = rowCount;
+            this.nextRow = userChain ? head : 0;
+        }
+
+        private Cursor(int[] rowList, int count) {
+            this.userChain = false;
+            this.rowList = rowList;
+            this.limit = count;
+        }
+
+        public boolean next() {
+            if (rowList != null) {
+                if (nextRow >= limit) {
+                    return false;
+                }
+                row = rowList[(int) nextRow++];
+                return true;
+            }
+            if (userChain) {
+                if (nextRow < 0) {
+                    return false;
+                }
+                row = nextRow;
+                nextRow = previousRowColumn.getInt(row);
+                return true;
+            }
+            if (nextRow >= limit) {
+                return false;
+            }
+            row = nextRow++;
+            return true;
+        }
+
+        public long getRow() {
+            return row;
+        }
+
+        public String getUsername() {
+            return userDictionary.valueOf(userColumn.getInt(row));
+        }
+
+        public String getQuizTitle() {
+            return quizDictionary.valueOf(quizColumn.getInt(row));
+        }
+
+        public int getScore() {
+            return scoreColumn.getInt(row);
+        }
+
+        public int getTotalQuestions() {
+            return totalColumn.getInt(row);
+        }
+
+        public long getEpochMillis() {
+            return timestampColumn.getLong(row);
+        }
+
+        public QuizAttempt toAttempt() {
+            return new QuizAttempt(getUsername(), getQuizTitle(), getScore(), getTotalQuestions(), getEpochMillis());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Runs password verification on a fixed pool sized to the CPU, behind a
+// bounded queue. When the queue is full new logins are rejected straight away
+// instead of piling up, so a login storm degrades into fast 503s rather than
+// unbounded latency. Successful logins get a short-lived token that later
+// requests present instead of re-running the hash.
+public class Authenticator implements Closeable {
+    public static final long DEFAULT_TOKEN_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final int SWEEP_EVERY = 1024;
+
+    private final Function<String, String> credentials;
+    private final Function<String, QuizEngine.Role> roles;
+    private final ThreadPoolExecutor workers;
+    private final long tokenTtlMillis;
+    private final int hashIterations;
+    private final Map<String, VerifiedSession> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger issuedSinceSweep = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+    // Checked for unknown usernames, so they cost the same hash as known ones
+    private final String unknownUserHash;
+
+    public Authenticator(Function<String, String> credentials, Function<String, QuizEngine.Role> roles,
+                         int workerCount, int queueCapacity, long tokenTtlMillis) {
+        this(credentials, roles, workerCount, queueCapacity, tokenTtlMillis, PasswordHasher.DEFAULT_ITERATIONS);
+    }
+
+    // credentials maps a username to its encoded hash (or null); roles maps it to its role.
+    // hashIterations should match the cost of the stored hashes.
+    public Authenticator(Function<String, String> credentials, Function<String, QuizEngine.Role> roles,
+                         int workerCount, int queueCapacity, long tokenTtlMillis, int hashIterations) {
+        this.credentials = credentials;
+        this.roles = roles;
+        this.tokenTtlMillis = tokenTtlMillis;
+        this.hashIterations = hashIterations;
+        byte[] unknownPassword = new byte[16];
+        random.nextBytes(unknownPassword);
+        this.unknownUserHash = PasswordHasher.hash(Base64.getEncoder().encodeToString(unknownPassword), hashIterations);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "auth-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Completes with the user's role, or null for bad credentials. Completes
+    // exceptionally with RejectedExecutionException when the pool is saturated.
+    public CompletableFuture<QuizEngine.Role> verifyAsync(String username, String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> verify(username, password), workers);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Hashes a new password on the same pool, so registrations share the CPU
+    // and the queue bound of logins. Rejected like verifyAsync when saturated.
+    public CompletableFuture<String> hashAsync(String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> PasswordHasher.hash(password, hashIterations), workers);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Verifies on the calling thread. An unknown username runs the same hash as a
+    // wrong password, so response time does not reveal which usernames exist.
+    public QuizEngine.Role verify(String username, String password) {
+        String encoded = username == null ? null : credentials.apply(username);
+        boolean matches = PasswordHasher.verify(password, encoded != null ? encoded : unknownUserHash);
+        if (encoded == null || !matches) {
+            return null;
+        }
+        return roles.apply(username);
+    }
+
+    public String issueToken(String username) {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        // The shared copy of the name, not the one parsed from this login request
+        tokens.put(token, new VerifiedSession(InternTable.USERNAMES.canonical(username),
+                System.currentTimeMillis() + tokenTtlMillis));
+        if (issuedSinceSweep.incrementAndGet() >= SWEEP_EVERY) {
+            issuedSinceSweep.set(0);
+            sweepExpired();
+        }
+        return token;
+    }
+
+    // Username for a live token, or null.
+    public String authenticate(String token) {
+        VerifiedSession session = tokens.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.expiresAt < System.currentTimeMillis()) {
+            tokens.remove(token, session);
+            return null;
+        }
+        return session.username;
+    }
+
+    public void revoke(String token) {
+        if (token != null) {
+            tokens.remove(token);
+        }
+    }
+
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(session -> session.expiresAt < now);
+    }
+
+    private static final class VerifiedSession {
+        final String username;
+        final long expiresAt;
+
+        VerifiedSession(String username, long expiresAt) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
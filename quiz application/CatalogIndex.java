@@ -0,0 +1,150 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Base of the indexes that follow the catalog's questions incrementally.
+// Every indexed question is a document numbered in insertion order. sync
+// compares each quiz's question list with the one indexed last by identity,
+// so only questions that were added, replaced or removed reach the
+// subclass. Removed documents are masked and dropped once they outnumber
+// the live ones; the subclass renumbers its own per-document data then.
+// Subclasses guard their state with the same monitor as sync.
+abstract class CatalogIndex {
+    private final Map<String, IndexedQuiz> quizzes = new HashMap<>();
+    // Per document; a null question marks a removed document
+    protected Question[] questions = new Question[1024];
+    protected String[] quizTitles = new String[1024];
+    protected int[] questionIndices = new int[1024];
+    protected int documentCount;
+    protected int liveCount;
+
+    // Brings the index up to date with the catalog's latest versions. Reads
+    // the catalog under the index lock, so concurrent callers cannot apply an
+    // older catalog over a newer one.
+    public synchronized void sync(QuizCatalog catalog) {
+        List<Quiz> latest = catalog.getQuizzes();
+        Set<String> present = new HashSet<>();
+        for (Quiz quiz : latest) {
+            present.add(quiz.getTitle());
+            IndexedQuiz indexed = quizzes.get(quiz.getTitle());
+            if (indexed == null) {
+                indexed = new IndexedQuiz();
+                quizzes.put(quiz.getTitle(), indexed);
+            }
+            if (indexed.version != quiz) {
+                syncQuiz(quiz, indexed);
+            }
+        }
+        quizzes.entrySet().removeIf(entry -> {
+            if (present.contains(entry.getKey())) {
+                return false;
+            }
+            for (int i = 0; i < entry.getValue().size; i++) {
+                remove(entry.getValue().documents[i]);
+            }
+            return true;
+        });
+        if (documentCount - liveCount > Math.max(1024, liveCount)) {
+            compact();
+        }
+    }
+
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    // Makes room for documents up to capacity in the subclass's arrays.
+    protected abstract void growDocuments(int capacity);
+
+    protected abstract void documentAdded(int document, Question question);
+
+    protected abstract void documentRemoved(int document);
+
+    // renumbered maps old document numbers to new ones, -1 for removed
+    // documents; the base arrays are already compacted.
+    protected abstract void documentsCompacted(int[] renumbered, int liveCount);
+
+    private void syncQuiz(Quiz quiz, IndexedQuiz indexed) {
+        List<Question> current = quiz.getQuestions();
+        int common = Math.min(current.size(), indexed.size);
+        for (int i = 0; i < common; i++) {
+            int document = indexed.documents[i];
+            if (questions[document] != current.get(i)) {
+                remove(document);
+                indexed.documents[i] = add(quiz.getTitle(), i, current.get(i));
+            }
+        }
+        for (int i = common; i < indexed.size; i++) {
+            remove(indexed.documents[i]);
+        }
+        if (indexed.documents.length < current.size()) {
+            indexed.documents = Arrays.copyOf(indexed.documents, Math.max(current.size(), indexed.documents.length * 2));
+        }
+        for (int i = common; i < current.size(); i++) {
+            indexed.documents[i] = add(quiz.getTitle(), i, current.get(i));
+        }
+        indexed.size = current.size();
+        indexed.version = quiz;
+    }
+
+    private int add(String quizTitle, int questionIndex, Question question) {
+        if (documentCount == questions.length) {
+            int capacity = documentCount * 2;
+            questions = Arrays.copyOf(questions, capacity);
+            quizTitles = Arrays.copyOf(quizTitles, capacity);
+            questionIndices = Arrays.copyOf(questionIndices, capacity);
+            growDocuments(capacity);
+        }
+        int document = documentCount++;
+        questions[document] = question;
+        quizTitles[document] = quizTitle;
+        questionIndices[document] = questionIndex;
+        liveCount++;
+        documentAdded(document, question);
+        return document;
+    }
+
+    private void remove(int document) {
+        if (questions[document] != null) {
+            questions[document] = null;
+            liveCount--;
+            documentRemoved(document);
+        }
+    }
+
+    private void compact() {
+        int[] renumbered = new int[documentCount];
+        int live = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (questions[document] == null) {
+                renumbered[document] = -1;
+            } else {
+                renumbered[document] = live;
+                questions[live] = questions[document];
+                quizTitles[live] = quizTitles[document];
+                questionIndices[live] = questionIndices[document];
+                live++;
+            }
+        }
+        Arrays.fill(questions, live, documentCount, null);
+        Arrays.fill(quizTitles, live, documentCount, null);
+        documentCount = live;
+        documentsCompacted(renumbered, live);
+        for (IndexedQuiz indexed : quizzes.values()) {
+            for (int i = 0; i < indexed.size; i++) {
+                indexed.documents[i] = renumbered[indexed.documents[i]];
+            }
+        }
+    }
+
+    private static final class IndexedQuiz {
+        Quiz version;
+        int[] documents = new int[16];
+        int size;
+    }
+}
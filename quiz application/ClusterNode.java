@@ -0,0 +1,868 @@
+package com.example.demo;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Clustering mode. Every node runs a full QuizEngine, but a user's account,
+// tokens, sessions and attempt history live only on the node the
+// consistent-hash ring assigns the username to. The quiz catalog is
+// replicated to every node. QuizHttpServer hands requests for another
+// node's user to forward, which relays them over a small framed TCP
+// protocol to the owner and copies its response back, so clients may talk
+// to any node.
+//
+// Attempts are not replicated, so leaderboards, ranks, item statistics and
+// admin attempt reports cover only the users of the node that answers them:
+// the caller's owner for token-routed requests. There is no cluster-wide view.
+//
+// Each connection starts with a mutual challenge-response over the shared
+// secret, so only nodes holding it can relay requests or push catalog edits.
+// The traffic itself is not encrypted; keep the cluster ports on a private
+// network. Each pooled connection then carries one request at a time:
+//   HTTP           client, method, uri, headers, body -> status, headers, body
+//   CATALOG        edits                              -> ack
+//   FETCH_CATALOG                                     -> edits
+//
+// An edit carries one quiz, or a deletion, stamped (clock, node id) by the
+// node that made it, with the clock bumped past every clock that node has
+// seen. Each title is last writer wins on its own stamp, so concurrent edits
+// to different quizzes on different nodes all survive. Edits made within
+// REPLICATION_DELAY_MILLIS are pushed together; a node joining or restarting
+// fetches every stamped edit from its peers. The clock and stamps are saved
+// with the catalog snapshot, together with the quizzes they stamp, so a
+// restarted node neither reuses old clock values nor mistakes its own
+// loaded quizzes for unstamped ones; it pushes its stamps once on start in
+// case it stopped before pushing its last edits.
+//
+// Several JVMs on one host, one per node:
+//   java -Dquiz.cluster.nodes=127.0.0.1:7101,127.0.0.1:7102,127.0.0.1:7103 \
+//        -Dquiz.cluster.self=127.0.0.1:7101 -Dquiz.cluster.secret=... \
+//        com.example.demo.QuizHttpServer 8081 data-1
+public class ClusterNode implements Closeable {
+    static final long REPLICATION_DELAY_MILLIS = 200;
+    static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int OP_HTTP = 1;
+    private static final int OP_CATALOG = 2;
+    private static final int OP_FETCH_CATALOG = 3;
+    private static final int NONCE_BYTES = 16;
+    private static final int MIN_SECRET_BYTES = 16;
+
+    private final QuizEngine engine;
+    private final String self;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private final ConsistentHashRing ring;
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final ServerSocket server;
+    // Closed with the node; a blocked read does not notice the executor shutting down
+    private final Set<Socket> accepted = ConcurrentHashMap.newKeySet();
+    private final ExecutorService connectionExecutor = QuizHttpServer.newRequestExecutor();
+    private final ScheduledExecutorService replicator;
+    private final AtomicBoolean replicationPending = new AtomicBoolean();
+    private final Metrics.Counter forwarded;
+    private final Metrics.Counter served;
+    private final Metrics.Counter catalogInstalls;
+    private final Metrics.Counter handshakeFailures;
+    private final Metrics.Timer forwardTimer;
+    private volatile HttpHandler localHandler;
+    private volatile boolean closed;
+
+    // Guarded by catalogLock
+    private final Object catalogLock = new Object();
+    private long catalogClock;
+    // Latest stamp per title, deletions included
+    private final Map<String, Stamp> stamps = new HashMap<>();
+    // The local quiz each title had when last stamped or installed; a different
+    // instance in the catalog is a local edit not stamped yet
+    private final Map<String, Quiz> replicated = new HashMap<>();
+    // Stamped local edits waiting for the next push
+    private final Set<String> unpushed = new LinkedHashSet<>();
+
+    // Node ids are the host:port each node's cluster protocol listens on. Every
+    // node must be given the same secret.
+    public ClusterNode(QuizEngine engine, String self, List<String> nodes, byte[] secret) throws IOException {
+        if (!nodes.contains(self)) {
+            throw new IllegalArgumentException("Node " + self + " is not one of " + nodes);
+        }
+        if (secret == null || secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("The cluster secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        this.engine = engine;
+        this.self = self;
+        this.secret = secret.clone();
+        this.ring = new ConsistentHashRing(nodes);
+        for (String node : nodes) {
+            if (!node.equals(self)) {
+                peers.put(node, new Peer(address(node), this.secret));
+            }
+        }
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(address(self), 1024);
+        this.replicator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-replicator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Metrics metrics = engine.getMetrics();
+        this.forwarded = metrics.counter("quiz_cluster_forwarded_total", "Requests relayed to the owning node");
+        this.served = metrics.counter("quiz_cluster_served_total", "Requests served on behalf of other nodes");
+        this.catalogInstalls = metrics.counter("quiz_cluster_catalog_installs_total",
+                "Quiz edits and deletions received from other nodes and installed");
+        this.handshakeFailures = metrics.counter("quiz_cluster_handshake_failures_total",
+                "Cluster connections refused for failing the shared-secret handshake");
+        this.forwardTimer = metrics.timer("quiz_cluster_forward_seconds", "Round trip of a relayed request");
+        byte[] saved = engine.takeSavedReplicationState();
+        if (saved != null) {
+            restoreStamps(saved);
+        }
+    }
+
+    // Starts serving peers; handler runs requests forwarded to this node.
+    public void start(HttpHandler handler) {
+        this.localHandler = handler;
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        synchronized (catalogLock) {
+            // What this node loaded itself is not an edit to push
+            for (Quiz quiz : engine.getCatalog().getQuizzes()) {
+                replicated.put(quiz.getTitle(), quiz);
+            }
+        }
+        engine.setReplicationState(this::writeStamps);
+        engine.setCatalogListener(this::catalogChanged);
+        fetchCatalog();
+        boolean restored;
+        synchronized (catalogLock) {
+            unpushed.addAll(stamps.keySet());
+            restored = !unpushed.isEmpty();
+        }
+        if (restored) {
+            catalogChanged();
+        }
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public String ownerOf(String username) {
+        return ring.ownerOf(username);
+    }
+
+    public boolean isLocal(String username) {
+        return ownerOf(username).equals(self);
+    }
+
+    public long getCatalogClock() {
+        synchronized (catalogLock) {
+            return catalogClock;
+        }
+    }
+
+    // Tokens handed out in cluster mode carry the username in front so any
+    // node can route them; only the owner can verify the part after the dot.
+    static String routingToken(String username, String token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + "." + token;
+    }
+
+    // Username a routing token was issued to, or null for a plain token.
+    static String routingUser(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Relays the exchange to its owner and writes the owner's response back.
+    // The request body has already been read by the caller.
+    public void forward(String node, HttpExchange exchange, byte[] body) throws IOException {
+        Peer peer = peers.get(node);
+        if (peer == null) {
+            throw new IllegalArgumentException("Unknown node: " + node);
+        }
+        long start = Metrics.start();
+        ByteArrayOutputStream request = new ByteArrayOutputStream(body.length + 256);
+        DataOutputStream out = new DataOutputStream(request);
+        InetSocketAddress client = exchange.getRemoteAddress();
+        out.writeUTF(client == null || client.getAddress() == null ? "" : client.getAddress().getHostAddress());
+        out.writeInt(client == null ? 0 : client.getPort());
+        out.writeUTF(exchange.getRequestMethod());
+        out.writeUTF(exchange.getRequestURI().toString());
+        writeHeaders(out, exchange.getRequestHeaders());
+        out.writeInt(body.length);
+        out.write(body);
+        // Only a request that cannot change state is safe to resend after a
+        // dropped connection; the owner may already have run it
+        String method = exchange.getRequestMethod();
+        boolean idempotent = method.equals("GET") || method.equals("HEAD");
+        byte[] response = peer.call(OP_HTTP, request.toByteArray(), idempotent);
+        forwardTimer.stop(start);
+        forwarded.increment();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response));
+        int status = in.readInt();
+        readHeaders(in, exchange.getResponseHeaders());
+        byte[] responseBody = new byte[in.readInt()];
+        in.readFully(responseBody);
+        exchange.sendResponseHeaders(status, responseBody.length == 0 ? -1 : responseBody.length);
+        try (OutputStream bodyOut = exchange.getResponseBody()) {
+            bodyOut.write(responseBody);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        accepted.add(socket);
+        try (Socket connection = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+            // A silent client must not hold a connection thread before proving itself
+            connection.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            if (!acceptHandshake(in, out)) {
+                handshakeFailures.increment();
+                return;
+            }
+            connection.setSoTimeout(0);
+            while (true) {
+                int op;
+                try {
+                    op = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] request = new byte[in.readInt()];
+                in.readFully(request);
+                byte[] response;
+                switch (op) {
+                    case OP_HTTP:
+                        response = serveHttp(request);
+                        break;
+                    case OP_CATALOG:
+                        receiveCatalog(request);
+                        response = new byte[0];
+                        break;
+                    case OP_FETCH_CATALOG:
+                        response = encodeCatalog();
+                        break;
+                    default:
+                        throw new IOException("Unknown cluster op " + op);
+                }
+                out.writeInt(response.length);
+                out.write(response);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Peer went away; it reconnects on its next request
+        } finally {
+            accepted.remove(socket);
+        }
+    }
+
+    // Server side: send a nonce, check the client's MAC over both nonces, then
+    // prove knowledge of the secret in turn.
+    private boolean acceptHandshake(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] serverNonce = new byte[NONCE_BYTES];
+        random.nextBytes(serverNonce);
+        out.write(serverNonce);
+        out.flush();
+        byte[] clientNonce = new byte[NONCE_BYTES];
+        byte[] clientMac = new byte[32];
+        in.readFully(clientNonce);
+        in.readFully(clientMac);
+        if (!MessageDigest.isEqual(clientMac, handshakeMac(secret, 'C', serverNonce, clientNonce))) {
+            return false;
+        }
+        out.write(handshakeMac(secret, 'S', serverNonce, clientNonce));
+        out.flush();
+        return true;
+    }
+
+    // The role byte keeps a MAC from one side being replayed as the other's.
+    static byte[] handshakeMac(byte[] secret, char role, byte[] serverNonce, byte[] clientNonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            mac.update((byte) role);
+            mac.update(serverNonce);
+            mac.update(clientNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private byte[] serveHttp(byte[] request) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+        String clientHost = in.readUTF();
+        int clientPort = in.readInt();
+        // An IP literal; no lookup
+        InetSocketAddress client = clientHost.isEmpty() ? null
+                : new InetSocketAddress(InetAddress.getByName(clientHost), clientPort);
+        String method = in.readUTF();
+        URI uri = URI.create(in.readUTF());
+        Headers headers = new Headers();
+        readHeaders(in, headers);
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+
+        ForwardedExchange exchange = new ForwardedExchange(client, method, uri, headers, body);
+        localHandler.handle(exchange);
+        served.increment();
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream(exchange.responseBody.size() + 128);
+        DataOutputStream out = new DataOutputStream(response);
+        out.writeInt(exchange.responseCode);
+        writeHeaders(out, exchange.responseHeaders);
+        out.writeInt(exchange.responseBody.size());
+        exchange.responseBody.writeTo(out);
+        return response.toByteArray();
+    }
+
+    private static void writeHeaders(DataOutputStream out, Headers headers) throws IOException {
+        int count = 0;
+        for (List<String> values : headers.values()) {
+            count += values.size();
+        }
+        out.writeInt(count);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static void readHeaders(DataInputStream in, Headers headers) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            headers.add(in.readUTF(), in.readUTF());
+        }
+    }
+
+    private void catalogChanged() {
+        if (replicationPending.compareAndSet(false, true)) {
+            try {
+                replicator.schedule(this::replicateCatalog, REPLICATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closing
+            }
+        }
+    }
+
+    // Pushes local edits made since the last push. A peer that is down misses
+    // the push and fetches every edit when it starts.
+    private void replicateCatalog() {
+        replicationPending.set(false);
+        byte[] edits;
+        synchronized (catalogLock) {
+            stampLocalEdits();
+            if (unpushed.isEmpty()) {
+                return;
+            }
+            edits = encodeEdits(unpushed);
+            unpushed.clear();
+        }
+        for (Peer peer : peers.values()) {
+            try {
+                peer.call(OP_CATALOG, edits, true);
+            } catch (IOException e) {
+                // Down; catches up with FETCH_CATALOG on restart
+            }
+        }
+    }
+
+    private void fetchCatalog() {
+        for (Peer peer : peers.values()) {
+            try {
+                receiveCatalog(peer.call(OP_FETCH_CATALOG, new byte[0], true));
+            } catch (IOException e) {
+                // Not up yet; it will push to us once it has edits
+            }
+        }
+    }
+
+    // Stamps every title whose local quiz changed, appeared or disappeared
+    // since it was last stamped or installed. Caller holds catalogLock.
+    private void stampLocalEdits() {
+        QuizCatalog.Version version = engine.getCatalog().current();
+        List<String> edited = new ArrayList<>();
+        for (Quiz quiz : version.getQuizzes()) {
+            if (replicated.get(quiz.getTitle()) != quiz) {
+                edited.add(quiz.getTitle());
+            }
+        }
+        for (String title : replicated.keySet()) {
+            if (version.find(title) == null) {
+                edited.add(title);
+            }
+        }
+        for (String title : edited) {
+            Quiz quiz = version.find(title);
+            stamps.put(title, new Stamp(++catalogClock, self, quiz == null));
+            if (quiz == null) {
+                replicated.remove(title);
+            } else {
+                replicated.put(title, quiz);
+            }
+            unpushed.add(title);
+        }
+    }
+
+    // Saved by QuizPersistence with the catalog snapshot. Local edits are stamped
+    // first, so the quizzes returned are exactly the stamped ones, in catalog order.
+    private List<Quiz> writeStamps(DataOutput out) throws IOException {
+        synchronized (catalogLock) {
+            stampLocalEdits();
+            out.writeLong(catalogClock);
+            out.writeInt(stamps.size());
+            for (Map.Entry<String, Stamp> entry : stamps.entrySet()) {
+                Stamp stamp = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(stamp.clock);
+                out.writeUTF(stamp.writer);
+                out.writeBoolean(stamp.deleted);
+            }
+            Map<String, Quiz> stamped = new LinkedHashMap<>();
+            for (Quiz quiz : engine.getCatalog().current().getQuizzes()) {
+                if (replicated.containsKey(quiz.getTitle())) {
+                    stamped.put(quiz.getTitle(), replicated.get(quiz.getTitle()));
+                }
+            }
+            // Edited or deleted since stampLocalEdits; saved as stamped
+            for (Map.Entry<String, Quiz> quiz : replicated.entrySet()) {
+                stamped.putIfAbsent(quiz.getKey(), quiz.getValue());
+            }
+            return new ArrayList<>(stamped.values());
+        }
+    }
+
+    private void restoreStamps(byte[] saved) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(saved));
+        try {
+            catalogClock = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                stamps.put(in.readUTF(), new Stamp(in.readLong(), in.readUTF(), in.readBoolean()));
+            }
+        } catch (IOException e) {
+            // The snapshot's checksum covers this; a short read means a bug, not damage
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] encodeCatalog() {
+        synchronized (catalogLock) {
+            stampLocalEdits();
+            return encodeEdits(stamps.keySet());
+        }
+    }
+
+    // Caller holds catalogLock.
+    private byte[] encodeEdits(Collection<String> titles) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(titles.size());
+            for (String title : titles) {
+                Stamp stamp = stamps.get(title);
+                out.writeUTF(title);
+                out.writeLong(stamp.clock);
+                out.writeUTF(stamp.writer);
+                out.writeBoolean(stamp.deleted);
+                if (!stamp.deleted) {
+                    QuizPersistence.writeQuiz(out, replicated.get(title));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Installs each edit stamped newer than what this node has for its title.
+    // Local edits are stamped first, so one made since the last push competes
+    // with its own, newer stamp instead of being overwritten unseen.
+    private void receiveCatalog(byte[] edits) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(edits));
+        int installed;
+        synchronized (catalogLock) {
+            stampLocalEdits();
+            int count = in.readInt();
+            Map<String, Quiz> expected = new HashMap<>();
+            List<Quiz> quizzes = new ArrayList<>();
+            List<String> deleted = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String title = in.readUTF();
+                Stamp stamp = new Stamp(in.readLong(), in.readUTF(), in.readBoolean());
+                Quiz quiz = stamp.deleted ? null : QuizPersistence.readQuiz(in);
+                catalogClock = Math.max(catalogClock, stamp.clock);
+                if (!stamp.isNewerThan(stamps.get(title))) {
+                    continue;
+                }
+                stamps.put(title, stamp);
+                unpushed.remove(title);
+                expected.put(title, replicated.get(title));
+                if (quiz == null) {
+                    deleted.add(title);
+                } else {
+                    quizzes.add(quiz);
+                }
+            }
+            if (expected.isEmpty()) {
+                return;
+            }
+            QuizCatalog.Version version = engine.installQuizzes(expected, quizzes, deleted);
+            // A title that took a local edit meanwhile keeps it; the next
+            // stampLocalEdits gives that edit a newer stamp than this one
+            for (Quiz quiz : quizzes) {
+                if (version.find(quiz.getTitle()) == quiz) {
+                    replicated.put(quiz.getTitle(), quiz);
+                }
+            }
+            for (String title : deleted) {
+                if (version.find(title) == null) {
+                    replicated.remove(title);
+                }
+            }
+            installed = expected.size();
+        }
+        catalogInstalls.add(installed);
+    }
+
+    private static InetSocketAddress address(String node) {
+        int colon = node.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected host:port but got '" + node + "'");
+        }
+        return new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        replicator.shutdownNow();
+        server.close();
+        connectionExecutor.shutdownNow();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+        for (Peer peer : peers.values()) {
+            peer.close();
+        }
+    }
+
+    // Pool of connections to one peer; each call borrows one for a single round trip.
+    private static final class Peer {
+        private final InetSocketAddress address;
+        private final byte[] secret;
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        Peer(InetSocketAddress address, byte[] secret) {
+            this.address = address;
+            this.secret = secret;
+        }
+
+        // A pooled connection that fails may have been closed by a peer restart
+        // before the request reached it, or after the peer ran it; the two look
+        // the same here, so only an idempotent request is retried on a fresh one.
+        byte[] call(int op, byte[] request, boolean idempotent) throws IOException {
+            Connection connection = idle.poll();
+            if (connection != null) {
+                try {
+                    byte[] response = connection.call(op, request);
+                    idle.offer(connection);
+                    return response;
+                } catch (EOFException | SocketException e) {
+                    // The rest of the pool most likely went with the same restart
+                    connection.close();
+                    close();
+                    if (!idempotent) {
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    connection.close();
+                    throw e;
+                }
+            }
+            connection = new Connection(address, secret);
+            try {
+                byte[] response = connection.call(op, request);
+                idle.offer(connection);
+                return response;
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address, byte[] secret) throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                handshake(secret);
+                socket.setSoTimeout(0);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        // Client side of ClusterNode.acceptHandshake.
+        private void handshake(byte[] secret) throws IOException {
+            byte[] serverNonce = new byte[NONCE_BYTES];
+            in.readFully(serverNonce);
+            byte[] clientNonce = new byte[NONCE_BYTES];
+            new SecureRandom().nextBytes(clientNonce);
+            out.write(clientNonce);
+            out.write(handshakeMac(secret, 'C', serverNonce, clientNonce));
+            out.flush();
+            byte[] serverMac = new byte[32];
+            try {
+                in.readFully(serverMac);
+            } catch (EOFException e) {
+                throw new IOException("Peer " + socket.getRemoteSocketAddress() + " refused the cluster secret");
+            }
+            if (!MessageDigest.isEqual(serverMac, handshakeMac(secret, 'S', serverNonce, clientNonce))) {
+                throw new IOException("Peer " + socket.getRemoteSocketAddress() + " does not hold the cluster secret");
+            }
+        }
+
+        byte[] call(int op, byte[] request) throws IOException {
+            out.writeInt(op);
+            out.writeInt(request.length);
+            out.write(request);
+            out.flush();
+            byte[] response = new byte[in.readInt()];
+            in.readFully(response);
+            return response;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already broken
+            }
+        }
+    }
+
+    // Orders edits to one title: higher clock wins, ties go to the higher node id.
+    private static final class Stamp {
+        private final long clock;
+        private final String writer;
+        private final boolean deleted;
+
+        Stamp(long clock, String writer, boolean deleted) {
+            this.clock = clock;
+            this.writer = writer;
+            this.deleted = deleted;
+        }
+
+        boolean isNewerThan(Stamp other) {
+            return other == null || clock > other.clock || (clock == other.clock && writer.compareTo(other.writer) > 0);
+        }
+    }
+
+    // A relayed request run through the normal HTTP handler on the owning node,
+    // with the response buffered so it can be framed back to the caller.
+    static final class ForwardedExchange extends HttpExchange {
+        private final InetSocketAddress client;
+        private final String method;
+        private final URI uri;
+        private final Headers requestHeaders;
+        private final Headers responseHeaders = new Headers();
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private InputStream requestBody;
+        private OutputStream responseStream;
+        private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        private int responseCode = -1;
+
+        ForwardedExchange(InetSocketAddress client, String method, URI uri, Headers requestHeaders, byte[] body) {
+            this.client = client;
+            this.method = method;
+            this.uri = uri;
+            this.requestHeaders = requestHeaders;
+            this.requestBody = new ByteArrayInputStream(body);
+            this.responseStream = responseBody;
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return method;
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return requestBody;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return responseStream;
+        }
+
+        @Override
+        public void sendResponseHeaders(int code, long length) {
+            this.responseCode = code;
+        }
+
+        // The client of the node that relayed the request.
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return client;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        }
+
+        @Override
+        public void setStreams(InputStream in, OutputStream out) {
+            if (in != null) {
+                requestBody = in;
+            }
+            if (out != null) {
+                responseStream = out;
+            }
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
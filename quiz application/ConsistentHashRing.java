@@ -0,0 +1,85 @@
+package com.example.demo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Immutable consistent-hash ring over node ids. Each node is placed at many
+// virtual points so keys spread evenly, and adding or removing a node only
+// moves the keys between it and its ring neighbours. Lookup is a binary
+// search over a sorted primitive array.
+public final class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(List<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes must be positive: " + virtualNodes);
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        int count = nodes.size() * virtualNodes;
+        long[] unsorted = new long[count];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                unsorted[node * virtualNodes + replica] = hash(nodes.get(node) + "#" + replica);
+            }
+        }
+        // Sort the points and carry their owners along
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(unsorted[a], unsorted[b]));
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = unsorted[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public String ownerOf(String key) {
+        return nodes.get(ownerIndexOf(key));
+    }
+
+    // First point clockwise from the key's hash, wrapping past the end.
+    public int ownerIndexOf(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the murmur3 mixer so
+    // similar keys (user1, user2, ...) land far apart.
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,555 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+// Near-duplicate questions by Jaccard similarity of their shingle sets. A
+// question's text is its title and its options in sorted order, lower-cased
+// word by word; its shingles are all runs of SHINGLE_LENGTH characters. A
+// MinHash signature of SIGNATURE_SIZE values is cut into BANDS bands, and
+// questions sharing any band are candidates (locality-sensitive hashing):
+// a pair at similarity 0.8 collides with probability above 0.98, a pair at
+// 0.3 about 6% of the time. Candidates are confirmed with the exact
+// similarity, so no false positives are reported: every reported match,
+// including each member of a findGroups group against its first member,
+// clears the threshold.
+//
+// As a catalog index it keeps one hash table per band, whose chains link
+// documents newest first, so checking a new question reads at most
+// MAX_BUCKET_SCAN documents per band. findGroups is the batch pass over a
+// whole catalog on a fork-join pool.
+public class DuplicateDetector extends CatalogIndex {
+    public static final double DEFAULT_THRESHOLD = 0.8;
+    static final int SHINGLE_LENGTH = 4;
+    static final int BANDS = 8;
+    static final int ROWS = 4;
+    static final int SIGNATURE_BITS = 5;
+    static final int SIGNATURE_SIZE = 1 << SIGNATURE_BITS;
+    static final int MAX_BUCKET_SCAN = 64;
+    // Batch pass: questions per leaf task, and band-value partitions sorted independently
+    private static final int CHUNK = 4096;
+    private static final int PARTITION_BITS = 8;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    // Members of one band bucket are checked against this many earlier members
+    private static final int RUN_PIVOTS = 4;
+
+    // Per document, then band: the band's value and the next older document in its chain
+    private int[] bandValues = new int[1024 * BANDS];
+    private int[] nextInBand = new int[1024 * BANDS];
+    // Per band, open addressing; slot holds the chain's newest document + 1
+    private final int[][] tables = new int[BANDS][];
+    private final int[] tableSizes = new int[BANDS];
+
+    public DuplicateDetector() {
+        for (int band = 0; band < BANDS; band++) {
+            tables[band] = new int[1024];
+        }
+    }
+
+    // Title, then options in sorted order, as lower-cased words separated
+    // by single spaces.
+    static String normalizedText(Question question) {
+        StringBuilder text = new StringBuilder(question.getTitle().length() + 16 * question.getOptions().size());
+        appendWords(text, question.getTitle());
+        List<String> options = new ArrayList<>(question.getOptions());
+        options.sort(null);
+        for (String option : options) {
+            appendWords(text, option);
+        }
+        return text.toString();
+    }
+
+    private static void appendWords(StringBuilder text, String value) {
+        boolean separate = text.length() > 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (separate) {
+                    text.append(' ');
+                    separate = false;
+                }
+                text.append(Character.toLowerCase(c));
+            } else if (text.length() > 0) {
+                separate = true;
+            }
+        }
+    }
+
+    // Four chars fit one long, so a shingle is its own exact hash; text
+    // shorter than a shingle is one shingle.
+    private static int shingleCount(String text) {
+        return Math.max(1, text.length() - SHINGLE_LENGTH + 1);
+    }
+
+    private static long shingleAt(String text, int start) {
+        long shingle = 0;
+        int end = Math.min(text.length(), start + SHINGLE_LENGTH);
+        for (int i = start; i < end; i++) {
+            shingle = shingle << 16 | text.charAt(i);
+        }
+        return shingle;
+    }
+
+    // Sorted and distinct, for exact similarity.
+    static long[] shingles(String text) {
+        long[] shingles = new long[shingleCount(text)];
+        for (int i = 0; i < shingles.length; i++) {
+            shingles[i] = shingleAt(text, i);
+        }
+        Arrays.sort(shingles);
+        int distinct = 1;
+        for (int i = 1; i < shingles.length; i++) {
+            if (shingles[i] != shingles[distinct - 1]) {
+                shingles[distinct++] = shingles[i];
+            }
+        }
+        return Arrays.copyOf(shingles, distinct);
+    }
+
+    static long[] shingles(Question question) {
+        return shingles(normalizedText(question));
+    }
+
+    // One-permutation MinHash: a single hash per shingle, whose top bits
+    // pick one of SIGNATURE_SIZE bins and whose low bits compete for that
+    // bin's minimum. A bin no shingle reached borrows from the next filled
+    // bin to its right, offset by the distance (rotation densification), so
+    // two texts still agree on a bin with probability close to their
+    // similarity. One hash per shingle instead of one per shingle and bin.
+    static int[] signature(String text) {
+        int[] signature = new int[SIGNATURE_SIZE];
+        boolean[] filled = new boolean[SIGNATURE_SIZE];
+        int count = shingleCount(text);
+        for (int s = 0; s < count; s++) {
+            long h = mix(shingleAt(text, s));
+            int bin = (int) (h >>> (64 - SIGNATURE_BITS));
+            int value = (int) h;
+            if (!filled[bin] || value < signature[bin]) {
+                signature[bin] = value;
+                filled[bin] = true;
+            }
+        }
+        for (int bin = 0; bin < SIGNATURE_SIZE; bin++) {
+            if (!filled[bin]) {
+                int distance = 1;
+                while (!filled[(bin + distance) & (SIGNATURE_SIZE - 1)]) {
+                    distance++;
+                }
+                signature[bin] = signature[(bin + distance) & (SIGNATURE_SIZE - 1)] + distance * 0x9E3779B9;
+            }
+        }
+        return signature;
+    }
+
+    static int bandValue(int[] signature, int band) {
+        int row = band * ROWS;
+        long low = (signature[row] & 0xFFFFFFFFL) | (long) signature[row + 1] << 32;
+        long high = (signature[row + 2] & 0xFFFFFFFFL) | (long) signature[row + 3] << 32;
+        return (int) (mix(low ^ mix(high)) >>> 32);
+    }
+
+    static double similarity(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    // Indexed questions at least threshold similar to question, most similar
+    // first. The question itself is never reported.
+    public synchronized List<Match> findDuplicates(Question question, double threshold) {
+        String text = normalizedText(question);
+        long[] shingles = shingles(text);
+        int[] signature = signature(text);
+        int[] checked = new int[BANDS * MAX_BUCKET_SCAN];
+        int checkedCount = 0;
+        List<Match> matches = new ArrayList<>();
+        for (int band = 0; band < BANDS; band++) {
+            int value = bandValue(signature, band);
+            int[] table = tables[band];
+            int slot = findSlot(table, band, value);
+            int document = table[slot] - 1;
+            for (int scanned = 0; document >= 0 && scanned < MAX_BUCKET_SCAN; scanned++) {
+                Question candidate = questions[document];
+                if (candidate != null && candidate != question && !contains(checked, checkedCount, document)) {
+                    checked[checkedCount++] = document;
+                    double similarity = similarity(shingles, shingles(candidate));
+                    if (similarity >= threshold) {
+                        matches.add(new Match(quizTitles[document], questionIndices[document], candidate, similarity));
+                    }
+                }
+                document = nextInBand[document * BANDS + band];
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::getSimilarity).reversed());
+        return matches;
+    }
+
+    private static boolean contains(int[] items, int count, int item) {
+        for (int i = 0; i < count; i++) {
+            if (items[i] == item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void growDocuments(int capacity) {
+        bandValues = Arrays.copyOf(bandValues, capacity * BANDS);
+        nextInBand = Arrays.copyOf(nextInBand, capacity * BANDS);
+    }
+
+    @Override
+    protected void documentAdded(int document, Question question) {
+        int[] signature = signature(normalizedText(question));
+        for (int band = 0; band < BANDS; band++) {
+            bandValues[document * BANDS + band] = bandValue(signature, band);
+            link(document, band);
+        }
+    }
+
+    // Removed documents stay in their chains until compaction; lookups skip them.
+    @Override
+    protected void documentRemoved(int document) {
+    }
+
+    @Override
+    protected void documentsCompacted(int[] renumbered, int liveCount) {
+        for (int document = 0; document < renumbered.length; document++) {
+            if (renumbered[document] >= 0) {
+                System.arraycopy(bandValues, document * BANDS, bandValues, renumbered[document] * BANDS, BANDS);
+            }
+        }
+        for (int band = 0; band < BANDS; band++) {
+            Arrays.fill(tables[band], 0);
+            tableSizes[band] = 0;
+        }
+        for (int document = 0; document < liveCount; document++) {
+            for (int band = 0; band < BANDS; band++) {
+                link(document, band);
+            }
+        }
+    }
+
+    private void link(int document, int band) {
+        int value = bandValues[document * BANDS + band];
+        int[] table = tables[band];
+        int slot = findSlot(table, band, value);
+        if (table[slot] == 0) {
+            if (++tableSizes[band] * 2 > table.length) {
+                table = rehash(band);
+                slot = findSlot(table, band, value);
+            }
+            nextInBand[document * BANDS + band] = -1;
+        } else {
+            nextInBand[document * BANDS + band] = table[slot] - 1;
+        }
+        table[slot] = document + 1;
+    }
+
+    // Slot holding the chain for value, or the empty slot where it would go.
+    private int findSlot(int[] table, int band, int value) {
+        int mask = table.length - 1;
+        int slot = (int) mix(value) & mask;
+        while (table[slot] != 0 && bandValues[(table[slot] - 1) * BANDS + band] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int[] rehash(int band) {
+        int[] old = tables[band];
+        int[] table = new int[old.length * 2];
+        for (int head : old) {
+            if (head != 0) {
+                table[findSlot(table, band, bandValues[(head - 1) * BANDS + band])] = head;
+            }
+        }
+        tables[band] = table;
+        return table;
+    }
+
+    // Groups of near-duplicate questions across the given quizzes, each in
+    // catalog order with similarities to its first member; groups ordered by
+    // their first member. Signatures, bucketing, sorting and verification
+    // all run as independent chunks on the pool, so the pass scales with
+    // its parallelism; a bucket with many members costs RUN_PIVOTS checks
+    // per member, not one per pair.
+    public static List<List<Match>> findGroups(List<Quiz> quizzes, double threshold, ForkJoinPool pool) {
+        int total = 0;
+        for (Quiz quiz : quizzes) {
+            total += quiz.getQuestions().size();
+        }
+        int n = total;
+        Question[] all = new Question[n];
+        String[] titles = new String[n];
+        int[] indices = new int[n];
+        int next = 0;
+        for (Quiz quiz : quizzes) {
+            for (int i = 0; i < quiz.getQuestions().size(); i++) {
+                all[next] = quiz.getQuestions().get(i);
+                titles[next] = quiz.getTitle();
+                indices[next++] = i;
+            }
+        }
+
+        // Band values, and how many fall in each (band, partition) per chunk
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        int segments = BANDS * PARTITIONS;
+        int[] values = new int[n * BANDS];
+        int[] counts = new int[chunks * segments];
+        parallelFor(pool, chunks, chunk -> {
+            int end = Math.min(n, (chunk + 1) * CHUNK);
+            for (int i = chunk * CHUNK; i < end; i++) {
+                int[] signature = signature(normalizedText(all[i]));
+                for (int band = 0; band < BANDS; band++) {
+                    int value = bandValue(signature, band);
+                    values[i * BANDS + band] = value;
+                    counts[chunk * segments + segment(band, value)]++;
+                }
+            }
+        });
+
+        // Where each chunk writes into each segment
+        int[] segmentStarts = new int[segments + 1];
+        int[] offsets = new int[chunks * segments];
+        int position = 0;
+        for (int segment = 0; segment < segments; segment++) {
+            segmentStarts[segment] = position;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                offsets[chunk * segments + segment] = position;
+                position += counts[chunk * segments + segment];
+            }
+        }
+        segmentStarts[segments] = position;
+
+        // Band value above question number; sorting a segment groups each bucket
+        long[] keys = new long[n * BANDS];
+        parallelFor(pool, chunks, chunk -> {
+            int end = Math.min(n, (chunk + 1) * CHUNK);
+            for (int i = chunk * CHUNK; i < end; i++) {
+                for (int band = 0; band < BANDS; band++) {
+                    int value = values[i * BANDS + band];
+                    keys[offsets[chunk * segments + segment(band, value)]++] = (long) value << 32 | i;
+                }
+            }
+        });
+
+        AtomicIntegerArray parents = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i++) {
+            parents.set(i, i);
+        }
+        parallelFor(pool, segments, segment -> {
+            int from = segmentStarts[segment];
+            int to = segmentStarts[segment + 1];
+            Arrays.sort(keys, from, to);
+            long[][] pivotShingles = new long[RUN_PIVOTS][];
+            int runStart = from;
+            while (runStart < to) {
+                int runEnd = runStart + 1;
+                while (runEnd < to && keys[runEnd] >>> 32 == keys[runStart] >>> 32) {
+                    runEnd++;
+                }
+                Arrays.fill(pivotShingles, null);
+                for (int k = runStart + 1; k < runEnd; k++) {
+                    int member = (int) keys[k];
+                    long[] memberShingles = null;
+                    for (int p = 0; p < RUN_PIVOTS && runStart + p < k; p++) {
+                        int pivot = (int) keys[runStart + p];
+                        if (find(parents, member) == find(parents, pivot)) {
+                            break;
+                        }
+                        if (pivotShingles[p] == null) {
+                            pivotShingles[p] = shingles(all[pivot]);
+                        }
+                        if (memberShingles == null) {
+                            memberShingles = shingles(all[member]);
+                        }
+                        if (similarity(memberShingles, pivotShingles[p]) >= threshold) {
+                            union(parents, member, pivot);
+                            break;
+                        }
+                    }
+                }
+                runStart = runEnd;
+            }
+        });
+
+        // Linked pairs chain, so a component can hold questions well below the
+        // threshold to its root. Each is split in catalog order: a question joins
+        // the first group whose first member it clears the threshold against,
+        // or starts a group of its own.
+        int[] sizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            sizes[find(parents, i)]++;
+        }
+        List<List<Integer>> components = new ArrayList<>();
+        int[] componentOf = new int[n];
+        Arrays.fill(componentOf, -1);
+        for (int i = 0; i < n; i++) {
+            int root = find(parents, i);
+            if (sizes[root] < 2) {
+                continue;
+            }
+            if (componentOf[root] < 0) {
+                componentOf[root] = components.size();
+                components.add(new ArrayList<>(sizes[root]));
+            }
+            components.get(componentOf[root]).add(i);
+        }
+        // By first member; a split-off group can start after the next component's first member
+        TreeMap<Integer, List<Match>> groups = new TreeMap<>();
+        for (List<Integer> component : components) {
+            List<long[]> leaderShingles = new ArrayList<>();
+            List<Integer> leaders = new ArrayList<>();
+            List<List<Match>> split = new ArrayList<>();
+            for (int i : component) {
+                long[] memberShingles = shingles(all[i]);
+                List<Match> group = null;
+                double best = 1.0;
+                for (int g = 0; g < split.size() && group == null; g++) {
+                    double similarity = similarity(memberShingles, leaderShingles.get(g));
+                    if (similarity >= threshold) {
+                        group = split.get(g);
+                        best = similarity;
+                    }
+                }
+                if (group == null) {
+                    group = new ArrayList<>();
+                    split.add(group);
+                    leaders.add(i);
+                    leaderShingles.add(memberShingles);
+                }
+                group.add(new Match(titles[i], indices[i], all[i], best));
+            }
+            for (int g = 0; g < split.size(); g++) {
+                if (split.get(g).size() >= 2) {
+                    groups.put(leaders.get(g), split.get(g));
+                }
+            }
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int segment(int band, int value) {
+        return band * PARTITIONS + (value >>> (32 - PARTITION_BITS));
+    }
+
+    // Path halving; a lost race only leaves a longer path.
+    private static int find(AtomicIntegerArray parents, int item) {
+        int parent = parents.get(item);
+        while (parent != item) {
+            int grandparent = parents.get(parent);
+            parents.compareAndSet(item, parent, grandparent);
+            item = grandparent;
+            parent = parents.get(item);
+        }
+        return item;
+    }
+
+    // The larger root is linked under the smaller, so roots only decrease
+    // and concurrent unions cannot form a cycle.
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA == rootB) {
+                return;
+            }
+            int high = Math.max(rootA, rootB);
+            int low = Math.min(rootA, rootB);
+            if (parents.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    private static void parallelFor(ForkJoinPool pool, int count, IntConsumer body) {
+        if (count > 0) {
+            pool.invoke(new RangeTask(0, count, body));
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        RangeTask(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, body), new RangeTask(middle, to, body));
+        }
+    }
+
+    // A question similar to the one checked, where it sits in its quiz.
+    public static final class Match {
+        private final String quizTitle;
+        private final int questionIndex;
+        private final Question question;
+        private final double similarity;
+
+        Match(String quizTitle, int questionIndex, Question question, double similarity) {
+            this.quizTitle = quizTitle;
+            this.questionIndex = questionIndex;
+            this.question = question;
+            this.similarity = similarity;
+        }
+
+        public String getQuizTitle() {
+            return quizTitle;
+        }
+
+        public int getQuestionIndex() {
+            return questionIndex;
+        }
+
+        public Question getQuestion() {
+            return question;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
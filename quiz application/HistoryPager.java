@@ -0,0 +1,213 @@
+package com.example.demo;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Paged view of one user's attempts, read from the attempt store on demand.
+// The default order (newest first, all quizzes) walks the user's row chain
+// and remembers where each visited page starts, so opening the view or
+// stepping to the next page reads one page of rows however long the history
+// is. A quiz filter or another order collects the user's row numbers once,
+// four bytes per attempt and no objects, and sorts them as primitives.
+// Rows are formatted for display only when their page is requested.
+// The pager sees the history as it was when it was created.
+public class HistoryPager {
+    public enum Sort { NEWEST_FIRST, OLDEST_FIRST, HIGHEST_SCORE, LOWEST_SCORE }
+
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final AttemptStore store;
+    private final String quizTitle;
+    private final Sort sort;
+    private final int pageSize;
+    private final int head;
+    private final int userCount;
+    // Newest-first chain walk: first row of each page reached so far
+    private int[] pageStarts = new int[16];
+    private int knownPages;
+    // Any other order or a filter: all matching rows in display order
+    private int[] rows;
+
+    HistoryPager(AttemptStore store, String username, String quizTitle, Sort sort, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.store = store;
+        this.quizTitle = quizTitle;
+        this.sort = sort;
+        this.pageSize = pageSize;
+        int[] chain = store.userChain(username);
+        this.head = chain[0];
+        this.userCount = chain[1];
+        pageStarts[0] = head;
+        knownPages = 1;
+        if (quizTitle != null || sort != Sort.NEWEST_FIRST) {
+            rows = collectRows();
+        }
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public String getQuizTitle() {
+        return quizTitle;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getTotalCount() {
+        return rows != null ? rows.length : userCount;
+    }
+
+    // At least one, so an empty history still shows an empty page.
+    public int getPageCount() {
+        return Math.max(1, (getTotalCount() + pageSize - 1) / pageSize);
+    }
+
+    public synchronized List<Row> getPage(int pageIndex) {
+        if (pageIndex < 0 || (long) pageIndex * pageSize >= getTotalCount()) {
+            return Collections.emptyList();
+        }
+        int count = Math.min(pageSize, getTotalCount() - pageIndex * pageSize);
+        List<Row> page = new ArrayList<>(count);
+        AttemptStore.Cursor cursor;
+        if (rows != null) {
+            cursor = store.rows(Arrays.copyOfRange(rows, pageIndex * pageSize, pageIndex * pageSize + count), count);
+        } else {
+            cursor = store.rows(chainPage(pageIndex, count), count);
+        }
+        while (cursor.next()) {
+            page.add(new Row(cursor));
+        }
+        return page;
+    }
+
+    // Walks forward from the nearest page start already known.
+    private int[] chainPage(int pageIndex, int count) {
+        while (knownPages <= pageIndex) {
+            int row = pageStarts[knownPages - 1];
+            for (int i = 0; i < pageSize; i++) {
+                row = store.previousRowAt(row);
+            }
+            if (knownPages == pageStarts.length) {
+                pageStarts = Arrays.copyOf(pageStarts, knownPages * 2);
+            }
+            pageStarts[knownPages++] = row;
+        }
+        int[] page = new int[count];
+        int row = pageStarts[pageIndex];
+        for (int i = 0; i < count; i++) {
+            page[i] = row;
+            row = store.previousRowAt(row);
+        }
+        return page;
+    }
+
+    private int[] collectRows() {
+        int quizId = quizTitle == null ? -1 : store.findQuizId(quizTitle);
+        if (quizTitle != null && quizId < 0) {
+            return new int[0];
+        }
+        int[] matching = new int[userCount];
+        int count = 0;
+        int row = head;
+        for (int i = 0; i < userCount; i++) {
+            if (quizId < 0 || store.quizIdAt(row) == quizId) {
+                matching[count++] = row;
+            }
+            row = store.previousRowAt(row);
+        }
+        matching = Arrays.copyOf(matching, count);
+        switch (sort) {
+            case OLDEST_FIRST:
+                for (int i = 0, j = count - 1; i < j; i++, j--) {
+                    int swap = matching[i];
+                    matching[i] = matching[j];
+                    matching[j] = swap;
+                }
+                break;
+            case HIGHEST_SCORE:
+            case LOWEST_SCORE:
+                sortByScore(matching, sort == Sort.HIGHEST_SCORE);
+                break;
+            default:
+                break;
+        }
+        return matching;
+    }
+
+    // Packs percentage (in basis points) above an inverted row number, so one
+    // primitive sort orders by score with newer attempts first among ties.
+    private void sortByScore(int[] matching, boolean highestFirst) {
+        long[] keys = new long[matching.length];
+        for (int i = 0; i < matching.length; i++) {
+            int row = matching[i];
+            int total = store.totalAt(row);
+            long basisPoints = total == 0 ? 0 : store.scoreAt(row) * 10_000L / total;
+            long rank = highestFirst ? 10_000 - basisPoints : basisPoints;
+            keys[i] = rank << 32 | (Integer.MAX_VALUE - row);
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            matching[i] = Integer.MAX_VALUE - (int) keys[i];
+        }
+    }
+
+    // One attempt with its display strings formatted once.
+    public static final class Row {
+        private final String username;
+        private final String quizTitle;
+        private final int score;
+        private final int totalQuestions;
+        private final long epochMillis;
+        private final String scoreText;
+        private final String dateText;
+
+        Row(AttemptStore.Cursor cursor) {
+            this.username = cursor.getUsername();
+            this.quizTitle = cursor.getQuizTitle();
+            this.score = cursor.getScore();
+            this.totalQuestions = cursor.getTotalQuestions();
+            this.epochMillis = cursor.getEpochMillis();
+            double percentage = totalQuestions == 0 ? 0 : (double) score / totalQuestions * 100;
+            this.scoreText = String.format("%d/%d (%.2f%%)", score, totalQuestions, percentage);
+            this.dateText = DATE_FORMAT.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()));
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getQuizTitle() {
+            return quizTitle;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getTotalQuestions() {
+            return totalQuestions;
+        }
+
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+
+        public String getScoreText() {
+            return scoreText;
+        }
+
+        public String getDateText() {
+            return dateText;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+// Canonical copies of strings repeated across many objects. USERNAMES and
+// QUIZ_TITLES are process-wide: attempts and sessions hold the table's copy
+// of a name instead of their own, which costs the same reference an id
+// would. Entries are weak, so a name no live object refers to is dropped by
+// the next collection and the tables track what is in memory, not every name
+// the process has seen. Lookups are striped to keep concurrent finishes off a
+// single lock. Ids that must survive a restart come from StringDictionary.
+final class InternTable {
+    static final InternTable USERNAMES = new InternTable();
+    static final InternTable QUIZ_TITLES = new InternTable();
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    InternTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // The table's copy of value, so the caller's copy can be collected.
+    String canonical(String value) {
+        int hash = value.hashCode();
+        Stripe stripe = stripes[(hash ^ hash >>> 16) & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<String> entry = stripe.entries.get(value);
+            String canonical = entry == null ? null : entry.get();
+            if (canonical == null) {
+                // The value refers to itself only weakly, so the key can still be collected
+                stripe.entries.put(value, new WeakReference<>(value));
+                canonical = value;
+            }
+            return canonical;
+        }
+    }
+
+    // Names currently held; drops as unused ones are collected.
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+        final WeakHashMap<String, WeakReference<String>> entries = new WeakHashMap<>();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo;
+
+// Three-parameter logistic item response model and the ability grid shared by
+// item selection and ability estimation. Ability (theta) is on the usual
+// standard-normal scale; everything adaptive is evaluated on GRID_POINTS
+// points between GRID_MIN and GRID_MAX.
+final class IrtModel {
+    static final double DEFAULT_DISCRIMINATION = 1.0;
+    static final double DEFAULT_DIFFICULTY = 0.0;
+    static final double DEFAULT_GUESSING = 0.0;
+
+    static final double GRID_MIN = -4.0;
+    static final double GRID_MAX = 4.0;
+    static final double GRID_STEP = 0.1;
+    static final int GRID_POINTS = (int) Math.round((GRID_MAX - GRID_MIN) / GRID_STEP) + 1;
+
+    // log of the standard normal prior at each grid point, up to a constant
+    static final double[] LOG_PRIOR = new double[GRID_POINTS];
+
+    static {
+        for (int g = 0; g < GRID_POINTS; g++) {
+            double theta = theta(g);
+            LOG_PRIOR[g] = -0.5 * theta * theta;
+        }
+    }
+
+    private IrtModel() {
+    }
+
+    static double theta(int gridPoint) {
+        return GRID_MIN + gridPoint * GRID_STEP;
+    }
+
+    static int nearestGridPoint(double theta) {
+        int g = (int) Math.round((theta - GRID_MIN) / GRID_STEP);
+        return Math.max(0, Math.min(GRID_POINTS - 1, g));
+    }
+
+    // Chance that a candidate of the given ability answers correctly.
+    static double probability(Question question, double theta) {
+        double c = question.getGuessing();
+        return c + (1 - c) / (1 + Math.exp(-question.getDiscrimination() * (theta - question.getDifficulty())));
+    }
+
+    // Fisher information of the item at theta: how much one response narrows
+    // the ability estimate there.
+    static double information(Question question, double theta) {
+        double a = question.getDiscrimination();
+        double c = question.getGuessing();
+        double p = probability(question, theta);
+        if (p <= 0 || p >= 1) {
+            return 0;
+        }
+        double ratio = (p - c) / (1 - c);
+        return a * a * ((1 - p) / p) * ratio * ratio;
+    }
+}
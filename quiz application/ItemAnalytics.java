@@ -0,0 +1,379 @@
+package com.example.demo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Live classical item statistics per question, fed from every finished
+// session: difficulty (p-value, share answered correctly), discrimination
+// (point-biserial correlation between getting the item right and the
+// candidate's score on the other questions, so an item does not correlate
+// with itself) and how often each option was selected.
+// Each question keeps a few striped accumulators; a finishing thread updates
+// the stripe its thread id maps to, so concurrent finishes rarely share a
+// lock. Stripes hold only sums, so reading merges them in O(stripes) and
+// accumulators from other processes can be merged the same way.
+// Questions are keyed by quiz title and a fingerprint of their content (title,
+// options, correct answers), and answers are attributed through the version
+// a session was drawn from. Statistics follow a question that is moved and
+// start over for one that is corrected, since the old answers were to a
+// different item. QuizPersistence saves them with each checkpoint, since
+// attempts keep only scores and the statistics cannot be rebuilt from them,
+// and drops those of questions no longer in the catalog.
+public class ItemAnalytics {
+    // Smallest power of two covering the core count
+    private static final int STRIPES = Integer.highestOneBit(
+            Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    // Quiz title to items by content key
+    private final Map<String, Map<Long, Item>> quizzes = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+
+    // Adds every answered question of a finished session.
+    public void record(QuizSession session, QuizAttempt attempt) {
+        int answered = session.getCurrentQuestionIndex();
+        if (answered == 0) {
+            return;
+        }
+        int rest = attempt.getTotalQuestions() - 1;
+        // The session's own version, whatever the catalog holds by now
+        List<Question> questions = session.getQuiz().getQuestions();
+        Map<Long, Item> items = quizzes.computeIfAbsent(session.getQuiz().getTitle(),
+                k -> new ConcurrentHashMap<>());
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        for (int position = 0; position < answered; position++) {
+            Question question = questions.get(session.getQuestionOrder(position));
+            long selected = session.getAnswer(position);
+            boolean correct = question.isCorrect(selected);
+            double restScore = rest <= 0 ? 0 : (double) (attempt.getScore() - (correct ? 1 : 0)) / rest;
+            items.computeIfAbsent(contentKey(question), k -> new Item(question.getOptions().size()))
+                    .stripe(stripe)
+                    .add(correct, selected, restScore);
+        }
+        updates.incrementAndGet();
+    }
+
+    // The question at index of the given quiz version.
+    public ItemStatistics getStatistics(Quiz quiz, int index) {
+        Question question = quiz.getQuestions().get(index);
+        Map<Long, Item> items = quizzes.get(quiz.getTitle());
+        Item item = items == null ? null : items.get(contentKey(question));
+        Accumulator merged = new Accumulator(question.getOptions().size());
+        if (item != null) {
+            item.mergeInto(merged);
+        }
+        return merged.toStatistics(question);
+    }
+
+    // One entry per question of the given quiz version, in quiz order.
+    public List<ItemStatistics> getStatistics(Quiz quiz) {
+        List<ItemStatistics> statistics = new ArrayList<>(quiz.getQuestions().size());
+        for (int i = 0; i < quiz.getQuestions().size(); i++) {
+            statistics.add(getStatistics(quiz, i));
+        }
+        return statistics;
+    }
+
+    // Drops the statistics of a deleted quiz's questions.
+    public void forget(Quiz quiz) {
+        if (quizzes.remove(quiz.getTitle()) != null) {
+            updates.incrementAndGet();
+        }
+    }
+
+    // Drops the statistics of questions no longer in any of the given quizzes,
+    // such as corrected or removed ones. A session still running on an older
+    // version may bring some back; the next call drops them again.
+    void retain(Collection<Quiz> current) {
+        Map<String, Set<Long>> keys = new HashMap<>();
+        for (Quiz quiz : current) {
+            Set<Long> quizKeys = keys.computeIfAbsent(quiz.getTitle(), k -> new HashSet<>());
+            for (Question question : quiz.getQuestions()) {
+                quizKeys.add(contentKey(question));
+            }
+        }
+        for (Map.Entry<String, Map<Long, Item>> quiz : quizzes.entrySet()) {
+            Set<Long> quizKeys = keys.get(quiz.getKey());
+            if (quizKeys == null) {
+                quizzes.remove(quiz.getKey());
+            } else {
+                quiz.getValue().keySet().retainAll(quizKeys);
+            }
+        }
+    }
+
+    // What a candidate sees and how it is scored; topic and item parameters
+    // can change without making it a different question.
+    static long contentKey(Question question) {
+        long hash = Quiz.mix(0xcbf29ce484222325L, Objects.hashCode(question.getTitle()));
+        for (String option : question.getOptions()) {
+            hash = Quiz.mix(hash, option.hashCode());
+        }
+        hash = Quiz.mix(hash, question.getOptions().size());
+        return Quiz.mix(hash, Long.hashCode(question.getCorrectMask()));
+    }
+
+    // Changes with every recorded session, so a saver can skip unchanged statistics.
+    long getUpdateCount() {
+        return updates.get();
+    }
+
+    // Each item's merged accumulator; sessions may keep finishing meanwhile.
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(quizzes.size());
+        for (Map.Entry<String, Map<Long, Item>> quiz : quizzes.entrySet()) {
+            // A copy, so the count matches the entries even while sessions add items
+            Map<Long, Item> items = new HashMap<>(quiz.getValue());
+            out.writeUTF(quiz.getKey());
+            out.writeInt(items.size());
+            for (Map.Entry<Long, Item> item : items.entrySet()) {
+                Accumulator merged = new Accumulator(item.getValue().optionCount);
+                item.getValue().mergeInto(merged);
+                out.writeLong(item.getKey());
+                merged.writeTo(out);
+            }
+        }
+    }
+
+    // Loads statistics written by writeTo into this empty instance. Version 1
+    // keyed questions by position; those are mapped to the question now at that
+    // position of the named quiz, and dropped where there is none.
+    void readFrom(DataInput in, int version, Function<String, Quiz> catalog) throws IOException {
+        int quizCount = in.readInt();
+        for (int i = 0; i < quizCount; i++) {
+            String title = in.readUTF();
+            Quiz quiz = version < 2 ? catalog.apply(title) : null;
+            Map<Long, Item> items = quizzes.computeIfAbsent(title, k -> new ConcurrentHashMap<>());
+            int itemCount = in.readInt();
+            for (int j = 0; j < itemCount; j++) {
+                Long key;
+                if (version < 2) {
+                    int index = in.readInt();
+                    key = quiz != null && index >= 0 && index < quiz.getQuestions().size()
+                            ? contentKey(quiz.getQuestions().get(index)) : null;
+                } else {
+                    key = in.readLong();
+                }
+                Accumulator loaded = Accumulator.readFrom(in);
+                if (key != null) {
+                    items.computeIfAbsent(key, k -> new Item(0)).stripe(0).merge(loaded);
+                }
+            }
+            if (items.isEmpty()) {
+                quizzes.remove(title);
+            }
+        }
+    }
+
+    private static final class Item {
+        private final int optionCount;
+        private final AtomicReferenceArray<Accumulator> stripes = new AtomicReferenceArray<>(STRIPES);
+
+        Item(int optionCount) {
+            this.optionCount = optionCount;
+        }
+
+        // Stripes are allocated on first use, so idle items cost one slot array
+        Accumulator stripe(int index) {
+            Accumulator stripe = stripes.get(index);
+            if (stripe == null) {
+                stripes.compareAndSet(index, null, new Accumulator(optionCount));
+                stripe = stripes.get(index);
+            }
+            return stripe;
+        }
+
+        void mergeInto(Accumulator target) {
+            for (int i = 0; i < STRIPES; i++) {
+                Accumulator stripe = stripes.get(i);
+                if (stripe != null) {
+                    target.merge(stripe);
+                }
+            }
+        }
+    }
+
+    // Sufficient statistics for one item; merge is plain addition.
+    public static final class Accumulator {
+        private long responses;
+        private long correct;
+        private long blank;
+        private double scoreSum;
+        private double scoreSquares;
+        private double correctScoreSum;
+        // Grows if an edit gives the question more options
+        private long[] optionCounts;
+
+        public Accumulator(int optionCount) {
+            this.optionCounts = new long[optionCount];
+        }
+
+        synchronized void add(boolean isCorrect, long selected, double score) {
+            responses++;
+            scoreSum += score;
+            scoreSquares += score * score;
+            if (isCorrect) {
+                correct++;
+                correctScoreSum += score;
+            }
+            if (selected == 0) {
+                blank++;
+            }
+            long bits = selected;
+            while (bits != 0) {
+                int option = Long.numberOfTrailingZeros(bits);
+                if (option >= optionCounts.length) {
+                    optionCounts = Arrays.copyOf(optionCounts, option + 1);
+                }
+                optionCounts[option]++;
+                bits &= bits - 1;
+            }
+        }
+
+        public synchronized void merge(Accumulator other) {
+            long otherResponses;
+            long otherCorrect;
+            long otherBlank;
+            double otherScoreSum;
+            double otherScoreSquares;
+            double otherCorrectScoreSum;
+            long[] otherOptions;
+            synchronized (other) {
+                otherResponses = other.responses;
+                otherCorrect = other.correct;
+                otherBlank = other.blank;
+                otherScoreSum = other.scoreSum;
+                otherScoreSquares = other.scoreSquares;
+                otherCorrectScoreSum = other.correctScoreSum;
+                otherOptions = other.optionCounts.clone();
+            }
+            responses += otherResponses;
+            correct += otherCorrect;
+            blank += otherBlank;
+            scoreSum += otherScoreSum;
+            scoreSquares += otherScoreSquares;
+            correctScoreSum += otherCorrectScoreSum;
+            if (otherOptions.length > optionCounts.length) {
+                optionCounts = Arrays.copyOf(optionCounts, otherOptions.length);
+            }
+            for (int i = 0; i < otherOptions.length; i++) {
+                optionCounts[i] += otherOptions[i];
+            }
+        }
+
+        synchronized void writeTo(DataOutput out) throws IOException {
+            out.writeLong(responses);
+            out.writeLong(correct);
+            out.writeLong(blank);
+            out.writeDouble(scoreSum);
+            out.writeDouble(scoreSquares);
+            out.writeDouble(correctScoreSum);
+            out.writeInt(optionCounts.length);
+            for (long count : optionCounts) {
+                out.writeLong(count);
+            }
+        }
+
+        static Accumulator readFrom(DataInput in) throws IOException {
+            long responses = in.readLong();
+            long correct = in.readLong();
+            long blank = in.readLong();
+            double scoreSum = in.readDouble();
+            double scoreSquares = in.readDouble();
+            double correctScoreSum = in.readDouble();
+            int optionCount = in.readInt();
+            if (optionCount < 0 || optionCount > AnswerMask.MAX_OPTIONS) {
+                throw new IOException("Bad option count " + optionCount);
+            }
+            Accumulator accumulator = new Accumulator(optionCount);
+            accumulator.responses = responses;
+            accumulator.correct = correct;
+            accumulator.blank = blank;
+            accumulator.scoreSum = scoreSum;
+            accumulator.scoreSquares = scoreSquares;
+            accumulator.correctScoreSum = correctScoreSum;
+            for (int i = 0; i < optionCount; i++) {
+                accumulator.optionCounts[i] = in.readLong();
+            }
+            return accumulator;
+        }
+
+        synchronized ItemStatistics toStatistics(Question question) {
+            double pValue = responses == 0 ? Double.NaN : (double) correct / responses;
+            double pointBiserial = Double.NaN;
+            long incorrect = responses - correct;
+            if (correct > 0 && incorrect > 0) {
+                double mean = scoreSum / responses;
+                double variance = scoreSquares / responses - mean * mean;
+                if (variance > 1e-12) {
+                    double correctMean = correctScoreSum / correct;
+                    double incorrectMean = (scoreSum - correctScoreSum) / incorrect;
+                    pointBiserial = (correctMean - incorrectMean) / Math.sqrt(variance)
+                            * Math.sqrt(pValue * (1 - pValue));
+                }
+            }
+            return new ItemStatistics(question, responses, pValue, pointBiserial, blank,
+                    Arrays.copyOf(optionCounts, question.getOptions().size()));
+        }
+    }
+
+    public static final class ItemStatistics {
+        private final Question question;
+        private final long responses;
+        private final double pValue;
+        private final double pointBiserial;
+        private final long blankResponses;
+        private final long[] optionCounts;
+
+        ItemStatistics(Question question, long responses, double pValue, double pointBiserial,
+                       long blankResponses, long[] optionCounts) {
+            this.question = question;
+            this.responses = responses;
+            this.pValue = pValue;
+            this.pointBiserial = pointBiserial;
+            this.blankResponses = blankResponses;
+            this.optionCounts = optionCounts;
+        }
+
+        public Question getQuestion() {
+            return question;
+        }
+
+        public long getResponses() {
+            return responses;
+        }
+
+        // Share answering correctly; NaN before the first response.
+        public double getPValue() {
+            return pValue;
+        }
+
+        // NaN until there are both correct and incorrect responses with some score spread.
+        public double getPointBiserial() {
+            return pointBiserial;
+        }
+
+        // Responses with nothing selected, including question timeouts.
+        public long getBlankResponses() {
+            return blankResponses;
+        }
+
+        // Times each option (original order) was selected.
+        public long[] getOptionCounts() {
+            return optionCounts.clone();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Precomputed item selection table for an adaptive quiz version. For every
+// point of the ability grid it keeps the indices of the most informative
+// questions there, best first. A session never administers more than
+// maxQuestions, so keeping that many plus the randomesque candidates per
+// point always leaves enough unused ones, and selection is a short scan of
+// one row instead of evaluating the whole pool.
+final class ItemInformationIndex {
+    // Choosing randomly among the best few keeps the very best items from
+    // being shown to every candidate of similar ability
+    static final int RANDOMESQUE_CANDIDATES = 3;
+
+    private final int[][] ranked;
+
+    ItemInformationIndex(List<Question> questions, int maxQuestions) {
+        int keep = Math.min(questions.size(), maxQuestions + RANDOMESQUE_CANDIDATES);
+        ranked = new int[IrtModel.GRID_POINTS][];
+        double[] heapInformation = new double[keep];
+        int[] heapItems = new int[keep];
+        for (int g = 0; g < IrtModel.GRID_POINTS; g++) {
+            double theta = IrtModel.theta(g);
+            // Min-heap of the best `keep` items seen so far
+            int size = 0;
+            for (int item = 0; item < questions.size(); item++) {
+                double information = IrtModel.information(questions.get(item), theta);
+                if (size < keep) {
+                    heapInformation[size] = information;
+                    heapItems[size] = item;
+                    siftUp(heapInformation, heapItems, size++);
+                } else if (information > heapInformation[0]) {
+                    heapInformation[0] = information;
+                    heapItems[0] = item;
+                    siftDown(heapInformation, heapItems, size);
+                }
+            }
+            // Popping the min-heap yields worst first; fill the row from the back
+            int[] row = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                row[i] = heapItems[0];
+                heapInformation[0] = heapInformation[i];
+                heapItems[0] = heapItems[i];
+                siftDown(heapInformation, heapItems, i);
+            }
+            ranked[g] = row;
+        }
+    }
+
+    // Next question index for a candidate at theta, skipping the first
+    // administeredCount entries of administered; -1 when none are left.
+    int select(double theta, int[] administered, int administeredCount, SplittableRandom random) {
+        int[] row = ranked[IrtModel.nearestGridPoint(theta)];
+        int[] candidates = new int[RANDOMESQUE_CANDIDATES];
+        int found = 0;
+        for (int i = 0; i < row.length && found < RANDOMESQUE_CANDIDATES; i++) {
+            if (!contains(administered, administeredCount, row[i])) {
+                candidates[found++] = row[i];
+            }
+        }
+        return found == 0 ? -1 : candidates[random.nextInt(found)];
+    }
+
+    private static boolean contains(int[] items, int count, int item) {
+        for (int i = 0; i < count; i++) {
+            if (items[i] == item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void siftUp(double[] keys, int[] items, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[parent] <= keys[index]) {
+                return;
+            }
+            swap(keys, items, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(double[] keys, int[] items, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && keys[left + 1] < keys[left] ? left + 1 : left;
+            if (keys[index] <= keys[smallest]) {
+                return;
+            }
+            swap(keys, items, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(double[] keys, int[] items, int a, int b) {
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal JSON reader/writer so the HTTP front end needs no outside libraries.
+// Objects parse to LinkedHashMap, arrays to ArrayList, numbers to Long or Double.
+public final class Json {
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    public static Object parse(String text) {
+        Json parser = new Json(text);
+        parser.skipWhitespace();
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Trailing characters");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder();
+        write(out, value);
+        return out.toString();
+    }
+
+    public static void write(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                write(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(out, element);
+            }
+            out.append(']');
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private Object readValue() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': expect("true"); return Boolean.TRUE;
+            case 'f': expect("false"); return Boolean.FALSE;
+            case 'n': expect("null"); return null;
+            default: return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a string key");
+            }
+            String key = readString();
+            skipWhitespace();
+            if (peek() != ':') {
+                throw error("Expected ':'");
+            }
+            pos++;
+            skipWhitespace();
+            map.put(key, readValue());
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == '}') {
+                return map;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            skipWhitespace();
+            list.add(readValue());
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == ']') {
+                return list;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString() {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char escaped = text.charAt(pos++);
+            switch (escaped) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(escaped);
+            }
+        }
+    }
+
+    private Number readNumber() {
+        int start = pos;
+        boolean decimal = false;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Unexpected character '" + text.charAt(pos) + "'");
+        }
+        String number = text.substring(start, pos);
+        return decimal ? (Number) Double.parseDouble(number) : (Number) Long.parseLong(number);
+    }
+
+    private void expect(String literal) {
+        if (!text.startsWith(literal, pos)) {
+            throw error("Expected " + literal);
+        }
+        pos += literal.length();
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        return text.charAt(pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
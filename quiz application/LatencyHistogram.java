@@ -0,0 +1,96 @@
+package com.example.demo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size, lock-free log-linear histogram of nanosecond latencies.
+// Values below 32ns are exact; above that each power of two is split into
+// 16 sub-buckets, so any reported percentile is within ~6% of the real value.
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16;
+    private static final int LINEAR_LIMIT = 32;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - 5) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        totalCount.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100).
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKET_COUNT - 1);
+    }
+
+    public long getMaxNanos() {
+        for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return upperBoundOf(i);
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - 4)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 5) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 5;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 4)) - 1;
+    }
+}
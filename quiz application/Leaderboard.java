@@ -0,0 +1,257 @@
+package com.example.demo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-quiz rankings and statistics, updated incrementally as attempts are
+// recorded. Each user is ranked by their best score, in basis points of the
+// quiz total (0-10000) so quizzes of any length compare the same way.
+public class Leaderboard {
+    public static final int MAX_BASIS_POINTS = 10000;
+    public static final int HISTOGRAM_BUCKETS = 11;
+
+    private final Map<String, QuizBoard> boards = new ConcurrentHashMap<>();
+
+    public void record(String username, String quizTitle, int score, int totalQuestions, long epochMillis) {
+        boards.computeIfAbsent(quizTitle, k -> new QuizBoard())
+                .record(username, basisPoints(score, totalQuestions), epochMillis);
+    }
+
+    public void record(QuizAttempt attempt) {
+        record(attempt.getUsername(), attempt.getQuizTitle(), attempt.getScore(),
+                attempt.getTotalQuestions(), attempt.getEpochMillis());
+    }
+
+    public List<Entry> getTop(String quizTitle, int k) {
+        QuizBoard board = boards.get(quizTitle);
+        return board == null ? new ArrayList<>() : board.top(k);
+    }
+
+    // 1-based rank of the user's best attempt (ties share a rank),
+    // or 0 if they have not taken the quiz.
+    public long getRank(String quizTitle, String username) {
+        QuizBoard board = boards.get(quizTitle);
+        return board == null ? 0 : board.rank(username);
+    }
+
+    public Entry getBest(String quizTitle, String username) {
+        QuizBoard board = boards.get(quizTitle);
+        return board == null ? null : board.best.get(username);
+    }
+
+    public Stats getStats(String quizTitle) {
+        QuizBoard board = boards.get(quizTitle);
+        return board == null ? new Stats(0, 0, 0, new long[HISTOGRAM_BUCKETS]) : board.stats();
+    }
+
+    // Boards as of the last recorded attempt; the caller keeps record() from running meanwhile.
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(boards.size());
+        for (Map.Entry<String, QuizBoard> board : boards.entrySet()) {
+            out.writeUTF(board.getKey());
+            board.getValue().writeTo(out);
+        }
+    }
+
+    // Loads boards written by writeTo into this empty leaderboard.
+    void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String quizTitle = in.readUTF();
+            boards.computeIfAbsent(quizTitle, k -> new QuizBoard()).readFrom(in);
+        }
+    }
+
+    static int basisPoints(int score, int totalQuestions) {
+        return totalQuestions <= 0 ? 0 : (int) ((long) score * MAX_BASIS_POINTS / totalQuestions);
+    }
+
+    public static final class Entry {
+        private final String username;
+        private final int basisPoints;
+        private final long epochMillis;
+
+        Entry(String username, int basisPoints, long epochMillis) {
+            this.username = username;
+            this.basisPoints = basisPoints;
+            this.epochMillis = epochMillis;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public double getPercentage() {
+            return basisPoints / 100.0;
+        }
+
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+    }
+
+    public static final class Stats {
+        private final long attempts;
+        private final long users;
+        private final double meanPercentage;
+        private final long[] histogram;
+
+        Stats(long attempts, long users, double meanPercentage, long[] histogram) {
+            this.attempts = attempts;
+            this.users = users;
+            this.meanPercentage = meanPercentage;
+            this.histogram = histogram;
+        }
+
+        public long getAttempts() {
+            return attempts;
+        }
+
+        public long getUsers() {
+            return users;
+        }
+
+        public double getMeanPercentage() {
+            return meanPercentage;
+        }
+
+        // Attempt counts in 10% bands: [0,10), [10,20), ... [90,100), and exactly 100%.
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+    }
+
+    // Higher score first; ties go to whoever reached the score first.
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingInt((Entry e) -> -e.basisPoints)
+            .thenComparingLong(e -> e.epochMillis)
+            .thenComparing(e -> e.username);
+
+    private static final class QuizBoard {
+        private static final int STRIPES = 64;
+
+        private final Map<String, Entry> best = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING);
+        // Fenwick tree of users per best score, so rank is O(log n) in the score range
+        private final AtomicLongArray usersAtScore = new AtomicLongArray(MAX_BASIS_POINTS + 2);
+        private final LongAdder userCount = new LongAdder();
+        private final LongAdder attemptCount = new LongAdder();
+        private final LongAdder basisPointSum = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+        private final Object[] locks = new Object[STRIPES];
+
+        QuizBoard() {
+            for (int i = 0; i < STRIPES; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        void record(String username, int basisPoints, long epochMillis) {
+            attemptCount.increment();
+            basisPointSum.add(basisPoints);
+            histogram.incrementAndGet(basisPoints / 1000);
+
+            // Only a user's own updates contend, via their lock stripe
+            synchronized (locks[(username.hashCode() & 0x7fffffff) % STRIPES]) {
+                Entry previous = best.get(username);
+                if (previous != null && previous.basisPoints >= basisPoints) {
+                    return;
+                }
+                Entry entry = new Entry(username, basisPoints, epochMillis);
+                ranking.add(entry);
+                best.put(username, entry);
+                addUsers(basisPoints, 1);
+                if (previous == null) {
+                    userCount.increment();
+                } else {
+                    ranking.remove(previous);
+                    addUsers(previous.basisPoints, -1);
+                }
+            }
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeLong(attemptCount.sum());
+            out.writeLong(basisPointSum.sum());
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                out.writeLong(histogram.get(i));
+            }
+            // In ranking order, so reading them back appends to the end of the skip list
+            out.writeInt(best.size());
+            for (Entry entry : ranking) {
+                out.writeUTF(entry.username);
+                out.writeShort(entry.basisPoints);
+                out.writeLong(entry.epochMillis);
+            }
+        }
+
+        void readFrom(DataInput in) throws IOException {
+            attemptCount.add(in.readLong());
+            basisPointSum.add(in.readLong());
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram.addAndGet(i, in.readLong());
+            }
+            int users = in.readInt();
+            for (int i = 0; i < users; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readShort(), in.readLong());
+                best.put(entry.username, entry);
+                ranking.add(entry);
+                addUsers(entry.basisPoints, 1);
+            }
+            userCount.add(users);
+        }
+
+        List<Entry> top(int k) {
+            List<Entry> top = new ArrayList<>(Math.min(k, 64));
+            for (Entry entry : ranking) {
+                if (top.size() >= k) {
+                    break;
+                }
+                top.add(entry);
+            }
+            return top;
+        }
+
+        long rank(String username) {
+            Entry entry = best.get(username);
+            if (entry == null) {
+                return 0;
+            }
+            return usersAbove(entry.basisPoints) + 1;
+        }
+
+        Stats stats() {
+            long attempts = attemptCount.sum();
+            long[] counts = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+            }
+            double mean = attempts == 0 ? 0 : basisPointSum.sum() / 100.0 / attempts;
+            return new Stats(attempts, userCount.sum(), mean, counts);
+        }
+
+        private void addUsers(int basisPoints, long delta) {
+            for (int i = basisPoints + 1; i < usersAtScore.length(); i += i & -i) {
+                usersAtScore.addAndGet(i, delta);
+            }
+        }
+
+        // Users whose best score is strictly higher than basisPoints.
+        private long usersAbove(int basisPoints) {
+            long atOrBelow = 0;
+            for (int i = basisPoints + 1; i > 0; i -= i & -i) {
+                atOrBelow += usersAtScore.get(i);
+            }
+            return Math.max(0, userCount.sum() - atOrBelow);
+        }
+    }
+}
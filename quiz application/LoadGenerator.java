@@ -0,0 +1,582 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Headless exam-day traffic against a QuizEngine: the login, take-quiz and
+// results flow of the desktop client, run by simulated candidates. Arrivals
+// are open-loop, drawn every tick from an ArrivalCurve, so a slow engine
+// builds up concurrent candidates instead of quietly lowering the load.
+// Each candidate logs in, takes a random quiz with log-normal think times
+// between answers, answers correctly with the IRT probability for an
+// ability drawn from a standard normal, and waits for its result to be
+// durable. Candidates run on virtual threads when the runtime has them and
+// on small-stack platform threads otherwise.
+//
+// Every report interval prints (and optionally writes as a CSV row)
+// arrivals, completions, answer throughput, per-operation latency
+// percentiles for the interval, errors, GC count and time, heap in use and
+// the live heap after the last collection, whose trend over a soak run
+// shows leaks.
+//
+//   java -cp app.jar -Dquiz.load.curve=spike:300:60:300:10 -Dquiz.load.duration=7200 \
+//        -Dquiz.load.csv=soak.csv com.example.demo.LoadGenerator [dataDirectory]
+//
+// Logins hash passwords at quiz.auth.iterations, which dominates their cost.
+//
+// Candidates pass login and quiz start through the engine's admission gates
+// as the front ends do: they wait in line, and when shed they come back after
+// the Retry-After time, up to quiz.load.retries times. With
+// quiz.load.patienceMillis set, a login slower than that counts as timed out
+// and is retried the same way, like a client abandoning a spinner; time in
+// line does not count, since the candidate can see their place in it.
+// Comparing a surge with -Dquiz.load.admission=false against the default
+// shows what the gates buy.
+// The same seed replays the same arrivals, and quiz.load.minCompleted (a
+// fraction of arrivals) makes the run exit with status 1 when too few
+// candidates got through, e.g. for a reproducible exam-start check:
+//
+//   java -cp app.jar -Dquiz.auth.iterations=20000 -Dquiz.load.users=5000 -Dquiz.load.curve=spike:300:2:10 \
+//        -Dquiz.load.duration=40 -Dquiz.load.seed=1 -Dquiz.load.thinkMillis=500 \
+//        -Dquiz.load.patienceMillis=1000 -Dquiz.load.minCompleted=0.95 com.example.demo.LoadGenerator
+//
+// Use at least as many users as arrivals, or the per-user rate limit turns
+// repeat logins away. Every candidate logs in from HALL_ADDRESS, as an exam
+// hall behind one NAT does, and the login gate keys them as the HTTP server
+// would.
+public class LoadGenerator {
+    static final String PASSWORD = "load-test";
+    static final String HALL_ADDRESS = "10.0.0.1";
+    static final String QUIZ_TITLE = "Load Test";
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final double BLANK_PROBABILITY = 0.02;
+    // How often a waiting candidate checks its place in line, like a client polling
+    private static final long ADMISSION_POLL_MILLIS = 1000;
+
+    // The *_WAIT operations time the wait for admission, retries included
+    enum Operation { LOGIN_WAIT, LOGIN, START_WAIT, START, ANSWER, FINISH }
+
+    private final QuizEngine engine;
+    private final ArrivalCurve curve;
+    private final long durationMillis;
+    private final long drainMillis;
+    private final String[] usernames;
+    private final long thinkMedianMillis;
+    private final double thinkSigma;
+    private final int maxActive;
+    private final long reportMillis;
+    private final boolean admission;
+    private final int retries;
+    private final long patienceNanos;
+    private final SplittableRandom random;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder arrivals = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder answers = new LongAdder();
+    private final LongAdder correct = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<AdmissionController.Reason, LongAdder> rejections = new ConcurrentHashMap<>();
+    private final LongAdder gaveUp = new LongAdder();
+    private final LongAccumulator longestLine = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram[] intervalLatencies = newHistograms();
+    private final LatencyHistogram[] totalLatencies = newHistograms();
+
+    public LoadGenerator(QuizEngine engine, ArrivalCurve curve, long durationMillis, long drainMillis,
+                         List<String> usernames, long thinkMedianMillis, double thinkSigma, int maxActive,
+                         long reportMillis, boolean admission, int retries, long patienceMillis, long seed) {
+        if (usernames.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one candidate account");
+        }
+        this.engine = engine;
+        this.curve = curve;
+        this.durationMillis = durationMillis;
+        this.drainMillis = drainMillis;
+        this.usernames = usernames.toArray(new String[0]);
+        this.thinkMedianMillis = thinkMedianMillis;
+        this.thinkSigma = thinkSigma;
+        this.maxActive = maxActive;
+        this.reportMillis = reportMillis;
+        this.admission = admission;
+        this.retries = retries;
+        this.patienceNanos = TimeUnit.MILLISECONDS.toNanos(patienceMillis);
+        this.random = new SplittableRandom(seed);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        QuizEngine engine = args.length > 0 ? new QuizEngine(Paths.get(args[0])) : new QuizEngine();
+        int userCount = Integer.getInteger("quiz.load.users", 200);
+        long start = System.nanoTime();
+        List<String> usernames = registerCandidates(engine, userCount);
+        System.out.printf("%d candidate accounts ready in %.1f s%n", userCount, (System.nanoTime() - start) / 1e9);
+        ensureQuiz(engine, Integer.getInteger("quiz.load.questions", 20));
+
+        LoadGenerator generator = new LoadGenerator(engine,
+                ArrivalCurve.parse(System.getProperty("quiz.load.curve", "spike:100:30:120:2")),
+                TimeUnit.SECONDS.toMillis(Long.getLong("quiz.load.duration", 600)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("quiz.load.drainSeconds", 120)),
+                usernames,
+                Long.getLong("quiz.load.thinkMillis", 8000),
+                Double.parseDouble(System.getProperty("quiz.load.thinkSigma", "0.6")),
+                Integer.getInteger("quiz.load.maxActive", 20_000),
+                TimeUnit.SECONDS.toMillis(Long.getLong("quiz.load.reportSeconds", 10)),
+                !"false".equalsIgnoreCase(System.getProperty("quiz.load.admission")),
+                Integer.getInteger("quiz.load.retries", 5),
+                Long.getLong("quiz.load.patienceMillis", 0),
+                Long.getLong("quiz.load.seed", System.nanoTime()));
+        String csv = System.getProperty("quiz.load.csv");
+        double completed = generator.run(System.out, csv == null ? null : Paths.get(csv));
+        engine.close();
+        double required = Double.parseDouble(System.getProperty("quiz.load.minCompleted", "0"));
+        if (completed < required) {
+            System.out.printf("FAILED: %.1f%% of arrivals completed, %.1f%% required%n", completed * 100, required * 100);
+            System.exit(1);
+        }
+    }
+
+    // Accounts load-candidate-0.. with the shared password; existing ones are reused.
+    static List<String> registerCandidates(QuizEngine engine, int count) {
+        List<String> usernames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String username = "load-candidate-" + i;
+            engine.register(username, PASSWORD);
+            usernames.add(username);
+        }
+        return usernames;
+    }
+
+    // Candidates take every quiz with questions; a catalog without any gets a generated one.
+    static void ensureQuiz(QuizEngine engine, int questionCount) {
+        for (Quiz quiz : engine.getQuizzes()) {
+            if (!quiz.getQuestions().isEmpty()) {
+                return;
+            }
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        List<Question> questions = new ArrayList<>(questionCount);
+        for (int i = 0; i < questionCount; i++) {
+            questions.add(new Question("Load test question " + (i + 1),
+                    Arrays.asList("Option A", "Option B", "Option C", "Option D"),
+                    Arrays.asList(random.nextInt(4)), "",
+                    0.8 + random.nextDouble(), random.nextGaussian(), 0.2));
+        }
+        if (engine.findQuiz(QUIZ_TITLE) == null) {
+            engine.createQuiz(QUIZ_TITLE);
+        }
+        engine.importQuestions(Map.of(QUIZ_TITLE, questions));
+    }
+
+    // Blocks for the run and the drain that follows it, reporting as it goes.
+    // Returns the fraction of arrivals that completed.
+    public double run(PrintStream out, Path csvFile) throws IOException, InterruptedException {
+        ExecutorService candidates = newCandidateExecutor();
+        PrintWriter csv = csvFile == null ? null : new PrintWriter(Files.newBufferedWriter(csvFile));
+        Reporter reporter = new Reporter(out, csv);
+        out.println("Candidates run on " + (candidates instanceof ThreadPoolExecutor ? "platform threads" : "virtual threads")
+                + (admission ? " through the admission gates" : " without admission control"));
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long nextReport = start + TimeUnit.MILLISECONDS.toNanos(reportMillis);
+        try {
+            long tick = start;
+            while (tick < end) {
+                double rate = curve.rateAt((tick - start) / 1e9);
+                int arriving = poisson(rate * TICK_NANOS / 1e9);
+                for (int i = 0; i < arriving; i++) {
+                    arrivals.increment();
+                    if (active.get() >= maxActive) {
+                        rejected.increment();
+                        continue;
+                    }
+                    active.incrementAndGet();
+                    long seed = random.nextLong();
+                    candidates.execute(() -> candidate(seed));
+                }
+                tick += TICK_NANOS;
+                LockSupport.parkNanos(tick - System.nanoTime());
+                if (System.nanoTime() >= nextReport) {
+                    reporter.report(System.nanoTime() - start, rate);
+                    nextReport += TimeUnit.MILLISECONDS.toNanos(reportMillis);
+                }
+            }
+            long drainEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+            while (active.get() > 0 && System.nanoTime() < drainEnd) {
+                Thread.sleep(100);
+                if (System.nanoTime() >= nextReport) {
+                    reporter.report(System.nanoTime() - start, 0);
+                    nextReport += TimeUnit.MILLISECONDS.toNanos(reportMillis);
+                }
+            }
+            reporter.summary(System.nanoTime() - start);
+            return arrivals.sum() == 0 ? 1 : (double) completed.sum() / arrivals.sum();
+        } finally {
+            candidates.shutdownNow();
+            if (csv != null) {
+                csv.close();
+            }
+        }
+    }
+
+    private void candidate(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        try {
+            String username = usernames[random.nextInt(usernames.length)];
+            QuizEngine.Role role = null;
+            for (int attempt = 0; ; attempt++) {
+                AdmissionController.Ticket ticket = admit(engine.getLoginAdmission(),
+                        AdmissionController.loginKey(username, HALL_ADDRESS), Operation.LOGIN_WAIT);
+                if (admission && ticket == null) {
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    role = engine.login(username, PASSWORD);
+                } finally {
+                    release(ticket);
+                }
+                record(Operation.LOGIN, start);
+                if (patienceNanos == 0 || System.nanoTime() - start <= patienceNanos) {
+                    break;
+                }
+                error("login timed out");
+                if (attempt == retries) {
+                    gaveUp.increment();
+                    return;
+                }
+            }
+            if (role == null) {
+                error("login rejected");
+                return;
+            }
+            List<Quiz> quizzes = new ArrayList<>();
+            for (Quiz quiz : engine.getQuizzes()) {
+                if (!quiz.getQuestions().isEmpty()) {
+                    quizzes.add(quiz);
+                }
+            }
+            if (quizzes.isEmpty()) {
+                error("no quiz");
+                return;
+            }
+            AdmissionController.Ticket ticket = admit(engine.getStartAdmission(), username, Operation.START_WAIT);
+            if (admission && ticket == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            QuizSession session;
+            try {
+                session = engine.startSession(username, quizzes.get(random.nextInt(quizzes.size())));
+            } finally {
+                release(ticket);
+            }
+            record(Operation.START, start);
+            double ability = random.nextGaussian();
+            while (!session.isComplete()) {
+                Thread.sleep(thinkMillis(random));
+                Question question = session.getCurrentQuestion();
+                if (question == null) {
+                    break;
+                }
+                long answer = answer(question, ability, random);
+                start = System.nanoTime();
+                if (engine.submitAnswer(session.getId(), answer)) {
+                    correct.increment();
+                }
+                record(Operation.ANSWER, start);
+                answers.increment();
+            }
+            start = System.nanoTime();
+            engine.finishAsync(session.getId()).join();
+            record(Operation.FINISH, start);
+            completed.increment();
+        } catch (InterruptedException e) {
+            error("interrupted");
+        } catch (RuntimeException e) {
+            error(e.getClass().getSimpleName());
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    // Waits in line for the gate, retrying after the advised time when shed.
+    // Null when admission control is off, or after giving up.
+    private AdmissionController.Ticket admit(AdmissionController gate, String client, Operation wait)
+            throws InterruptedException {
+        if (!admission) {
+            return null;
+        }
+        long start = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                AdmissionController.Ticket ticket = gate.enqueue(client);
+                while (!ticket.await(ADMISSION_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        ticket.release();
+                        throw new InterruptedException();
+                    }
+                    longestLine.accumulate(ticket.getPosition());
+                }
+                record(wait, start);
+                return ticket;
+            } catch (AdmissionController.Rejection e) {
+                rejections.computeIfAbsent(e.getReason(), key -> new LongAdder()).increment();
+                if (attempt == retries) {
+                    gaveUp.increment();
+                    return null;
+                }
+                Thread.sleep(e.getRetryAfterMillis());
+            }
+        }
+    }
+
+    private static void release(AdmissionController.Ticket ticket) {
+        if (ticket != null) {
+            ticket.release();
+        }
+    }
+
+    private long thinkMillis(SplittableRandom random) {
+        double factor = Math.exp(thinkSigma * random.nextGaussian());
+        return (long) (thinkMedianMillis * Math.min(factor, 20));
+    }
+
+    // Mostly right at the item's IRT probability for this ability; wrong
+    // answers pick one other option, and a few questions are left blank.
+    private static long answer(Question question, double ability, SplittableRandom random) {
+        if (random.nextDouble() < BLANK_PROBABILITY) {
+            return 0;
+        }
+        if (random.nextDouble() < IrtModel.probability(question, ability)) {
+            return question.getCorrectMask();
+        }
+        int options = question.getOptions().size();
+        int first = random.nextInt(options);
+        for (int i = 0; i < options; i++) {
+            int option = (first + i) % options;
+            if (!AnswerMask.contains(question.getCorrectMask(), option)) {
+                return AnswerMask.of(option);
+            }
+        }
+        return 0;
+    }
+
+    private int poisson(double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private void record(Operation operation, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        intervalLatencies[operation.ordinal()].record(nanos);
+        totalLatencies[operation.ordinal()].record(nanos);
+    }
+
+    private void error(String kind) {
+        errors.computeIfAbsent(kind, key -> new LongAdder()).increment();
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor when the runtime has it
+    // (Java 21); the build targets 17, so it is looked up reflectively.
+    static ExecutorService newCandidateExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "load-candidate-" + threadCount.incrementAndGet(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final class Reporter {
+        private final PrintStream out;
+        private final PrintWriter csv;
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        private long lastArrivals;
+        private long lastCompleted;
+        private long lastAnswers;
+        private long lastGcCount;
+        private long lastGcMillis;
+        private long lastNanos;
+
+        Reporter(PrintStream out, PrintWriter csv) {
+            this.out = out;
+            this.csv = csv;
+            if (csv != null) {
+                csv.println("seconds,rate,active,arrivals,rejected,completed,answersPerSecond,"
+                        + "loginP50Ms,loginP99Ms,answerP50Ms,answerP99Ms,answerMaxMs,finishP50Ms,finishP99Ms,"
+                        + "errors,gcCount,gcMillis,heapUsedMb,liveHeapMb,ingestQueue,"
+                        + "loginWaitP99Ms,loginQueue,startQueue,loginLimit,shed");
+                csv.flush();
+            }
+        }
+
+        void report(long elapsedNanos, double rate) {
+            double seconds = (elapsedNanos - lastNanos) / 1e9;
+            long arrived = arrivals.sum();
+            long done = completed.sum();
+            long answered = answers.sum();
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean collector : collectors) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            double heapMb = heap.getUsed() / 1048576.0;
+            double liveMb = liveHeapBytes() / 1048576.0;
+            LatencyHistogram login = intervalLatencies[Operation.LOGIN.ordinal()];
+            LatencyHistogram answer = intervalLatencies[Operation.ANSWER.ordinal()];
+            LatencyHistogram finish = intervalLatencies[Operation.FINISH.ordinal()];
+            LatencyHistogram loginWait = intervalLatencies[Operation.LOGIN_WAIT.ordinal()];
+            AdmissionController loginGate = engine.getLoginAdmission();
+            AdmissionController startGate = engine.getStartAdmission();
+            long errorCount = errorCount();
+            long shed = sum(rejections);
+            out.printf("[%6.0fs] rate %7.1f/s active %6d arrived %6d done %6d | %8.1f answers/s"
+                            + " | login wait p99 %s p50 %s p99 %s | answer p50 %s p99 %s max %s | finish p99 %s"
+                            + " | line %d+%d limit %d shed %d | errors %d | gc %d (%d ms) heap %.0f MB live %.0f MB%n",
+                    elapsedNanos / 1e9, rate, active.get(), arrived - lastArrivals, done - lastCompleted,
+                    (answered - lastAnswers) / seconds, millis(loginWait.getValueAtPercentile(99)),
+                    millis(login.getValueAtPercentile(50)), millis(login.getValueAtPercentile(99)),
+                    millis(answer.getValueAtPercentile(50)), millis(answer.getValueAtPercentile(99)),
+                    millis(answer.getMaxNanos()), millis(finish.getValueAtPercentile(99)),
+                    loginGate.getQueueDepth(), startGate.getQueueDepth(), loginGate.getLimit(), shed,
+                    errorCount, gcCount - lastGcCount, gcMillis - lastGcMillis, heapMb, liveMb);
+            if (csv != null) {
+                csv.printf("%.0f,%.1f,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%.1f,%.1f,%d,"
+                                + "%.3f,%d,%d,%d,%d%n",
+                        elapsedNanos / 1e9, rate, active.get(), arrived - lastArrivals, rejected.sum(),
+                        done - lastCompleted, (answered - lastAnswers) / seconds,
+                        login.getValueAtPercentile(50) / 1e6, login.getValueAtPercentile(99) / 1e6,
+                        answer.getValueAtPercentile(50) / 1e6, answer.getValueAtPercentile(99) / 1e6,
+                        answer.getMaxNanos() / 1e6, finish.getValueAtPercentile(50) / 1e6,
+                        finish.getValueAtPercentile(99) / 1e6, errorCount, gcCount - lastGcCount,
+                        gcMillis - lastGcMillis, heapMb, liveMb, engine.getIngestPipeline().getQueueDepth(),
+                        loginWait.getValueAtPercentile(99) / 1e6, loginGate.getQueueDepth(),
+                        startGate.getQueueDepth(), loginGate.getLimit(), shed);
+                csv.flush();
+            }
+            for (LatencyHistogram histogram : intervalLatencies) {
+                histogram.reset();
+            }
+            lastArrivals = arrived;
+            lastCompleted = done;
+            lastAnswers = answered;
+            lastGcCount = gcCount;
+            lastGcMillis = gcMillis;
+            lastNanos = elapsedNanos;
+        }
+
+        void summary(long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            out.printf("%nRun of %.0f s: %d arrivals, %d rejected at the %d-candidate cap, %d completed (%.1f/s),"
+                            + " %d answers (%.1f/s, %.1f%% correct), %d unfinished%n",
+                    seconds, arrivals.sum(), rejected.sum(), maxActive, completed.sum(), completed.sum() / seconds,
+                    answers.sum(), answers.sum() / seconds,
+                    answers.sum() == 0 ? 0 : 100.0 * correct.sum() / answers.sum(), active.get());
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = totalLatencies[operation.ordinal()];
+                out.printf("  %-6s n=%-9d mean %s p50 %s p90 %s p99 %s p99.9 %s max %s%n",
+                        operation.name().toLowerCase(), histogram.getCount(), millis((long) histogram.getMeanNanos()),
+                        millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                        millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                        millis(histogram.getMaxNanos()));
+            }
+            if (!errors.isEmpty()) {
+                out.println("  errors: " + errors);
+            }
+            if (admission) {
+                out.printf("  admission: longest line %d, shed %s, login limit now %d%n",
+                        longestLine.get(), rejections, engine.getLoginAdmission().getLimit());
+            }
+            if (gaveUp.sum() > 0) {
+                out.printf("  %d candidates gave up after %d retries%n", gaveUp.sum(), retries);
+            }
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean collector : collectors) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+            out.printf("  gc: %d collections, %d ms (%.2f%% of the run); live heap after last GC %.0f MB%n",
+                    gcCount, gcMillis, gcMillis / 10.0 / seconds, liveHeapBytes() / 1048576.0);
+        }
+
+        private long errorCount() {
+            return sum(errors);
+        }
+
+        private long sum(Map<?, LongAdder> counts) {
+            long count = 0;
+            for (LongAdder adder : counts.values()) {
+                count += adder.sum();
+            }
+            return count;
+        }
+
+        // Heap occupancy right after each pool's last collection.
+        private long liveHeapBytes() {
+            long live = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+                if (usage != null) {
+                    live += usage.getUsed();
+                }
+            }
+            return live;
+        }
+
+        private String millis(long nanos) {
+            return String.format("%.2fms", nanos / 1e6);
+        }
+    }
+}
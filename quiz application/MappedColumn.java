@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Fixed-width column backed by a file that is memory-mapped in fixed-size
+// segments, so it can grow past 2GB without remapping existing rows.
+// A single writer appends; readers only touch rows the writer has published.
+class MappedColumn implements Closeable {
+    static final int SEGMENT_ROWS = 1 << 20;
+
+    private final FileChannel channel;
+    private final int width;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedColumn(Path file, int width) throws IOException {
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.width = width;
+    }
+
+    int getInt(long row) {
+        return segment(row).getInt(offset(row));
+    }
+
+    long getLong(long row) {
+        return segment(row).getLong(offset(row));
+    }
+
+    void putInt(long row, int value) throws IOException {
+        ensureCapacity(row).putInt(offset(row), value);
+    }
+
+    void putLong(long row, long value) throws IOException {
+        ensureCapacity(row).putLong(offset(row), value);
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(long row) {
+        return segments[(int) (row / SEGMENT_ROWS)];
+    }
+
+    private int offset(long row) {
+        return (int) (row % SEGMENT_ROWS) * width;
+    }
+
+    private MappedByteBuffer ensureCapacity(long row) throws IOException {
+        int index = (int) (row / SEGMENT_ROWS);
+        MappedByteBuffer[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+        long segmentBytes = (long) SEGMENT_ROWS * width;
+        for (int i = current.length; i <= index; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes, segmentBytes);
+        }
+        segments = grown;
+        return grown[index];
+    }
+
+    // Maps every segment that already exists on disk.
+    void mapExisting(long rows) throws IOException {
+        if (rows > 0) {
+            ensureCapacity(rows - 1);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Counters, latency timers and gauges for the hot paths, rendered in the
+// Prometheus text format. Recording is a LongAdder or histogram bucket
+// increment. With -Dquiz.metrics=false ENABLED is a compile-time-folded false,
+// so every record call reduces to nothing once the JIT inlines it.
+public final class Metrics {
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("quiz.metrics"));
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Sorted so the exposition output is stable between scrapes
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help) {
+        return (Counter) metrics.computeIfAbsent(name, n -> new Counter(n, help));
+    }
+
+    public Timer timer(String name, String help) {
+        return (Timer) metrics.computeIfAbsent(name, n -> new Timer(n, help, new LatencyHistogram()));
+    }
+
+    // Publishes a histogram recorded elsewhere, e.g. by the HTTP server or ingest pipeline.
+    public Timer timer(String name, String help, LatencyHistogram histogram) {
+        return (Timer) metrics.computeIfAbsent(name, n -> new Timer(n, help, histogram));
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        metrics.put(name, new Gauge(name, help, "gauge", value));
+    }
+
+    // A monotonic total maintained by another component.
+    public void counter(String name, String help, LongSupplier value) {
+        metrics.put(name, new Gauge(name, help, "counter", value));
+    }
+
+    // Start time for Timer.stop; zero when metrics are off.
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        writePrometheus(out);
+        return out.toString();
+    }
+
+    public void writePrometheus(Appendable out) {
+        try {
+            for (Metric metric : metrics.values()) {
+                out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+                metric.write(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private abstract static class Metric {
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        abstract void write(Appendable out) throws IOException;
+    }
+
+    public static final class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name, String help) {
+            super(name, help);
+        }
+
+        public void increment() {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+
+        public void add(long amount) {
+            if (ENABLED) {
+                count.add(amount);
+            }
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        @Override
+        void write(Appendable out) throws IOException {
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(Long.toString(count.sum())).append('\n');
+        }
+    }
+
+    // Exposed as a summary in seconds with fixed quantiles.
+    public static final class Timer extends Metric {
+        private final LatencyHistogram histogram;
+
+        private Timer(String name, String help, LatencyHistogram histogram) {
+            super(name, help);
+            this.histogram = histogram;
+        }
+
+        public void stop(long startNanos) {
+            if (ENABLED) {
+                histogram.record(System.nanoTime() - startNanos);
+            }
+        }
+
+        public void record(long nanos) {
+            if (ENABLED) {
+                histogram.record(nanos);
+            }
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        void write(Appendable out) throws IOException {
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                        .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(histogram.getTotalNanos())).append('\n');
+            out.append(name).append("_count ").append(Long.toString(histogram.getCount())).append('\n');
+        }
+
+        private static String seconds(long nanos) {
+            return Double.toString(nanos / 1e9);
+        }
+    }
+
+    private static final class Gauge extends Metric {
+        private final String type;
+        private final LongSupplier value;
+
+        private Gauge(String name, String help, String type, LongSupplier value) {
+            super(name, help);
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        void write(Appendable out) throws IOException {
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            out.append(name).append(' ').append(Long.toString(value.getAsLong())).append('\n');
+        }
+    }
+}
@@ -1,27 +1,40 @@
 package com.example.demo;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.scene.Scene;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.geometry.*;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class OnlineQuizApplication extends Application {
+    static final int HISTORY_PAGE_SIZE = 50;
+    static final int SEARCH_RESULT_LIMIT = 100;
+    private static final String ALL_QUIZZES = "All quizzes";
+
     private Stage primaryStage;
     private Scene loginScene, userScene, adminScene;
-    private Map<String, String> users = new HashMap<>();
-    private Map<String, String> admins = new HashMap<>();
-    private List<Quiz> quizzes = new ArrayList<>();
-    private Map<String, List<QuizAttempt>> userQuizAttempts = new HashMap<>();
+    private QuizEngine engine;
+    private Metrics.Timer showResultsTimer;
     private String currentUser;
     private TextField usernameField;
     private PasswordField passwordField;
@@ -30,127 +43,32 @@ public class OnlineQuizApplication extends Application {
         launch(args);
     }
 
-    class Quiz {
-        private String title;
-        private List<Question> questions;
-
-        public Quiz(String title) {
-            this.title = title;
-            this.questions = new ArrayList<>();
-        }
-
-        public void addQuestion(Question question) {
-            questions.add(question);
-        }
-
-        public String getTitle() {
-            return title;
-        }
-
-        public List<Question> getQuestions() {
-            return questions;
-        }
-
-        public void setTitle(String title) {
-            this.title = title;
-        }
-
-        public void setQuestions(List<Question> questions) {
-            this.questions = questions;
-        }
-    }
-
-    public class QuizAttempt {
-        private String username;
-        private String quizTitle;
-        private int score;
-        private int totalQuestions;
-        private LocalDateTime timestamp;
-
-        public QuizAttempt(String username, String quizTitle, int score, int totalQuestions) {
-            this.username = username;
-            this.quizTitle = quizTitle;
-            this.score = score;
-            this.totalQuestions = totalQuestions;
-            this.timestamp = LocalDateTime.now();
-        }
-
-        public String getUsername() {
-            return username;
-        }
-
-        public String getQuizTitle() {
-            return quizTitle;
-        }
-
-        public int getScore() {
-            return score;
-        }
-
-        public int getTotalQuestions() {
-            return totalQuestions;
-        }
-
-        public LocalDateTime getTimestamp() {
-            return timestamp;
-        }
-
-        @Override
-        public String toString() {
-            return String.format("Quiz: %s, Score: %d/%d, Date: %s",
-                    quizTitle, score, totalQuestions, timestamp.toString());
-        }
-    }
-
-    class Question {
-        private String title;
-        private List<String> options;
-        private List<Integer> correctAnswers;
-
-        public Question(String title, List<String> options, List<Integer> correctAnswers) {
-            this.title = title;
-            this.options = options;
-            this.correctAnswers = correctAnswers;
-        }
-
-        public String getTitle() {
-            return title;
-        }
-
-        public List<String> getOptions() {
-            return options;
-        }
-
-        public List<Integer> getCorrectAnswers() {
-            return correctAnswers;
-        }
-
-        public void setTitle(String title) {
-            this.title = title;
-        }
-
-        public void setOptions(List<String> options) {
-            this.options = options;
-        }
-
-        public void setCorrectAnswers(List<Integer> correctAnswers) {
-            this.correctAnswers = correctAnswers;
-        }
-    }
-
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         primaryStage.setTitle("Quiz Application");
 
-        // Add a default admin
-        admins.put("admin", "admin123");
+        try {
+            engine = new QuizEngine(Paths.get(System.getProperty("quiz.dataDir", "quiz-data")));
+        } catch (IOException e) {
+            engine = new QuizEngine();
+            showAlert("Storage Unavailable", "Quiz data could not be loaded and will not be saved: " + e.getMessage());
+        }
+        showResultsTimer = engine.getMetrics().timer("quiz_show_results_seconds",
+                "Finish clicked to results on screen, including the durable write");
 
         createLoginScene();
         primaryStage.setScene(loginScene);
         primaryStage.show();
     }
 
+    @Override
+    public void stop() throws IOException {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
     private void createLoginScene() {
         VBox loginLayout = new VBox(10);
         loginLayout.setPadding(new Insets(20));
@@ -180,23 +98,93 @@ public class OnlineQuizApplication extends Application {
 
 
     private void login(String username, String password) {
-        if (admins.containsKey(username) && admins.get(username).equals(password)) {
-            currentUser = username;  // Set currentUser here
-            showAdminScene();
-        } else if (users.containsKey(username) && users.get(username).equals(password)) {
-            currentUser = username;  // Set currentUser here
-            showUserScene();
-        } else {
-            showAlert("Login Failed", "Invalid username or password.");
+        // Everyone signs in at this machine; the address part is only for the shared key format
+        whenAdmitted(engine.getLoginAdmission(), AdmissionController.loginKey(username, "127.0.0.1"), "signing in", () -> {
+            QuizEngine.Role role = engine.login(username, password);
+            if (role == QuizEngine.Role.ADMIN) {
+                currentUser = username;  // Set currentUser here
+                showAdminScene();
+            } else if (role == QuizEngine.Role.USER) {
+                currentUser = username;  // Set currentUser here
+                showUserScene();
+            } else {
+                showAlert("Login Failed", "Invalid username or password.");
+            }
+        });
+    }
+
+    // Runs the action once the gate admits this client, showing their place in
+    // line while they wait; cancelling gives the place up.
+    private void whenAdmitted(AdmissionController gate, String client, String activity, Runnable action) {
+        AdmissionController.Ticket ticket;
+        try {
+            ticket = gate.enqueue(client);
+            if (ticket.poll()) {
+                runAdmitted(ticket, action);
+                return;
+            }
+        } catch (AdmissionController.Rejection e) {
+            showAlert("Please Try Again", e.getMessage() + " Try again in " + e.getRetryAfterSeconds() + " seconds.");
+            return;
+        }
+
+        Alert waiting = new Alert(Alert.AlertType.NONE, waitingText(ticket), ButtonType.CANCEL);
+        waiting.setTitle("Please Wait");
+        waiting.setHeaderText("Many candidates are " + activity + " right now.");
+        Timeline poll = new Timeline();
+        poll.getKeyFrames().add(new KeyFrame(Duration.millis(500), e -> {
+            try {
+                if (ticket.poll()) {
+                    poll.stop();
+                    waiting.close();
+                    // Dialogs cannot be shown from an animation frame
+                    Platform.runLater(() -> runAdmitted(ticket, action));
+                } else {
+                    waiting.setContentText(waitingText(ticket));
+                }
+            } catch (AdmissionController.Rejection rejection) {
+                poll.stop();
+                waiting.close();
+                Platform.runLater(() -> showAlert("Please Try Again", rejection.getMessage()));
+            }
+        }));
+        poll.setCycleCount(Animation.INDEFINITE);
+        waiting.setOnHidden(e -> {
+            // Still polling means the user cancelled
+            if (poll.getStatus() == Animation.Status.RUNNING) {
+                poll.stop();
+                ticket.release();
+            }
+        });
+        poll.play();
+        waiting.show();
+    }
+
+    private static String waitingText(AdmissionController.Ticket ticket) {
+        return String.format("You are number %d in line. Estimated wait: about %d seconds.",
+                ticket.getPosition(), (ticket.getEstimatedWaitMillis() + 999) / 1000);
+    }
+
+    private static void runAdmitted(AdmissionController.Ticket ticket, Runnable action) {
+        try {
+            action.run();
+        } finally {
+            ticket.release();
         }
     }
 
     // Method to register a new user or admin
     private void register(String username, String password) {
-        if (users.containsKey(username) || admins.containsKey(username)) {
+        boolean registered;
+        try {
+            registered = engine.register(username, password);
+        } catch (IllegalArgumentException e) {
+            showAlert("Registration Failed", e.getMessage());
+            return;
+        }
+        if (!registered) {
             showAlert("Registration Failed", "Username already exists.");
         } else {
-            users.put(username, password);
             showAlert("Registration Successful", "You can now log in with your credentials.");
         }
     }
@@ -208,11 +196,27 @@ public class OnlineQuizApplication extends Application {
         Button createQuizButton = new Button("Create Quiz");
         Button editQuizButton = new Button("Edit Quiz");
         Button deleteQuizButton = new Button("Delete Quiz");
+        Button questionPoolButton = new Button("Question Pool");
+        Button timeLimitsButton = new Button("Time Limits");
+        Button adaptiveButton = new Button("Adaptive Testing");
+        Button itemAnalysisButton = new Button("Item Analysis");
+        Button searchButton = new Button("Search Questions");
+        Button duplicatesButton = new Button("Find Duplicates");
+        Button importButton = new Button("Import Questions");
+        Button exportButton = new Button("Export Questions");
         Button logoutButton = new Button("Logout");
 
         createQuizButton.setOnAction(e -> showCreateQuizDialog());
         editQuizButton.setOnAction(e -> showEditQuizDialog());
         deleteQuizButton.setOnAction(e -> showDeleteQuizDialog());
+        questionPoolButton.setOnAction(e -> showQuestionPoolDialog());
+        timeLimitsButton.setOnAction(e -> showTimeLimitsDialog());
+        adaptiveButton.setOnAction(e -> showAdaptiveDialog());
+        itemAnalysisButton.setOnAction(e -> showItemAnalysis());
+        searchButton.setOnAction(e -> showQuestionSearch());
+        duplicatesButton.setOnAction(e -> showDuplicates());
+        importButton.setOnAction(e -> importQuestions());
+        exportButton.setOnAction(e -> exportQuestions());
         logoutButton.setOnAction(e -> {
             currentUser = null;
             usernameField.clear();
@@ -225,15 +229,23 @@ public class OnlineQuizApplication extends Application {
                 createQuizButton,
                 editQuizButton,
                 deleteQuizButton,
+                questionPoolButton,
+                timeLimitsButton,
+                adaptiveButton,
+                itemAnalysisButton,
+                searchButton,
+                duplicatesButton,
+                importButton,
+                exportButton,
                 logoutButton
         );
 
-        adminScene = new Scene(adminLayout, 300, 250);
+        adminScene = new Scene(adminLayout, 300, 560);
         primaryStage.setScene(adminScene);
     }
 
     private void showCreateQuizDialog() {
-        Dialog<Quiz> dialog = new Dialog<>();
+        Dialog<String> dialog = new Dialog<>();
         dialog.setTitle("Create Quiz");
 
         ButtonType createButtonType = new ButtonType("Create", ButtonBar.ButtonData.OK_DONE);
@@ -254,16 +266,19 @@ public class OnlineQuizApplication extends Application {
 
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == createButtonType) {
-                return new Quiz(quizTitle.getText());
+                return quizTitle.getText();
             }
             return null;
         });
 
-        Optional<Quiz> result = dialog.showAndWait();
+        Optional<String> result = dialog.showAndWait();
 
-        result.ifPresent(quiz -> {
-            quizzes.add(quiz);
-            showQuestionDialog(quiz);
+        result.ifPresent(title -> {
+            try {
+                showQuestionDialog(engine.createQuiz(title));
+            } catch (IllegalArgumentException e) {
+                showAlert("Create Quiz Failed", e.getMessage());
+            }
         });
     }
 
@@ -356,13 +371,29 @@ public class OnlineQuizApplication extends Application {
         if (correct3.isSelected()) correctAnswers.add(2);
         if (correct4.isSelected()) correctAnswers.add(3);
 
-        if (!questionTitle.getText().isEmpty()) {
-            Question question = new Question(questionTitle.getText(), options, correctAnswers);
-            quiz.addQuestion(question);
+        Question question;
+        try {
+            question = new Question(questionTitle.getText(), options, correctAnswers);
+        } catch (IllegalArgumentException e) {
+            showAlert("Invalid Question", e.getMessage());
+            return;
+        }
+        List<DuplicateDetector.Match> duplicates = engine.findDuplicates(question);
+        if (!duplicates.isEmpty()) {
+            DuplicateDetector.Match match = duplicates.get(0);
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "", ButtonType.YES, ButtonType.NO);
+            confirm.setTitle("Possible Duplicate");
+            confirm.setHeaderText(String.format("%.0f%% similar to question %d of \"%s\"",
+                    match.getSimilarity() * 100, match.getQuestionIndex() + 1, match.getQuizTitle()));
+            confirm.setContentText(match.getQuestion().getTitle() + "\n\nAdd this question anyway?");
+            if (confirm.showAndWait().orElse(ButtonType.NO) != ButtonType.YES) {
+                return;
+            }
         }
+        engine.addQuestion(quiz, question);
     }
     private void showEditQuizDialog() {
-        ChoiceDialog<Quiz> dialog = new ChoiceDialog<>(null, quizzes);
+        ChoiceDialog<Quiz> dialog = new ChoiceDialog<>(null, engine.getQuizzes());
         dialog.setTitle("Edit Quiz");
         dialog.setHeaderText("Select a quiz to edit");
         dialog.setContentText("Quiz:");
@@ -372,13 +403,19 @@ public class OnlineQuizApplication extends Application {
     }
 
     private void editQuiz(Quiz quiz) {
-        // Dialog to edit each question in the quiz
-        for (Question question : quiz.getQuestions()) {
-            editQuestionDialog(quiz, question);
+        // Dialog to edit each question in the latest version of the quiz
+        Quiz latest = engine.findQuiz(quiz.getTitle());
+        if (latest == null) {
+            showAlert("Quiz Not Found", "The quiz has been deleted.");
+            return;
+        }
+        List<Question> questions = latest.getQuestions();
+        for (int i = 0; i < questions.size(); i++) {
+            editQuestionDialog(quiz, i, questions.get(i));
         }
     }
 
-    private void editQuestionDialog(Quiz quiz, Question question) {
+    private void editQuestionDialog(Quiz quiz, int index, Question question) {
         Dialog<Question> dialog = new Dialog<>();
         dialog.setTitle("Edit Question");
 
@@ -395,80 +432,516 @@ public class OnlineQuizApplication extends Application {
         grid.add(new Label("Question:"), 0, 0);
         grid.add(questionTitleField, 1, 0);
 
-        // Edit the options
-        TextField option1 = new TextField(question.getOptions().get(0));
-        TextField option2 = new TextField(question.getOptions().get(1));
-        TextField option3 = new TextField(question.getOptions().get(2));
-        TextField option4 = new TextField(question.getOptions().get(3));
+        TextField topicField = new TextField(question.getTopic());
+        grid.add(new Label("Topic:"), 0, 1);
+        grid.add(topicField, 1, 1);
+
+        // One row per option; imported questions can have any number of them
+        List<TextField> optionFields = new ArrayList<>();
+        List<CheckBox> correctBoxes = new ArrayList<>();
+        long correctMask = question.getCorrectMask();
+        for (int i = 0; i < question.getOptions().size(); i++) {
+            TextField optionField = new TextField(question.getOptions().get(i));
+            CheckBox correctBox = new CheckBox("Correct");
+            correctBox.setSelected(AnswerMask.contains(correctMask, i));
+            optionFields.add(optionField);
+            correctBoxes.add(correctBox);
+
+            grid.add(new Label("Option " + (i + 1) + ":"), 0, i + 2);
+            grid.add(optionField, 1, i + 2);
+            grid.add(correctBox, 2, i + 2);
+        }
 
-        CheckBox correct1 = new CheckBox("Correct");
-        CheckBox correct2 = new CheckBox("Correct");
-        CheckBox correct3 = new CheckBox("Correct");
-        CheckBox correct4 = new CheckBox("Correct");
+        // Item parameters for adaptive quizzes
+        int parameterRow = question.getOptions().size() + 2;
+        TextField discriminationField = new TextField(String.valueOf(question.getDiscrimination()));
+        TextField difficultyField = new TextField(String.valueOf(question.getDifficulty()));
+        TextField guessingField = new TextField(String.valueOf(question.getGuessing()));
+        grid.add(new Label("Discrimination:"), 0, parameterRow);
+        grid.add(discriminationField, 1, parameterRow);
+        grid.add(new Label("Difficulty:"), 0, parameterRow + 1);
+        grid.add(difficultyField, 1, parameterRow + 1);
+        grid.add(new Label("Guessing:"), 0, parameterRow + 2);
+        grid.add(guessingField, 1, parameterRow + 2);
 
-        // Set the correct answers based on the current question's correct answers
-        if (question.getCorrectAnswers().contains(0)) correct1.setSelected(true);
-        if (question.getCorrectAnswers().contains(1)) correct2.setSelected(true);
-        if (question.getCorrectAnswers().contains(2)) correct3.setSelected(true);
-        if (question.getCorrectAnswers().contains(3)) correct4.setSelected(true);
+        dialog.getDialogPane().setContent(new ScrollPane(grid));
 
-        // Add the options and correct answer checkboxes to the grid
-        grid.add(new Label("Option 1:"), 0, 1);
-        grid.add(option1, 1, 1);
-        grid.add(correct1, 2, 1);
+        dialog.setResultConverter(dialogButton -> {
+            if (dialogButton == saveButtonType) {
+                List<String> updatedOptions = new ArrayList<>();
+                List<Integer> correctAnswers = new ArrayList<>();
+                for (int i = 0; i < optionFields.size(); i++) {
+                    updatedOptions.add(optionFields.get(i).getText());
+                    if (correctBoxes.get(i).isSelected()) correctAnswers.add(i);
+                }
 
-        grid.add(new Label("Option 2:"), 0, 2);
-        grid.add(option2, 1, 2);
-        grid.add(correct2, 2, 2);
+                // Publish the edited question as a new quiz version
+                Question updatedQuestion;
+                try {
+                    updatedQuestion = new Question(questionTitleField.getText(), updatedOptions, correctAnswers,
+                            topicField.getText().trim(),
+                            Double.parseDouble(discriminationField.getText().trim()),
+                            Double.parseDouble(difficultyField.getText().trim()),
+                            Double.parseDouble(guessingField.getText().trim()));
+                } catch (IllegalArgumentException e) {
+                    showAlert("Invalid Question", e.getMessage());
+                    return null;
+                }
+                engine.replaceQuestion(quiz, index, updatedQuestion);
 
-        grid.add(new Label("Option 3:"), 0, 3);
-        grid.add(option3, 1, 3);
-        grid.add(correct3, 2, 3);
+                return updatedQuestion;
+            }
+            return null;
+        });
 
-        grid.add(new Label("Option 4:"), 0, 4);
-        grid.add(option4, 1, 4);
-        grid.add(correct4, 2, 4);
+        Optional<Question> result = dialog.showAndWait();
+
+        result.ifPresent(updatedQuestion -> {
+            showAlert("Question Updated", "The question has been updated successfully.");
+        });
+    }
+
+    private void importQuestions() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Questions (JSON Lines)");
+        File file = chooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath())) {
+            QuestionBankIO.ImportResult result = new QuestionBankIO(engine).importFrom(reader);
+            StringBuilder message = new StringBuilder(String.format(
+                    "Imported %d questions in %d ms (%.0f questions/sec).%nRejected %d lines.",
+                    result.getImported(), result.getElapsedMillis(), result.getQuestionsPerSecond(), result.getRejected()));
+            for (String error : result.getErrors().subList(0, Math.min(5, result.getErrors().size()))) {
+                message.append('\n').append(error);
+            }
+            showAlert("Import Complete", message.toString());
+        } catch (IOException e) {
+            showAlert("Import Failed", e.getMessage());
+        }
+    }
+
+    private void exportQuestions() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Questions (JSON Lines)");
+        chooser.setInitialFileName("questions.jsonl");
+        File file = chooser.showSaveDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath())) {
+            long exported = new QuestionBankIO(engine).exportTo(writer);
+            showAlert("Export Complete", "Exported " + exported + " questions.");
+        } catch (IOException e) {
+            showAlert("Export Failed", e.getMessage());
+        }
+    }
+
+    private void showQuestionPoolDialog() {
+        ChoiceDialog<Quiz> choice = new ChoiceDialog<>(null, engine.getQuizzes());
+        choice.setTitle("Question Pool");
+        choice.setHeaderText("Select a quiz");
+        choice.setContentText("Quiz:");
+        Optional<Quiz> selected = choice.showAndWait();
+        if (!selected.isPresent()) {
+            return;
+        }
+        Quiz quiz = engine.findQuiz(selected.get().getTitle());
+        if (quiz == null) {
+            showAlert("Quiz Not Found", "The quiz has been deleted.");
+            return;
+        }
 
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Question Pool");
+        dialog.setHeaderText("Questions per topic, e.g. \"algebra=5, geometry=3\".\n"
+                + "Leave empty to draw every question in random order.");
+        ButtonType saveButtonType = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
+        ButtonType fixedButtonType = new ButtonType("Fixed Order", ButtonBar.ButtonData.OTHER);
+        dialog.getDialogPane().getButtonTypes().addAll(saveButtonType, fixedButtonType, ButtonType.CANCEL);
+
+        QuestionPool pool = quiz.getPool();
+        TextField quotasField = new TextField(pool == null ? "" : pool.getQuotas().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining(", ")));
+        CheckBox shuffleOptionsBox = new CheckBox("Shuffle options");
+        shuffleOptionsBox.setSelected(pool != null && pool.isShuffleOptions());
+        VBox content = new VBox(10, new Label("Quotas:"), quotasField, shuffleOptionsBox);
+        content.setPadding(new Insets(20));
+        dialog.getDialogPane().setContent(content);
+
+        Optional<ButtonType> result = dialog.showAndWait();
+        if (!result.isPresent() || result.get() == ButtonType.CANCEL) {
+            return;
+        }
+        try {
+            QuestionPool updated = result.get() == fixedButtonType ? null
+                    : new QuestionPool(parseQuotas(quotasField.getText()), shuffleOptionsBox.isSelected());
+            engine.setQuestionPool(quiz, updated);
+            showAlert("Question Pool Saved", updated == null
+                    ? "Every session gets all questions in order."
+                    : "Each session now draws its own questions.");
+        } catch (IllegalArgumentException e) {
+            showAlert("Invalid Question Pool", e.getMessage());
+        }
+    }
+
+    private void showTimeLimitsDialog() {
+        ChoiceDialog<Quiz> choice = new ChoiceDialog<>(null, engine.getQuizzes());
+        choice.setTitle("Time Limits");
+        choice.setHeaderText("Select a quiz");
+        choice.setContentText("Quiz:");
+        Optional<Quiz> selected = choice.showAndWait();
+        if (!selected.isPresent()) {
+            return;
+        }
+        Quiz quiz = engine.findQuiz(selected.get().getTitle());
+        if (quiz == null) {
+            showAlert("Quiz Not Found", "The quiz has been deleted.");
+            return;
+        }
+
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Time Limits");
+        dialog.setHeaderText("Limits in seconds; 0 means no limit.\nAnswers are submitted automatically when time runs out.");
+        ButtonType saveButtonType = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(saveButtonType, ButtonType.CANCEL);
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+        TextField quizLimitField = new TextField(String.valueOf(quiz.getTimeLimitSeconds()));
+        TextField questionLimitField = new TextField(String.valueOf(quiz.getQuestionTimeLimitSeconds()));
+        grid.add(new Label("Whole quiz:"), 0, 0);
+        grid.add(quizLimitField, 1, 0);
+        grid.add(new Label("Per question:"), 0, 1);
+        grid.add(questionLimitField, 1, 1);
         dialog.getDialogPane().setContent(grid);
 
-        dialog.setResultConverter(dialogButton -> {
-            if (dialogButton == saveButtonType) {
-                // Update the question title
-                question.setTitle(questionTitleField.getText());
+        Optional<ButtonType> result = dialog.showAndWait();
+        if (!result.isPresent() || result.get() != saveButtonType) {
+            return;
+        }
+        try {
+            engine.setTimeLimits(quiz, Integer.parseInt(quizLimitField.getText().trim()),
+                    Integer.parseInt(questionLimitField.getText().trim()));
+            showAlert("Time Limits Saved", "New sessions of this quiz use the updated limits.");
+        } catch (NumberFormatException e) {
+            showAlert("Invalid Time Limits", "Limits must be whole numbers of seconds.");
+        } catch (IllegalArgumentException e) {
+            showAlert("Invalid Time Limits", e.getMessage());
+        }
+    }
 
-                // Update the options
-                List<String> updatedOptions = Arrays.asList(option1.getText(), option2.getText(), option3.getText(), option4.getText());
-                question.setOptions(updatedOptions);
+    private void showAdaptiveDialog() {
+        ChoiceDialog<Quiz> choice = new ChoiceDialog<>(null, engine.getQuizzes());
+        choice.setTitle("Adaptive Testing");
+        choice.setHeaderText("Select a quiz");
+        choice.setContentText("Quiz:");
+        Optional<Quiz> selected = choice.showAndWait();
+        if (!selected.isPresent()) {
+            return;
+        }
+        Quiz quiz = engine.findQuiz(selected.get().getTitle());
+        if (quiz == null) {
+            showAlert("Quiz Not Found", "The quiz has been deleted.");
+            return;
+        }
 
-                // Update the correct answers
-                List<Integer> correctAnswers = new ArrayList<>();
-                if (correct1.isSelected()) correctAnswers.add(0);
-                if (correct2.isSelected()) correctAnswers.add(1);
-                if (correct3.isSelected()) correctAnswers.add(2);
-                if (correct4.isSelected()) correctAnswers.add(3);
-                question.setCorrectAnswers(correctAnswers);
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Adaptive Testing");
+        dialog.setHeaderText("Each question is chosen for the candidate's estimated ability.\n"
+                + "The test stops at the target standard error (0 = never) or the maximum.");
+        ButtonType saveButtonType = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(saveButtonType, ButtonType.CANCEL);
 
-                return question;
+        AdaptiveSettings current = quiz.getAdaptive();
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+        CheckBox enabledBox = new CheckBox("Adaptive");
+        enabledBox.setSelected(current != null);
+        TextField minField = new TextField(String.valueOf(current == null ? 5 : current.getMinQuestions()));
+        TextField maxField = new TextField(String.valueOf(current == null
+                ? Math.max(5, Math.min(20, quiz.getQuestions().size())) : current.getMaxQuestions()));
+        TextField targetField = new TextField(String.valueOf(current == null ? 0.3 : current.getTargetStandardError()));
+        grid.add(enabledBox, 0, 0, 2, 1);
+        grid.add(new Label("Minimum questions:"), 0, 1);
+        grid.add(minField, 1, 1);
+        grid.add(new Label("Maximum questions:"), 0, 2);
+        grid.add(maxField, 1, 2);
+        grid.add(new Label("Target standard error:"), 0, 3);
+        grid.add(targetField, 1, 3);
+        dialog.getDialogPane().setContent(grid);
+
+        Optional<ButtonType> result = dialog.showAndWait();
+        if (!result.isPresent() || result.get() != saveButtonType) {
+            return;
+        }
+        try {
+            AdaptiveSettings settings = enabledBox.isSelected()
+                    ? new AdaptiveSettings(Integer.parseInt(minField.getText().trim()),
+                            Integer.parseInt(maxField.getText().trim()),
+                            Double.parseDouble(targetField.getText().trim()))
+                    : null;
+            engine.setAdaptive(quiz, settings);
+            showAlert("Adaptive Testing Saved", "New sessions of this quiz use the updated settings.");
+        } catch (NumberFormatException e) {
+            showAlert("Invalid Adaptive Settings", "Question counts must be whole numbers and the target a number.");
+        } catch (IllegalArgumentException e) {
+            showAlert("Invalid Adaptive Settings", e.getMessage());
+        }
+    }
+
+    // Refreshes while open so admins can watch items as attempts come in.
+    private void showItemAnalysis() {
+        ChoiceDialog<Quiz> choice = new ChoiceDialog<>(null, engine.getQuizzes());
+        choice.setTitle("Item Analysis");
+        choice.setHeaderText("Select a quiz");
+        choice.setContentText("Quiz:");
+        Optional<Quiz> selected = choice.showAndWait();
+        if (!selected.isPresent()) {
+            return;
+        }
+        Quiz quiz = selected.get();
+
+        VBox analysisLayout = new VBox(10);
+        analysisLayout.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Item Analysis: " + quiz.getTitle());
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+        Label hintLabel = new Label("Difficulty is the share answering correctly. Discrimination below 0.2 "
+                + "suggests a question that does not separate strong from weak candidates.");
+        hintLabel.setWrapText(true);
+
+        TableView<ItemAnalytics.ItemStatistics> itemTable = new TableView<>();
+
+        TableColumn<ItemAnalytics.ItemStatistics, String> questionColumn = new TableColumn<>("Question");
+        questionColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getQuestion().getTitle()));
+
+        TableColumn<ItemAnalytics.ItemStatistics, String> responsesColumn = new TableColumn<>("Responses");
+        responsesColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getResponses())));
+
+        TableColumn<ItemAnalytics.ItemStatistics, String> difficultyColumn = new TableColumn<>("Difficulty");
+        difficultyColumn.setCellValueFactory(cellData -> new SimpleStringProperty(formatStatistic(cellData.getValue().getPValue())));
+
+        TableColumn<ItemAnalytics.ItemStatistics, String> discriminationColumn = new TableColumn<>("Discrimination");
+        discriminationColumn.setCellValueFactory(cellData -> new SimpleStringProperty(formatStatistic(cellData.getValue().getPointBiserial())));
+
+        TableColumn<ItemAnalytics.ItemStatistics, String> optionsColumn = new TableColumn<>("Options Chosen");
+        optionsColumn.setCellValueFactory(cellData -> {
+            ItemAnalytics.ItemStatistics statistics = cellData.getValue();
+            List<String> options = statistics.getQuestion().getOptions();
+            long[] counts = statistics.getOptionCounts();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < counts.length; i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(options.get(i)).append(": ").append(counts[i]);
             }
-            return null;
+            if (statistics.getBlankResponses() > 0) {
+                text.append(", blank: ").append(statistics.getBlankResponses());
+            }
+            return new SimpleStringProperty(text.toString());
         });
 
-        Optional<Question> result = dialog.showAndWait();
+        itemTable.getColumns().addAll(questionColumn, responsesColumn, difficultyColumn, discriminationColumn, optionsColumn);
+        itemTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        itemTable.getItems().setAll(engine.getItemStatistics(quiz));
 
-        result.ifPresent(updatedQuestion -> {
-            showAlert("Question Updated", "The question has been updated successfully.");
+        Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(2),
+                e -> itemTable.getItems().setAll(engine.getItemStatistics(quiz))));
+        refresh.setCycleCount(Animation.INDEFINITE);
+        refresh.play();
+
+        Button backButton = new Button("Back to Admin Panel");
+        backButton.setOnAction(e -> {
+            refresh.stop();
+            primaryStage.setScene(adminScene);
+        });
+
+        analysisLayout.getChildren().addAll(titleLabel, hintLabel, itemTable, backButton);
+        primaryStage.setScene(new Scene(new ScrollPane(analysisLayout), 700, 450));
+    }
+
+    // Searches as the admin types; double-click a result to edit that question.
+    private void showQuestionSearch() {
+        VBox searchLayout = new VBox(10);
+        searchLayout.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Search Questions");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+        TextField queryField = new TextField();
+        queryField.setPromptText("Words in the question or its options");
+        Label statusLabel = new Label();
+
+        TableView<QuestionSearchIndex.Hit> hitTable = new TableView<>();
+
+        TableColumn<QuestionSearchIndex.Hit, String> quizColumn = new TableColumn<>("Quiz");
+        quizColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getQuizTitle()));
+
+        TableColumn<QuestionSearchIndex.Hit, String> numberColumn = new TableColumn<>("#");
+        numberColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getQuestionIndex() + 1)));
+
+        TableColumn<QuestionSearchIndex.Hit, String> questionColumn = new TableColumn<>("Question");
+        questionColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getQuestion().getTitle()));
+
+        TableColumn<QuestionSearchIndex.Hit, String> optionsColumn = new TableColumn<>("Options");
+        optionsColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.join(", ", cellData.getValue().getQuestion().getOptions())));
+
+        hitTable.getColumns().addAll(quizColumn, numberColumn, questionColumn, optionsColumn);
+        hitTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+
+        Runnable search = () -> {
+            long start = System.nanoTime();
+            List<QuestionSearchIndex.Hit> hits = engine.searchQuestions(queryField.getText(), SEARCH_RESULT_LIMIT);
+            hitTable.getItems().setAll(hits);
+            statusLabel.setText(queryField.getText().trim().isEmpty() ? ""
+                    : String.format("%d results in %.1f ms", hits.size(), (System.nanoTime() - start) / 1e6));
+        };
+        queryField.textProperty().addListener((observable, oldText, newText) -> search.run());
+
+        hitTable.setRowFactory(table -> {
+            TableRow<QuestionSearchIndex.Hit> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty()) {
+                    QuestionSearchIndex.Hit hit = row.getItem();
+                    Quiz quiz = engine.findQuiz(hit.getQuizTitle());
+                    if (quiz == null || hit.getQuestionIndex() >= quiz.getQuestions().size()
+                            || quiz.getQuestions().get(hit.getQuestionIndex()) != hit.getQuestion()) {
+                        showAlert("Question Changed", "The question has changed since the search; showing fresh results.");
+                    } else {
+                        editQuestionDialog(quiz, hit.getQuestionIndex(), hit.getQuestion());
+                    }
+                    search.run();
+                }
+            });
+            return row;
         });
+
+        Button backButton = new Button("Back to Admin Panel");
+        backButton.setOnAction(e -> primaryStage.setScene(adminScene));
+
+        searchLayout.getChildren().addAll(titleLabel, queryField, statusLabel, hitTable, backButton);
+        primaryStage.setScene(new Scene(searchLayout, 700, 450));
+        queryField.requestFocus();
+    }
+
+    // The pass runs off the FX thread; one row per question, grouped.
+    private void showDuplicates() {
+        VBox duplicatesLayout = new VBox(10);
+        duplicatesLayout.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Near-Duplicate Questions");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+        Label statusLabel = new Label("Scanning all quizzes...");
+
+        TableView<DuplicateRow> duplicateTable = new TableView<>();
+
+        TableColumn<DuplicateRow, String> groupColumn = new TableColumn<>("Group");
+        groupColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().group)));
+
+        TableColumn<DuplicateRow, String> quizColumn = new TableColumn<>("Quiz");
+        quizColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().match.getQuizTitle()));
+
+        TableColumn<DuplicateRow, String> numberColumn = new TableColumn<>("#");
+        numberColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().match.getQuestionIndex() + 1)));
+
+        TableColumn<DuplicateRow, String> questionColumn = new TableColumn<>("Question");
+        questionColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().match.getQuestion().getTitle()));
+
+        TableColumn<DuplicateRow, String> similarityColumn = new TableColumn<>("Similarity");
+        similarityColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.format("%.0f%%", cellData.getValue().match.getSimilarity() * 100)));
+
+        duplicateTable.getColumns().addAll(groupColumn, quizColumn, numberColumn, questionColumn, similarityColumn);
+        duplicateTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        duplicateTable.setRowFactory(table -> {
+            TableRow<DuplicateRow> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty()) {
+                    DuplicateDetector.Match match = row.getItem().match;
+                    Quiz quiz = engine.findQuiz(match.getQuizTitle());
+                    if (quiz == null || match.getQuestionIndex() >= quiz.getQuestions().size()
+                            || quiz.getQuestions().get(match.getQuestionIndex()) != match.getQuestion()) {
+                        showAlert("Question Changed", "The question has changed since the scan.");
+                    } else {
+                        editQuestionDialog(quiz, match.getQuestionIndex(), match.getQuestion());
+                    }
+                }
+            });
+            return row;
+        });
+
+        long start = System.nanoTime();
+        CompletableFuture.supplyAsync(engine::findDuplicateGroups).whenComplete((groups, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                statusLabel.setText("Scan failed: " + error.getMessage());
+                return;
+            }
+            List<DuplicateRow> rows = new ArrayList<>();
+            for (int i = 0; i < groups.size(); i++) {
+                for (DuplicateDetector.Match match : groups.get(i)) {
+                    rows.add(new DuplicateRow(i + 1, match));
+                }
+            }
+            duplicateTable.getItems().setAll(rows);
+            statusLabel.setText(String.format("%d groups, %d questions, found in %.0f ms. Double-click to edit.",
+                    groups.size(), rows.size(), (System.nanoTime() - start) / 1e6));
+        }));
+
+        Button backButton = new Button("Back to Admin Panel");
+        backButton.setOnAction(e -> primaryStage.setScene(adminScene));
+
+        duplicatesLayout.getChildren().addAll(titleLabel, statusLabel, duplicateTable, backButton);
+        primaryStage.setScene(new Scene(duplicatesLayout, 700, 450));
+    }
+
+    private static final class DuplicateRow {
+        final int group;
+        final DuplicateDetector.Match match;
+
+        DuplicateRow(int group, DuplicateDetector.Match match) {
+            this.group = group;
+            this.match = match;
+        }
+    }
+
+    private static String formatStatistic(double value) {
+        return Double.isNaN(value) ? "-" : String.format("%.2f", value);
+    }
+
+    private static Map<String, Integer> parseQuotas(String text) {
+        Map<String, Integer> quotas = new LinkedHashMap<>();
+        for (String part : text.split(",")) {
+            if (part.trim().isEmpty()) {
+                continue;
+            }
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected topic=count but got '" + part.trim() + "'");
+            }
+            try {
+                quotas.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: '" + pair[1].trim() + "'");
+            }
+        }
+        return quotas;
     }
 
     private void showDeleteQuizDialog() {
-        ChoiceDialog<Quiz> dialog = new ChoiceDialog<>(null, quizzes);
+        ChoiceDialog<Quiz> dialog = new ChoiceDialog<>(null, engine.getQuizzes());
         dialog.setTitle("Delete Quiz");
         dialog.setHeaderText("Select a quiz to delete");
         dialog.setContentText("Quiz:");
 
         Optional<Quiz> result = dialog.showAndWait();
         result.ifPresent(quiz -> {
-            quizzes.remove(quiz);
+            engine.deleteQuiz(quiz);
             showAlert("Quiz Deleted", "The quiz has been deleted.");
         });
     }
@@ -478,10 +951,12 @@ public class OnlineQuizApplication extends Application {
         userLayout.setPadding(new Insets(20));
 
         Button takeQuizButton = new Button("Take Quiz");
+        Button resumeQuizButton = new Button("Resume Quiz");
         Button viewHistoryButton = new Button("View Quiz History");
         Button logoutButton = new Button("Logout");
 
         takeQuizButton.setOnAction(e -> showTakeQuizDialog());
+        resumeQuizButton.setOnAction(e -> showResumeQuizDialog());
         viewHistoryButton.setOnAction(e -> showQuizHistory());
         logoutButton.setOnAction(e -> {
             currentUser = null;
@@ -493,20 +968,21 @@ public class OnlineQuizApplication extends Application {
         userLayout.getChildren().addAll(
                 new Label("User Panel"),
                 takeQuizButton,
+                resumeQuizButton,
                 viewHistoryButton,
                 logoutButton
         );
 
-        userScene = new Scene(userLayout, 300, 250);
+        userScene = new Scene(userLayout, 300, 280);
         primaryStage.setScene(userScene);
     }
     private void showTakeQuizDialog() {
-        if (quizzes.isEmpty()) {
+        if (engine.getQuizzes().isEmpty()) {
             showAlert("No Quizzes", "There are no quizzes available to take.");
             return;
         }
 
-        ChoiceDialog<Quiz> dialog = new ChoiceDialog<>(null, quizzes);
+        ChoiceDialog<Quiz> dialog = new ChoiceDialog<>(null, engine.getQuizzes());
         dialog.setTitle("Take Quiz");
         dialog.setHeaderText("Select a quiz to take");
         dialog.setContentText("Quiz:");
@@ -515,32 +991,80 @@ public class OnlineQuizApplication extends Application {
         result.ifPresent(this::takeQuiz);
     }
 
+    private void showResumeQuizDialog() {
+        List<SessionCheckpoint> resumable = engine.getResumableSessions(currentUser);
+        if (resumable.isEmpty()) {
+            showAlert("Nothing to Resume", "You have no unfinished quizzes.");
+            return;
+        }
+        Map<String, String> sessionIds = new LinkedHashMap<>();
+        for (SessionCheckpoint checkpoint : resumable) {
+            sessionIds.put(String.format("%s (%d of %d answered)", checkpoint.getQuizTitle(),
+                    checkpoint.getAnsweredCount(), checkpoint.getTotalQuestions()), checkpoint.getSessionId());
+        }
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(null, new ArrayList<>(sessionIds.keySet()));
+        dialog.setTitle("Resume Quiz");
+        dialog.setHeaderText("Select a quiz to continue");
+        dialog.setContentText("Quiz:");
+
+        Optional<String> result = dialog.showAndWait();
+        result.ifPresent(choice -> {
+            try {
+                runSession(engine.resumeSession(currentUser, sessionIds.get(choice)));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                showAlert("Cannot Resume", e.getMessage());
+            }
+        });
+    }
+
     private void takeQuiz(Quiz quiz) {
+        whenAdmitted(engine.getStartAdmission(), currentUser, "starting a quiz",
+                () -> runSession(engine.startSession(currentUser, quiz)));
+    }
+
+    // Drives a new or resumed session; progress lives in the engine, so leaving keeps it resumable.
+    private void runSession(QuizSession session) {
+        Quiz quiz = session.getQuiz();
         VBox quizLayout = new VBox(10);
         quizLayout.setPadding(new Insets(20));
 
         Label quizTitle = new Label(quiz.getTitle());
         quizLayout.getChildren().add(quizTitle);
 
-        List<Question> questions = quiz.getQuestions();
-        int[] currentQuestionIndex = {0};
-        int[] score = {0};
-
+        Label timerLabel = new Label();
         Label questionLabel = new Label();
         VBox optionsBox = new VBox(5);
         Button submitButton = new Button("Submit Answer");
+        Button leaveButton = new Button("Save and Exit");
 
-        quizLayout.getChildren().addAll(questionLabel, optionsBox, submitButton);
+        quizLayout.getChildren().addAll(timerLabel, questionLabel, optionsBox, submitButton, leaveButton);
 
         Scene quizScene = new Scene(new ScrollPane(quizLayout), 400, 500);
 
         List<CheckBox> checkBoxes = new ArrayList<>();
+        // Position on screen, so a question the server timed out can be noticed
+        int[] displayedIndex = {-1};
+        boolean[] resultsShown = {false};
+        Timeline countdown = new Timeline();
+
+        Runnable showResults = () -> {
+            if (!resultsShown[0]) {
+                resultsShown[0] = true;
+                countdown.stop();
+                showQuizResults(session);
+            }
+        };
 
         Runnable displayQuestion = () -> {
-            if (currentQuestionIndex[0] < questions.size()) {
-                Question question = questions.get(currentQuestionIndex[0]);
+            if (resultsShown[0]) {
+                return;
+            }
+            long start = Metrics.start();
+            Question question = session.isFinished() ? null : session.getCurrentQuestion();
+            if (question != null) {
+                displayedIndex[0] = session.getCurrentQuestionIndex();
                 questionLabel.setText(String.format("Question %d of %d: %s",
-                        currentQuestionIndex[0] + 1, questions.size(), question.getTitle()));
+                        session.getCurrentQuestionIndex() + 1, session.getTotalQuestions(), question.getTitle()));
 
                 optionsBox.getChildren().clear();
                 checkBoxes.clear();
@@ -552,29 +1076,58 @@ public class OnlineQuizApplication extends Application {
                 }
 
                 submitButton.setDisable(false);
+                engine.getDisplayQuestionTimer().stop(start);
             } else {
-                showQuizResults(quiz, score[0]);
+                showResults.run();
             }
         };
 
+        if (quiz.isTimed()) {
+            // Deadlines are enforced by the engine; this only mirrors them on screen
+            countdown.getKeyFrames().add(new KeyFrame(Duration.millis(250), e -> {
+                long remaining = session.getRemainingMillis();
+                timerLabel.setText(String.format("Time left: %d:%02d", remaining / 60000, remaining / 1000 % 60));
+                if (session.isFinished() || session.getCurrentQuestionIndex() != displayedIndex[0]) {
+                    displayQuestion.run();
+                }
+            }));
+            countdown.setCycleCount(Animation.INDEFINITE);
+            countdown.play();
+        }
+
+        leaveButton.setOnAction(e -> {
+            // A timed quiz keeps running and is graded at its deadline
+            resultsShown[0] = true;
+            countdown.stop();
+            primaryStage.setScene(userScene);
+        });
+
         submitButton.setOnAction(e -> {
-            Question currentQuestion = questions.get(currentQuestionIndex[0]);
-            List<Integer> selectedAnswers = new ArrayList<>();
+            Question currentQuestion = session.getCurrentQuestion();
+            if (currentQuestion == null || session.getCurrentQuestionIndex() != displayedIndex[0]) {
+                // The question closed while it was on screen
+                displayQuestion.run();
+                return;
+            }
+            long selectedMask = 0;
 
             for (int i = 0; i < checkBoxes.size(); i++) {
                 if (checkBoxes.get(i).isSelected()) {
-                    selectedAnswers.add(i);
+                    selectedMask |= 1L << i;
                 }
             }
 
-            boolean isCorrect = selectedAnswers.equals(currentQuestion.getCorrectAnswers());
-            if (isCorrect) {
-                score[0]++;
+            boolean isCorrect;
+            try {
+                isCorrect = engine.submitAnswer(session.getId(), selectedMask);
+            } catch (IllegalStateException ex) {
+                showAlert("Time Is Up", "The quiz time limit was reached.");
+                displayQuestion.run();
+                return;
             }
 
             showFeedback(isCorrect, currentQuestion.getCorrectAnswers());
 
-            currentQuestionIndex[0]++;
             displayQuestion.run();
         });
 
@@ -592,27 +1145,46 @@ public class OnlineQuizApplication extends Application {
         alert.showAndWait();
     }
 
-    private void showQuizResults(Quiz quiz, int score) {
-        String resultMessage = String.format("Quiz completed!\n\nYour score: %d out of %d\nPercentage: %.2f%%",
-                score, quiz.getQuestions().size(), (double)score / quiz.getQuestions().size() * 100);
+    private void showQuizResults(QuizSession session) {
+        // Recording happens on the ingest pipeline; show the result once it is stored
+        long start = Metrics.start();
+        String abilityText = session.isAdaptive()
+                ? String.format("\nEstimated ability: %.2f (± %.2f)", session.getAbility(), session.getStandardError())
+                : "";
+        engine.finishAsync(session.getId()).whenComplete((attempt, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showAlert("Result Not Saved", "Your result could not be recorded: " + error.getMessage());
+                primaryStage.setScene(userScene);
+            } else {
+                showQuizResults(attempt, abilityText, start);
+            }
+        }));
+    }
+
+    private void showQuizResults(QuizAttempt attempt, String abilityText, long start) {
+        int score = attempt.getScore();
+        int totalQuestions = attempt.getTotalQuestions();
+
+        Leaderboard leaderboard = engine.getLeaderboard();
+        String resultMessage = String.format("Quiz completed!\n\nYour score: %d out of %d\nPercentage: %.2f%%\nYour rank: %d of %d",
+                score, totalQuestions, (double)score / totalQuestions * 100,
+                leaderboard.getRank(attempt.getQuizTitle(), currentUser),
+                leaderboard.getStats(attempt.getQuizTitle()).getUsers()) + abilityText;
 
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Quiz Results");
-        alert.setHeaderText("Quiz: " + quiz.getTitle());
+        alert.setHeaderText("Quiz: " + attempt.getQuizTitle());
         alert.setContentText(resultMessage);
+        showResultsTimer.stop(start);
         alert.showAndWait();
 
-        // Record the quiz attempt with the current username
-        QuizAttempt attempt = new QuizAttempt(currentUser, quiz.getTitle(), score, quiz.getQuestions().size());
-        userQuizAttempts.computeIfAbsent(currentUser, k -> new ArrayList<>()).add(attempt);
-
         primaryStage.setScene(userScene);
     }
 
+    // Pages are read from the attempt store on demand, so the view opens in
+    // the same time however many attempts the user has.
     private void showQuizHistory() {
-        List<QuizAttempt> attempts = userQuizAttempts.getOrDefault(currentUser, new ArrayList<>());
-
-        if (attempts.isEmpty()) {
+        if (engine.getAttemptStore().countForUser(currentUser) == 0) {
             showAlert("No Quiz History", "You haven't taken any quizzes yet.");
             return;
         }
@@ -628,38 +1200,67 @@ public class OnlineQuizApplication extends Application {
         historyTitle.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
         historyLayout.getChildren().add(historyTitle);
 
-        TableView<QuizAttempt> historyTable = new TableView<>();
+        ChoiceBox<String> quizFilter = new ChoiceBox<>();
+        quizFilter.getItems().add(ALL_QUIZZES);
+        for (Quiz quiz : engine.getQuizzes()) {
+            quizFilter.getItems().add(quiz.getTitle());
+        }
+        quizFilter.setValue(ALL_QUIZZES);
+        ChoiceBox<HistoryPager.Sort> sortChoice = new ChoiceBox<>(FXCollections.observableArrayList(HistoryPager.Sort.values()));
+        sortChoice.setValue(HistoryPager.Sort.NEWEST_FIRST);
+        Label countLabel = new Label();
+        HBox controls = new HBox(10, new Label("Quiz:"), quizFilter, new Label("Sort:"), sortChoice, countLabel);
+        controls.setAlignment(Pos.CENTER_LEFT);
+        historyLayout.getChildren().add(controls);
+
+        TableView<HistoryPager.Row> historyTable = new TableView<>();
 
-        TableColumn<QuizAttempt, String> usernameColumn = new TableColumn<>("Username");
+        TableColumn<HistoryPager.Row, String> usernameColumn = new TableColumn<>("Username");
         usernameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getUsername()));
 
-        TableColumn<QuizAttempt, String> quizColumn = new TableColumn<>("Quiz");
+        TableColumn<HistoryPager.Row, String> quizColumn = new TableColumn<>("Quiz");
         quizColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getQuizTitle()));
 
-        TableColumn<QuizAttempt, String> scoreColumn = new TableColumn<>("Score");
-        scoreColumn.setCellValueFactory(cellData -> {
-            QuizAttempt attempt = cellData.getValue();
-            return new SimpleStringProperty(String.format("%d/%d (%.2f%%)",
-                    attempt.getScore(), attempt.getTotalQuestions(),
-                    (double)attempt.getScore() / attempt.getTotalQuestions() * 100));
-        });
+        TableColumn<HistoryPager.Row, String> scoreColumn = new TableColumn<>("Score");
+        scoreColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getScoreText()));
 
-        TableColumn<QuizAttempt, String> dateColumn = new TableColumn<>("Date");
-        dateColumn.setCellValueFactory(cellData -> new SimpleStringProperty(
-                cellData.getValue().getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-        ));
+        TableColumn<HistoryPager.Row, String> dateColumn = new TableColumn<>("Date");
+        dateColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDateText()));
 
         historyTable.getColumns().addAll(usernameColumn, quizColumn, scoreColumn, dateColumn);
-        historyTable.getItems().addAll(attempts);
+        // Sorting happens in the pager across all pages, not within the visible one
+        for (TableColumn<HistoryPager.Row, ?> column : historyTable.getColumns()) {
+            column.setSortable(false);
+        }
 
         historyTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
+        AtomicReference<HistoryPager> pager = new AtomicReference<>();
+        Pagination pagination = new Pagination();
+        pagination.setPageFactory(pageIndex -> {
+            historyTable.getItems().setAll(pager.get().getPage(pageIndex));
+            return historyTable;
+        });
+        Runnable reload = () -> {
+            String quiz = quizFilter.getValue();
+            pager.set(engine.historyPager(currentUser, ALL_QUIZZES.equals(quiz) ? null : quiz,
+                    sortChoice.getValue(), HISTORY_PAGE_SIZE));
+            countLabel.setText(pager.get().getTotalCount() + " attempts");
+            historyTable.getItems().setAll(pager.get().getPage(0));
+            pagination.setPageCount(pager.get().getPageCount());
+            pagination.setCurrentPageIndex(0);
+        };
+        quizFilter.setOnAction(e -> reload.run());
+        sortChoice.setOnAction(e -> reload.run());
+        reload.run();
+        VBox.setVgrow(pagination, Priority.ALWAYS);
+
         Button backButton = new Button("Back to User Panel");
         backButton.setOnAction(e -> primaryStage.setScene(userScene));
 
-        historyLayout.getChildren().addAll(historyTable, backButton);
+        historyLayout.getChildren().addAll(pagination, backButton);
 
-        Scene historyScene = new Scene(new ScrollPane(historyLayout), 600, 400);
+        Scene historyScene = new Scene(historyLayout, 600, 520);
         primaryStage.setScene(historyScene);
     }
 
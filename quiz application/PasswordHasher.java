@@ -0,0 +1,59 @@
+package com.example.demo;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Salted PBKDF2-HMAC-SHA256 password hashes, encoded as
+// "pbkdf2$<iterations>$<base64 salt>$<base64 hash>" so the cost travels with
+// each hash and can be raised without invalidating existing ones.
+public final class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 100_000;
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    public static boolean verify(String password, String encoded) {
+        if (password == null || encoded == null || !isHash(encoded)) {
+            return false;
+        }
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[3]);
+        byte[] actual = derive(password, base64.decode(parts[2]), Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    public static boolean isHash(String value) {
+        return value.startsWith(PREFIX);
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo;
+
+import java.util.List;
+
+// Immutable; replace a question through QuizEngine.replaceQuestion. Options
+// are held in an immutable list over one exact-size array, with no copy-on-
+// write wrapper around a growable list.
+public final class Question {
+    // Longest title, option or topic. At up to three bytes a character it stays
+    // under the 64 KiB string limit of snapshots and the cluster wire format.
+    public static final int MAX_TEXT_LENGTH = 10_000;
+
+    private final String title;
+    private final List<String> options;
+    private final long correctMask;
+    private final String topic;
+    // Item response theory parameters for adaptive quizzes (3PL: a, b, c)
+    private final double discrimination;
+    private final double difficulty;
+    private final double guessing;
+
+    public Question(String title, List<String> options, List<Integer> correctAnswers) {
+        this(title, options, correctAnswers, "");
+    }
+
+    public Question(String title, List<String> options, List<Integer> correctAnswers, String topic) {
+        this(title, options, correctAnswers, topic, IrtModel.DEFAULT_DISCRIMINATION, IrtModel.DEFAULT_DIFFICULTY,
+                IrtModel.DEFAULT_GUESSING);
+    }
+
+    public Question(String title, List<String> options, List<Integer> correctAnswers, String topic,
+                    double discrimination, double difficulty, double guessing) {
+        if (options.size() > AnswerMask.MAX_OPTIONS) {
+            throw new IllegalArgumentException("A question supports at most " + AnswerMask.MAX_OPTIONS + " options");
+        }
+        if (!(discrimination > 0) || Double.isInfinite(discrimination)) {
+            throw new IllegalArgumentException("Discrimination must be positive: " + discrimination);
+        }
+        if (Double.isNaN(difficulty) || Double.isInfinite(difficulty)) {
+            throw new IllegalArgumentException("Difficulty must be a finite number");
+        }
+        if (!(guessing >= 0 && guessing < 1)) {
+            throw new IllegalArgumentException("Guessing must be at least 0 and below 1: " + guessing);
+        }
+        this.title = checkLength("Question title", title);
+        for (String option : options) {
+            if (option == null) {
+                throw new IllegalArgumentException("Options cannot be null");
+            }
+            checkLength("An option", option);
+        }
+        this.options = List.copyOf(options);
+        this.correctMask = AnswerMask.of(correctAnswers);
+        this.topic = topic == null ? "" : checkLength("Topic", topic);
+        this.discrimination = discrimination;
+        this.difficulty = difficulty;
+        this.guessing = guessing;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<String> getOptions() {
+        return options;
+    }
+
+    public List<Integer> getCorrectAnswers() {
+        return AnswerMask.toList(correctMask);
+    }
+
+    public long getCorrectMask() {
+        return correctMask;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public double getDiscrimination() {
+        return discrimination;
+    }
+
+    // On the ability scale; 0 is an average candidate.
+    public double getDifficulty() {
+        return difficulty;
+    }
+
+    public double getGuessing() {
+        return guessing;
+    }
+
+    public boolean hasDefaultItemParameters() {
+        return discrimination == IrtModel.DEFAULT_DISCRIMINATION && difficulty == IrtModel.DEFAULT_DIFFICULTY
+                && guessing == IrtModel.DEFAULT_GUESSING;
+    }
+
+    public boolean isCorrect(long selectedMask) {
+        return selectedMask == correctMask;
+    }
+
+    static String checkLength(String what, String text) {
+        if (text != null && text.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException(what + " is longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+        return text;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.demo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Bulk import/export of questions as JSON Lines, one question per line:
+//   {"quiz":"Algebra","title":"2+2?","options":["3","4","5"],"correct":[1],"topic":"sums"}
+// "topic" is optional and feeds the quiz's question pool quotas.
+// Import reads a bounded batch of lines at a time, parses and validates the
+// batch in parallel across cores, then publishes it to the catalog as one
+// version per batch. Memory stays proportional to the batch, not the file.
+public class QuestionBankIO {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final QuizEngine engine;
+    private final int batchSize;
+
+    public QuestionBankIO(QuizEngine engine) {
+        this(engine, DEFAULT_BATCH_SIZE);
+    }
+
+    public QuestionBankIO(QuizEngine engine, int batchSize) {
+        this.engine = engine;
+        this.batchSize = batchSize;
+    }
+
+    public ImportResult importFrom(Reader source) throws IOException {
+        long start = System.nanoTime();
+        ImportResult result = new ImportResult();
+        BufferedReader reader = new BufferedReader(source, 1 << 16);
+        List<String> lines = new ArrayList<>(batchSize);
+        long firstLineNumber = 1;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            lines.add(line);
+            if (lines.size() == batchSize) {
+                loadBatch(lines, firstLineNumber, result);
+                lines.clear();
+                firstLineNumber = lineNumber + 1;
+            }
+        }
+        loadBatch(lines, firstLineNumber, result);
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public long exportTo(Writer target) throws IOException {
+        long exported = 0;
+        StringBuilder line = new StringBuilder(256);
+        for (Quiz quiz : engine.getQuizzes()) {
+            for (Question question : quiz.getQuestions()) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("quiz", quiz.getTitle());
+                json.put("title", question.getTitle());
+                json.put("options", question.getOptions());
+                json.put("correct", question.getCorrectAnswers());
+                if (!question.getTopic().isEmpty()) {
+                    json.put("topic", question.getTopic());
+                }
+                if (!question.hasDefaultItemParameters()) {
+                    json.put("discrimination", question.getDiscrimination());
+                    json.put("difficulty", question.getDifficulty());
+                    json.put("guessing", question.getGuessing());
+                }
+                line.setLength(0);
+                Json.write(line, json);
+                line.append('\n');
+                target.write(line.toString());
+                exported++;
+            }
+        }
+        target.flush();
+        return exported;
+    }
+
+    private void loadBatch(List<String> lines, long firstLineNumber, ImportResult result) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Object[] parsed = new Object[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                return;
+            }
+            try {
+                parsed[i] = parse(line);
+            } catch (IllegalArgumentException e) {
+                parsed[i] = "Line " + (firstLineNumber + i) + ": " + e.getMessage();
+            }
+        });
+
+        Map<String, List<Question>> byQuiz = new LinkedHashMap<>();
+        for (Object entry : parsed) {
+            if (entry instanceof ParsedQuestion) {
+                ParsedQuestion question = (ParsedQuestion) entry;
+                byQuiz.computeIfAbsent(question.quizTitle, k -> new ArrayList<>()).add(question.question);
+                result.imported++;
+            } else if (entry instanceof String) {
+                result.rejected++;
+                if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                    result.errors.add((String) entry);
+                }
+            }
+        }
+        engine.importQuestions(byQuiz);
+    }
+
+    private static ParsedQuestion parse(String line) {
+        Map<String, Object> json = Json.parseObject(line);
+        // Checked per line here; a long title failing later would reject the whole batch
+        String quizTitle = Question.checkLength("Quiz title", requireText(json, "quiz"));
+        String title = requireText(json, "title");
+
+        List<?> rawOptions = requireList(json, "options");
+        if (rawOptions.isEmpty() || rawOptions.size() > AnswerMask.MAX_OPTIONS) {
+            throw new IllegalArgumentException("'options' must have 1 to " + AnswerMask.MAX_OPTIONS + " entries");
+        }
+        List<String> options = new ArrayList<>(rawOptions.size());
+        for (Object option : rawOptions) {
+            if (!(option instanceof String)) {
+                throw new IllegalArgumentException("Options must be strings");
+            }
+            options.add((String) option);
+        }
+
+        List<Integer> correct = new ArrayList<>();
+        for (Object index : requireList(json, "correct")) {
+            if (!(index instanceof Long)) {
+                throw new IllegalArgumentException("Correct answers must be option indices");
+            }
+            long value = (Long) index;
+            if (value < 0 || value >= options.size()) {
+                throw new IllegalArgumentException("Correct answer " + value + " is not an option index");
+            }
+            correct.add((int) value);
+        }
+        Object topic = json.getOrDefault("topic", "");
+        if (!(topic instanceof String)) {
+            throw new IllegalArgumentException("'topic' must be a string");
+        }
+        double discrimination = optionalNumber(json, "discrimination", IrtModel.DEFAULT_DISCRIMINATION);
+        double difficulty = optionalNumber(json, "difficulty", IrtModel.DEFAULT_DIFFICULTY);
+        double guessing = optionalNumber(json, "guessing", IrtModel.DEFAULT_GUESSING);
+        return new ParsedQuestion(quizTitle,
+                new Question(title, options, correct, (String) topic, discrimination, difficulty, guessing));
+    }
+
+    private static double optionalNumber(Map<String, Object> json, String field, double fallback) {
+        Object value = json.get(field);
+        if (value == null) {
+            return fallback;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("'" + field + "' must be a number");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private static String requireText(Map<String, Object> json, String field) {
+        Object value = json.get(field);
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            throw new IllegalArgumentException("Missing '" + field + "'");
+        }
+        return (String) value;
+    }
+
+    private static List<?> requireList(Map<String, Object> json, String field) {
+        Object value = json.get(field);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Missing '" + field + "' array");
+        }
+        return (List<?>) value;
+    }
+
+    private static final class ParsedQuestion {
+        final String quizTitle;
+        final Question question;
+
+        ParsedQuestion(String quizTitle, Question question) {
+            this.quizTitle = quizTitle;
+            this.question = question;
+        }
+    }
+
+    public static final class ImportResult {
+        private long imported;
+        private long rejected;
+        private long elapsedNanos;
+        private final List<String> errors = new ArrayList<>();
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public double getQuestionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : imported * 1e9 / elapsedNanos;
+        }
+
+        // The first few rejected lines with their reasons.
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
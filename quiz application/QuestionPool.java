@@ -0,0 +1,32 @@
+package com.example.demo;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// How a quiz draws questions per session: how many questions to take from
+// each topic (empty quotas = every question), and whether option order is
+// shuffled too. Question order is always shuffled when a pool is set.
+public final class QuestionPool {
+    private final Map<String, Integer> quotas;
+    private final boolean shuffleOptions;
+
+    public QuestionPool(Map<String, Integer> quotas, boolean shuffleOptions) {
+        for (Map.Entry<String, Integer> quota : quotas.entrySet()) {
+            Question.checkLength("Topic", quota.getKey());
+            if (quota.getValue() < 0) {
+                throw new IllegalArgumentException("Negative quota for topic '" + quota.getKey() + "'");
+            }
+        }
+        this.quotas = Collections.unmodifiableMap(new LinkedHashMap<>(quotas));
+        this.shuffleOptions = shuffleOptions;
+    }
+
+    public Map<String, Integer> getQuotas() {
+        return quotas;
+    }
+
+    public boolean isShuffleOptions() {
+        return shuffleOptions;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Draws a session's questions from a quiz's pool. The draw is a partial
+// Fisher-Yates shuffle that records only the swaps it makes, so taking k of n
+// questions costs O(k) time and memory regardless of pool size. A session
+// keeps just the resulting index array and its seed; option orders are
+// re-derived from the seed when a position is first shown, and only the
+// current position's presented question is kept. Adaptive quizzes
+// get only their first question here; QuizSession picks each later one from
+// the answers so far, using selectAdaptive with the same seed.
+public final class QuestionSampler {
+    private QuestionSampler() {
+    }
+
+    // Indices into quiz.getQuestions(), in the order this session presents them.
+    // For an adaptive quiz the array is as long as the longest possible test,
+    // with -1 for positions not chosen yet.
+    public static int[] drawQuestions(Quiz quiz, long seed) {
+        QuestionPool pool = quiz.getPool();
+        int questionCount = quiz.getQuestions().size();
+        if (quiz.isAdaptive()) {
+            int[] order = new int[Math.min(quiz.getAdaptive().getMaxQuestions(), questionCount)];
+            Arrays.fill(order, -1);
+            if (order.length > 0) {
+                order[0] = selectAdaptive(quiz, seed, 0.0, order, 0);
+            }
+            return order;
+        }
+        if (pool == null) {
+            int[] order = new int[questionCount];
+            for (int i = 0; i < questionCount; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] order;
+        if (pool.getQuotas().isEmpty()) {
+            order = sample(null, questionCount, questionCount, random);
+        } else {
+            int total = 0;
+            List<int[]> drawn = new ArrayList<>();
+            for (Map.Entry<String, Integer> quota : pool.getQuotas().entrySet()) {
+                int[] topic = quiz.getTopicIndex(quota.getKey());
+                int[] picked = sample(topic, topic.length, Math.min(quota.getValue(), topic.length), random);
+                drawn.add(picked);
+                total += picked.length;
+            }
+            order = new int[total];
+            int position = 0;
+            for (int[] picked : drawn) {
+                System.arraycopy(picked, 0, order, position, picked.length);
+                position += picked.length;
+            }
+        }
+        shuffle(order, random);
+        return order;
+    }
+
+    // Most informative unused question at theta for the given position, or -1.
+    // Deterministic in seed and position, so a replayed session picks the same ones.
+    static int selectAdaptive(Quiz quiz, long seed, double theta, int[] order, int position) {
+        SplittableRandom random = new SplittableRandom(seed ^ (0xC2B2AE3D27D4EB4FL * (position + 1)));
+        return quiz.getInformationIndex().select(theta, order, position, random);
+    }
+
+    // Presented position p shows original option order[p]; null when options keep their order.
+    public static int[] optionOrder(Quiz quiz, long seed, int position, int optionCount) {
+        if (quiz.getPool() == null || !quiz.getPool().isShuffleOptions()) {
+            return null;
+        }
+        int[] order = new int[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            order[i] = i;
+        }
+        shuffle(order, new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (position + 1))));
+        return order;
+    }
+
+    // The question as the candidate sees it, with options (and answer key) reordered.
+    public static Question present(Question question, int[] optionOrder) {
+        if (optionOrder == null) {
+            return question;
+        }
+        List<String> options = new ArrayList<>(optionOrder.length);
+        List<Integer> correct = new ArrayList<>();
+        for (int p = 0; p < optionOrder.length; p++) {
+            options.add(question.getOptions().get(optionOrder[p]));
+            if (AnswerMask.contains(question.getCorrectMask(), optionOrder[p])) {
+                correct.add(p);
+            }
+        }
+        return new Question(question.getTitle(), options, correct, question.getTopic());
+    }
+
+    // Maps a mask over presented positions back to original option indices.
+    public static long toOriginalMask(long presentedMask, int[] optionOrder) {
+        if (optionOrder == null) {
+            return presentedMask;
+        }
+        long original = 0;
+        while (presentedMask != 0) {
+            int p = Long.numberOfTrailingZeros(presentedMask);
+            if (p >= optionOrder.length) {
+                throw new IllegalArgumentException("Option index out of range: " + p);
+            }
+            original |= 1L << optionOrder[p];
+            presentedMask &= presentedMask - 1;
+        }
+        return original;
+    }
+
+    // k distinct entries of items (or of 0..n-1 when items is null).
+    private static int[] sample(int[] items, int n, int k, SplittableRandom random) {
+        Map<Integer, Integer> swapped = new HashMap<>(k * 2);
+        int[] picked = new int[k];
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int atJ = swapped.getOrDefault(j, j);
+            int atI = swapped.getOrDefault(i, i);
+            swapped.put(j, atI);
+            picked[i] = items == null ? atJ : items[atJ];
+        }
+        return picked;
+    }
+
+    private static void shuffle(int[] values, SplittableRandom random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// In-memory inverted index over question titles and options for admin
+// search. The term dictionary is sorted, so each query word matches all
+// terms it is a prefix of, and hits are ranked with BM25 (title words count
+// double). Follows the catalog incrementally (see CatalogIndex); postings
+// of removed questions are dropped when the documents are compacted.
+public class QuestionSearchIndex extends CatalogIndex {
+    // A query word expands to at most this many dictionary terms
+    static final int MAX_PREFIX_TERMS = 512;
+    private static final int TITLE_WEIGHT = 2;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    // Same postings in term order, for prefix expansion
+    private final TreeMap<String, Postings> dictionary = new TreeMap<>();
+    private int[] lengths = new int[1024];
+    private long totalLength;
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    protected void growDocuments(int capacity) {
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+
+    @Override
+    protected void documentAdded(int document, Question question) {
+        // A repeated word is always the last entry of its postings, since
+        // this document is the newest
+        List<String> tokens = tokenize(question.getTitle());
+        int titleTokens = tokens.size();
+        for (String option : question.getOptions()) {
+            tokens.addAll(tokenize(option));
+        }
+        int length = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            int weight = i < titleTokens ? TITLE_WEIGHT : 1;
+            length += weight;
+            Postings postings = terms.get(tokens.get(i));
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(tokens.get(i), postings);
+                dictionary.put(tokens.get(i), postings);
+            }
+            if (postings.size > 0 && postings.documents[postings.size - 1] == document) {
+                postings.weights[postings.size - 1] += weight;
+            } else {
+                postings.add(document, weight);
+            }
+        }
+        lengths[document] = length;
+        totalLength += length;
+    }
+
+    @Override
+    protected void documentRemoved(int document) {
+        totalLength -= lengths[document];
+    }
+
+    // Postings keep their surviving entries; no question is re-tokenized.
+    @Override
+    protected void documentsCompacted(int[] renumbered, int liveCount) {
+        for (int document = 0; document < renumbered.length; document++) {
+            if (renumbered[document] >= 0) {
+                lengths[renumbered[document]] = lengths[document];
+            }
+        }
+        terms.values().removeIf(postings -> postings.renumber(renumbered) == 0);
+        dictionary.values().removeIf(postings -> postings.size == 0);
+    }
+
+    // Questions containing every word of the query (as a word or word
+    // prefix), best first. Exact words score higher than longer completions.
+    public synchronized List<Hit> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || liveCount == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / liveCount);
+        int[] candidates = null;
+        double[] scores = null;
+        double[] wordScores = new double[documentCount];
+        for (String word : new HashSet<>(words)) {
+            // Best expansion of this word per document
+            boolean[] matched = new boolean[documentCount];
+            int matchedCount = 0;
+            NavigableMap<String, Postings> expansions = dictionary.subMap(word, true, word + Character.MAX_VALUE, false);
+            int expanded = 0;
+            for (Map.Entry<String, Postings> entry : expansions.entrySet()) {
+                if (expanded++ == MAX_PREFIX_TERMS) {
+                    break;
+                }
+                Postings postings = entry.getValue();
+                double idf = Math.log(1 + (liveCount - postings.size + 0.5) / (postings.size + 0.5));
+                double closeness = (double) word.length() / entry.getKey().length();
+                for (int i = 0; i < postings.size; i++) {
+                    int document = postings.documents[i];
+                    if (questions[document] == null) {
+                        continue;
+                    }
+                    int weight = postings.weights[i];
+                    double normalized = weight * (K1 + 1)
+                            / (weight + K1 * (1 - B + B * lengths[document] / averageLength));
+                    double score = idf * normalized * closeness;
+                    if (!matched[document]) {
+                        matched[document] = true;
+                        wordScores[document] = score;
+                        matchedCount++;
+                    } else if (score > wordScores[document]) {
+                        wordScores[document] = score;
+                    }
+                }
+            }
+            if (candidates == null) {
+                candidates = new int[matchedCount];
+                scores = new double[matchedCount];
+                int next = 0;
+                for (int document = 0; document < documentCount && next < matchedCount; document++) {
+                    if (matched[document]) {
+                        candidates[next] = document;
+                        scores[next++] = wordScores[document];
+                    }
+                }
+            } else {
+                int kept = 0;
+                for (int i = 0; i < candidates.length; i++) {
+                    if (matched[candidates[i]]) {
+                        candidates[kept] = candidates[i];
+                        scores[kept++] = scores[i] + wordScores[candidates[i]];
+                    }
+                }
+                candidates = Arrays.copyOf(candidates, kept);
+                scores = Arrays.copyOf(scores, kept);
+            }
+            if (candidates.length == 0) {
+                return new ArrayList<>();
+            }
+        }
+        return topHits(candidates, scores, limit);
+    }
+
+    // Scores are positive, so their float bits order like the scores; packing
+    // them above the document number orders hits as primitives, ties in
+    // catalog order. A bounded max-heap keeps the best `limit` keys, so a
+    // common word matching most of the bank is not sorted in full.
+    private List<Hit> topHits(int[] candidates, double[] scores, int limit) {
+        int count = Math.min(limit, candidates.length);
+        long[] heap = new long[count];
+        int size = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            int bits = Float.floatToIntBits((float) scores[i]);
+            long key = (long) (Integer.MAX_VALUE - bits) << 32 | candidates[i];
+            if (size < count) {
+                heap[size] = key;
+                siftUp(heap, size++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size);
+            }
+        }
+        Arrays.sort(heap);
+        List<Hit> hits = new ArrayList<>(count);
+        for (long key : heap) {
+            int document = (int) key;
+            int position = Arrays.binarySearch(candidates, document);
+            hits.add(new Hit(quizTitles[document], questionIndices[document], questions[document], scores[position]));
+        }
+        return hits;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= heap[index]) {
+                return;
+            }
+            long swap = heap[parent];
+            heap[parent] = heap[index];
+            heap[index] = swap;
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int largest = left + 1 < size && heap[left + 1] > heap[left] ? left + 1 : left;
+            if (heap[index] >= heap[largest]) {
+                return;
+            }
+            long swap = heap[index];
+            heap[index] = heap[largest];
+            heap[largest] = swap;
+            index = largest;
+        }
+    }
+
+    public synchronized int getTermCount() {
+        return terms.size();
+    }
+
+    // Documents in increasing order, since documents are only ever appended
+    private static final class Postings {
+        int[] documents = new int[4];
+        int[] weights = new int[4];
+        int size;
+
+        void add(int document, int weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            documents[size] = document;
+            weights[size++] = weight;
+        }
+
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int document = renumbered[documents[i]];
+                if (document >= 0) {
+                    documents[kept] = document;
+                    weights[kept++] = weights[i];
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+
+    // A matching question and where it sits in the quiz version that was
+    // current when the index last synced.
+    public static final class Hit {
+        private final String quizTitle;
+        private final int questionIndex;
+        private final Question question;
+        private final double score;
+
+        Hit(String quizTitle, int questionIndex, Question question, double score) {
+            this.quizTitle = quizTitle;
+            this.questionIndex = questionIndex;
+            this.question = question;
+            this.score = score;
+        }
+
+        public String getQuizTitle() {
+            return quizTitle;
+        }
+
+        public int getQuestionIndex() {
+            return questionIndex;
+        }
+
+        public Question getQuestion() {
+            return question;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
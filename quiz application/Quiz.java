@@ -0,0 +1,194 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Immutable; edits produce a new Quiz that QuizCatalog publishes as a new version.
+public final class Quiz {
+    private static final int[] NO_QUESTIONS = new int[0];
+
+    private final String title;
+    private final List<Question> questions;
+    private final QuestionPool pool;
+    // Seconds; 0 means untimed
+    private final int timeLimitSeconds;
+    private final int questionTimeLimitSeconds;
+    // Null for a fixed or pooled quiz
+    private final AdaptiveSettings adaptive;
+    // Question indices per topic, built once per version for O(k) sampling
+    private final Map<String, int[]> topicIndex;
+    // Content hash of the questions, computed on first use; 0 means not yet
+    private volatile long fingerprint;
+    // Adaptive quizzes only, built on first use
+    private volatile ItemInformationIndex informationIndex;
+
+    public Quiz(String title) {
+        this(title, Collections.emptyList());
+    }
+
+    public Quiz(String title, List<Question> questions) {
+        this(title, questions, null);
+    }
+
+    public Quiz(String title, List<Question> questions, QuestionPool pool) {
+        this(title, questions, pool, 0, 0);
+    }
+
+    public Quiz(String title, List<Question> questions, QuestionPool pool,
+                int timeLimitSeconds, int questionTimeLimitSeconds) {
+        this(title, questions, pool, timeLimitSeconds, questionTimeLimitSeconds, null);
+    }
+
+    public Quiz(String title, List<Question> questions, QuestionPool pool,
+                int timeLimitSeconds, int questionTimeLimitSeconds, AdaptiveSettings adaptive) {
+        if (timeLimitSeconds < 0 || questionTimeLimitSeconds < 0) {
+            throw new IllegalArgumentException("Time limits cannot be negative");
+        }
+        this.title = Question.checkLength("Quiz title", title);
+        this.questions = Collections.unmodifiableList(new ArrayList<>(questions));
+        this.pool = pool;
+        this.timeLimitSeconds = timeLimitSeconds;
+        this.questionTimeLimitSeconds = questionTimeLimitSeconds;
+        this.adaptive = adaptive;
+        this.topicIndex = pool == null ? Collections.emptyMap() : buildTopicIndex(this.questions);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<Question> getQuestions() {
+        return questions;
+    }
+
+    // Null when every session gets all questions in order.
+    public QuestionPool getPool() {
+        return pool;
+    }
+
+    public int getTimeLimitSeconds() {
+        return timeLimitSeconds;
+    }
+
+    public int getQuestionTimeLimitSeconds() {
+        return questionTimeLimitSeconds;
+    }
+
+    // Null unless questions are chosen adaptively; adaptive quizzes ignore the pool's quotas.
+    public AdaptiveSettings getAdaptive() {
+        return adaptive;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive != null;
+    }
+
+    public boolean isTimed() {
+        return timeLimitSeconds > 0 || questionTimeLimitSeconds > 0;
+    }
+
+    // Identifies this exact set of questions, so a checkpointed session is
+    // only resumed against the version it was drawn from.
+    public long getFingerprint() {
+        long hash = fingerprint;
+        if (hash == 0) {
+            hash = 0xcbf29ce484222325L;
+            for (Question question : questions) {
+                hash = mix(hash, Objects.hashCode(question.getTitle()));
+                for (String option : question.getOptions()) {
+                    hash = mix(hash, Objects.hashCode(option));
+                }
+                hash = mix(hash, Long.hashCode(question.getCorrectMask()));
+                // Adaptive sessions are replayed from their answers, so the
+                // parameters that choose questions are part of the identity
+                if (!question.hasDefaultItemParameters()) {
+                    hash = mix(hash, Double.hashCode(question.getDiscrimination()));
+                    hash = mix(hash, Double.hashCode(question.getDifficulty()));
+                    hash = mix(hash, Double.hashCode(question.getGuessing()));
+                }
+            }
+            hash = mix(hash, questions.size());
+            if (adaptive != null) {
+                hash = mix(hash, adaptive.getMinQuestions());
+                hash = mix(hash, adaptive.getMaxQuestions());
+                hash = mix(hash, Double.hashCode(adaptive.getTargetStandardError()));
+            }
+            if (hash == 0) {
+                hash = 1;
+            }
+            fingerprint = hash;
+        }
+        return hash;
+    }
+
+    static long mix(long hash, int value) {
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+
+    int[] getTopicIndex(String topic) {
+        return topicIndex.getOrDefault(topic, NO_QUESTIONS);
+    }
+
+    // Racing first callers may each build one; any of them is correct.
+    ItemInformationIndex getInformationIndex() {
+        ItemInformationIndex index = informationIndex;
+        if (index == null && adaptive != null) {
+            index = new ItemInformationIndex(questions, adaptive.getMaxQuestions());
+            informationIndex = index;
+        }
+        return index;
+    }
+
+    public Quiz withQuestion(Question question) {
+        List<Question> updated = new ArrayList<>(questions);
+        updated.add(question);
+        return new Quiz(title, updated, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    public Quiz withQuestions(List<Question> added) {
+        List<Question> updated = new ArrayList<>(questions.size() + added.size());
+        updated.addAll(questions);
+        updated.addAll(added);
+        return new Quiz(title, updated, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    public Quiz withQuestion(int index, Question question) {
+        List<Question> updated = new ArrayList<>(questions);
+        updated.set(index, question);
+        return new Quiz(title, updated, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    public Quiz withPool(QuestionPool pool) {
+        return new Quiz(title, questions, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    public Quiz withTimeLimits(int timeLimitSeconds, int questionTimeLimitSeconds) {
+        return new Quiz(title, questions, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    public Quiz withAdaptive(AdaptiveSettings adaptive) {
+        return new Quiz(title, questions, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    private static Map<String, int[]> buildTopicIndex(List<Question> questions) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Question question : questions) {
+            counts.merge(question.getTopic(), 1, Integer::sum);
+        }
+        Map<String, int[]> index = new HashMap<>();
+        Map<String, Integer> filled = new HashMap<>();
+        for (int i = 0; i < questions.size(); i++) {
+            String topic = questions.get(i).getTopic();
+            int[] indices = index.computeIfAbsent(topic, t -> new int[counts.get(t)]);
+            int position = filled.merge(topic, 1, Integer::sum) - 1;
+            indices[position] = i;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// Immutable and flat: the user and quiz are the process-wide intern tables'
+// shared copies of the names and the time is epoch milliseconds, so an
+// attempt is a single 40-byte object wherever it is held (finished sessions,
+// the ingest ring, history lists; FootprintReport checks it). The
+// LocalDateTime is built on demand.
+public final class QuizAttempt {
+    private final String username;
+    private final String quizTitle;
+    private final int score;
+    private final int totalQuestions;
+    private final long epochMillis;
+
+    public QuizAttempt(String username, String quizTitle, int score, int totalQuestions) {
+        this(username, quizTitle, score, totalQuestions, System.currentTimeMillis());
+    }
+
+    public QuizAttempt(String username, String quizTitle, int score, int totalQuestions, LocalDateTime timestamp) {
+        this(username, quizTitle, score, totalQuestions,
+                timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    public QuizAttempt(String username, String quizTitle, int score, int totalQuestions, long epochMillis) {
+        this.username = InternTable.USERNAMES.canonical(username);
+        this.quizTitle = InternTable.QUIZ_TITLES.canonical(quizTitle);
+        this.score = score;
+        this.totalQuestions = totalQuestions;
+        this.epochMillis = epochMillis;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getQuizTitle() {
+        return quizTitle;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getTotalQuestions() {
+        return totalQuestions;
+    }
+
+    // In the system time zone, like the rest of the UI.
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Quiz: %s, Score: %d/%d, Date: %s",
+                getQuizTitle(), score, totalQuestions, getTimestamp().toString());
+    }
+}
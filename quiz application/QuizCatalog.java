@@ -0,0 +1,135 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Versioned, copy-on-write set of quizzes keyed by title. Readers grab the
+// current Version with one volatile read and never block; each admin edit
+// builds a new Version and publishes it with a compare-and-set. Because Quiz
+// and Question are immutable, a session that holds a Quiz keeps grading
+// against exactly what it started with.
+public class QuizCatalog {
+    private final AtomicReference<Version> current = new AtomicReference<>(new Version(0, new LinkedHashMap<>()));
+
+    public Version current() {
+        return current.get();
+    }
+
+    public List<Quiz> getQuizzes() {
+        return current.get().getQuizzes();
+    }
+
+    public Quiz find(String title) {
+        return current.get().find(title);
+    }
+
+    public Quiz create(String title) {
+        if (title == null || title.isEmpty()) {
+            throw new IllegalArgumentException("Quiz title must not be empty");
+        }
+        Quiz quiz = new Quiz(title);
+        publish(quizzes -> {
+            if (quizzes.containsKey(title)) {
+                throw new IllegalArgumentException("A quiz named '" + title + "' already exists");
+            }
+            quizzes.put(title, quiz);
+        });
+        return quiz;
+    }
+
+    // Applies the edit to the latest version of the named quiz and returns the result.
+    public Quiz update(String title, UnaryOperator<Quiz> edit) {
+        Quiz[] updated = new Quiz[1];
+        publish(quizzes -> {
+            Quiz quiz = quizzes.get(title);
+            if (quiz == null) {
+                throw new IllegalArgumentException("Unknown quiz: " + title);
+            }
+            updated[0] = edit.apply(quiz);
+            quizzes.put(title, updated[0]);
+        });
+        return updated[0];
+    }
+
+    // Appends questions to each named quiz, creating quizzes that do not exist
+    // yet, all in a single new version.
+    public void appendQuestions(Map<String, List<Question>> questionsByQuiz) {
+        publish(quizzes -> {
+            for (Map.Entry<String, List<Question>> entry : questionsByQuiz.entrySet()) {
+                Quiz quiz = quizzes.getOrDefault(entry.getKey(), new Quiz(entry.getKey()));
+                quizzes.put(entry.getKey(), quiz.withQuestions(entry.getValue()));
+            }
+        });
+    }
+
+    public boolean delete(String title) {
+        boolean[] removed = new boolean[1];
+        publish(quizzes -> removed[0] = quizzes.remove(title) != null);
+        return removed[0];
+    }
+
+    // Adds or replaces a quiz wholesale, e.g. when loading a snapshot.
+    public void put(Quiz quiz) {
+        publish(quizzes -> quizzes.put(quiz.getTitle(), quiz));
+    }
+
+    // Applies quizzes and deletions replicated from another node. A title whose
+    // quiz is no longer the expected instance (null: absent) took a local edit in
+    // the meantime and is left alone; that edit is newer and replicates in turn.
+    public Version replicate(Map<String, Quiz> expected, List<Quiz> quizzes, List<String> deleted) {
+        return publish(byTitle -> {
+            for (Quiz quiz : quizzes) {
+                if (byTitle.get(quiz.getTitle()) == expected.get(quiz.getTitle())) {
+                    byTitle.put(quiz.getTitle(), quiz);
+                }
+            }
+            for (String title : deleted) {
+                if (byTitle.get(title) == expected.get(title)) {
+                    byTitle.remove(title);
+                }
+            }
+        });
+    }
+
+    private Version publish(Consumer<Map<String, Quiz>> change) {
+        while (true) {
+            Version base = current.get();
+            Map<String, Quiz> quizzes = new LinkedHashMap<>(base.byTitle);
+            change.accept(quizzes);
+            Version next = new Version(base.number + 1, quizzes);
+            if (current.compareAndSet(base, next)) {
+                return next;
+            }
+        }
+    }
+
+    public static final class Version {
+        private final long number;
+        private final Map<String, Quiz> byTitle;
+        private final List<Quiz> quizzes;
+
+        private Version(long number, Map<String, Quiz> byTitle) {
+            this.number = number;
+            this.byTitle = byTitle;
+            this.quizzes = Collections.unmodifiableList(new ArrayList<>(byTitle.values()));
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        public List<Quiz> getQuizzes() {
+            return quizzes;
+        }
+
+        public Quiz find(String title) {
+            return byTitle.get(title);
+        }
+    }
+}
@@ -0,0 +1,932 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless quiz service. Holds all users, quizzes, sessions and history so any
+// number of clients (the JavaFX screens being one) can run quizzes concurrently.
+// Engines opened on a data directory survive restarts via QuizPersistence.
+public class QuizEngine implements Closeable {
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 5000;
+    // Password hashing cost and login worker pool, overridable per deployment
+    static final int HASH_ITERATIONS = Integer.getInteger("quiz.auth.iterations", PasswordHasher.DEFAULT_ITERATIONS);
+    static final int AUTH_WORKERS = Integer.getInteger("quiz.auth.workers", Runtime.getRuntime().availableProcessors());
+    static final int AUTH_QUEUE_CAPACITY = Integer.getInteger("quiz.auth.queue", 1024);
+    static final int MAX_USERNAME_LENGTH = 64;
+    // Timed quiz deadlines fire within one tick; expired sessions keep their result this long
+    static final long TIMER_TICK_MILLIS = 100;
+    static final long EXPIRED_SESSION_RETENTION_SECONDS = 300;
+    static final int EXPIRY_WORKERS = Integer.getInteger("quiz.expiry.workers", 4);
+    // Attempt ingest ring size (a power of two) and largest batch written at once
+    static final int INGEST_CAPACITY = Integer.getInteger("quiz.ingest.capacity", AttemptPipeline.DEFAULT_CAPACITY);
+    static final int INGEST_MAX_BATCH = Integer.getInteger("quiz.ingest.batch", AttemptPipeline.DEFAULT_MAX_BATCH);
+    // Optional file rewritten with the Prometheus text every few seconds, for clients without /metrics
+    static final String METRICS_DUMP_FILE = System.getProperty("quiz.metrics.dump");
+    static final long METRICS_DUMP_SECONDS = Long.getLong("quiz.metrics.dumpSeconds", 10);
+    // Key (base64) that signs handed-off session checkpoints. Nodes that resume each
+    // other's handoffs, or that should accept their own after a restart, need the same
+    // one; without it each engine signs with a random key of its own.
+    static final String SESSION_KEY = System.getProperty("quiz.session.key");
+    static final long HANDOFF_TTL_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("quiz.session.handoffHours", 24));
+
+    public enum Role { ADMIN, USER }
+
+    // Usernames to encoded password hashes
+    private final Map<String, String> users = new ConcurrentHashMap<>();
+    private final Map<String, String> admins = new ConcurrentHashMap<>();
+    private final QuizCatalog catalog = new QuizCatalog();
+    private final Map<String, QuizSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong sessionCounter = new AtomicLong();
+    // Keeps session ids unique across restarts and nodes, since journalled sessions outlive both
+    private final String sessionIdPrefix = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final byte[] sessionKey = sessionKey();
+    // Signatures of handed-off checkpoints already resumed here, until they expire
+    private final Map<String, Long> resumedHandoffs = new ConcurrentHashMap<>();
+    private final Authenticator authenticator;
+    private final AttemptStore attempts;
+    private final AttemptIndex attemptIndex;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final ItemAnalytics itemAnalytics = new ItemAnalytics();
+    private final QuestionSearchIndex searchIndex = new QuestionSearchIndex();
+    private final DuplicateDetector duplicates = new DuplicateDetector();
+    private final QuizPersistence persistence;
+    private final SessionJournal journal;
+    // Held while the leaderboard and attempt index take a batch, so a snapshot sees
+    // both at the same row count
+    private final Object derivedLock = new Object();
+    private long derivedRows;
+    private long rebuiltAttempts;
+    private long rebuildMillis;
+    private volatile Runnable catalogListener;
+    private volatile ReplicationState replicationState;
+    // Replication state loaded with the catalog snapshot, until a cluster node takes it
+    private byte[] savedReplicationState;
+    private final ExecutorService expiryExecutor = newExpiryExecutor();
+    private final TimingWheel timers = new TimingWheel(TIMER_TICK_MILLIS, expiryExecutor);
+    private final AttemptPipeline ingest = new AttemptPipeline(INGEST_CAPACITY, INGEST_MAX_BATCH, this::writeAttempts);
+    // Gates for the exam-start surge: logins and registrations (a password hash
+    // each) and new sessions
+    private final AdmissionController loginAdmission = AdmissionController.fromProperties("login", 200, 0.2, 500,
+            2 * AUTH_WORKERS);
+    private final AdmissionController registerAdmission = AdmissionController.fromProperties("register", 50, 0.2,
+            500, AUTH_WORKERS);
+    private final AdmissionController startAdmission = AdmissionController.fromProperties("start", 1000, 1, 100, 16);
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Timer loginTimer = metrics.timer("quiz_login_seconds",
+            "Login latency including the wait for a hashing worker");
+    private final Metrics.Counter loginFailures = metrics.counter("quiz_login_failures_total",
+            "Logins rejected for bad credentials");
+    private final Metrics.Timer sessionStartTimer = metrics.timer("quiz_session_start_seconds",
+            "Time to start a session, including drawing its questions");
+    private final Metrics.Timer gradeTimer = metrics.timer("quiz_grade_seconds", "Time to grade one submitted answer");
+    private final Metrics.Counter answers = metrics.counter("quiz_answers_total", "Answers submitted");
+    private final Metrics.Counter correctAnswers = metrics.counter("quiz_answers_correct_total", "Answers graded correct");
+    // Recorded by the front ends, which own question rendering
+    private final Metrics.Timer displayQuestionTimer = metrics.timer("quiz_display_question_seconds",
+            "Time to fetch and present the current question");
+    private final Metrics.Timer finishTimer = metrics.timer("quiz_finish_seconds",
+            "Time to grade a finished session and enqueue its attempt");
+
+    public QuizEngine() {
+        this.authenticator = newAuthenticator();
+        try {
+            this.attempts = AttemptStore.createTemporary();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.attemptIndex = new AttemptIndex(attempts);
+        this.persistence = null;
+        this.journal = null;
+        registerGauges();
+    }
+
+    public QuizEngine(Path dataDirectory) throws IOException {
+        this(dataDirectory, DEFAULT_SNAPSHOT_INTERVAL_MILLIS);
+    }
+
+    public QuizEngine(Path dataDirectory, long snapshotIntervalMillis) throws IOException {
+        this.authenticator = newAuthenticator();
+        this.attempts = AttemptStore.open(QuizPersistence.attemptStoreDirectory(dataDirectory));
+        this.attemptIndex = new AttemptIndex(attempts);
+        this.persistence = QuizPersistence.open(dataDirectory, this, attempts, snapshotIntervalMillis);
+        this.journal = persistence.getSessionJournal();
+        rebuildDerivedState();
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        metrics.gauge("quiz_active_sessions", "Sessions started and not yet finished", sessions::size);
+        metrics.gauge("quiz_pending_timeouts", "Quiz and question deadlines armed", timers::getScheduledCount);
+        metrics.gauge("quiz_auth_queue_depth", "Logins and registrations waiting for a hashing worker",
+                authenticator::getQueueDepth);
+        metrics.gauge("quiz_ingest_queue_depth", "Attempts enqueued and not yet written", ingest::getQueueDepth);
+        metrics.gauge("quiz_ingest_last_batch_size", "Attempts in the most recent ingest batch", ingest::getLastBatchSize);
+        metrics.counter("quiz_attempts_recorded_total", "Attempts written by the ingest pipeline", ingest::getRecordedCount);
+        metrics.counter("quiz_ingest_batches_total", "Batches written by the ingest pipeline", ingest::getBatchCount);
+        metrics.counter("quiz_ingest_full_waits_total", "Submitters that waited for room in the ingest ring",
+                ingest::getFullWaits);
+        metrics.timer("quiz_ingest_lag_seconds", "Attempt enqueue to durable", ingest.getLag());
+        metrics.gauge("quiz_attempts_stored", "Rows in the attempt store", attempts::size);
+        if (persistence != null) {
+            metrics.counter("quiz_checkpoint_failures_total", "Catalog snapshots or store flushes that failed",
+                    persistence::getCheckpointFailures);
+        }
+        registerAdmissionGauges(loginAdmission);
+        registerAdmissionGauges(registerAdmission);
+        registerAdmissionGauges(startAdmission);
+        if (Metrics.ENABLED && METRICS_DUMP_FILE != null) {
+            scheduleMetricsDump(Paths.get(METRICS_DUMP_FILE));
+        }
+    }
+
+    private void registerAdmissionGauges(AdmissionController gate) {
+        String prefix = "quiz_admission_" + gate.getName();
+        metrics.gauge(prefix + "_queue_depth", "Requests waiting for admission to " + gate.getName(),
+                gate::getQueueDepth);
+        metrics.gauge(prefix + "_in_flight", "Admitted " + gate.getName() + " requests still running",
+                gate::getInFlight);
+        metrics.gauge(prefix + "_limit", "Current concurrency limit for " + gate.getName(), gate::getLimit);
+        metrics.counter(prefix + "_admitted_total", "Requests admitted to " + gate.getName(),
+                gate::getAdmittedCount);
+        metrics.counter(prefix + "_rejected_total", "Requests to " + gate.getName() + " rate limited or shed",
+                gate::getRejectedCount);
+        metrics.timer(prefix + "_queue_wait_seconds", "Wait in line before admission to " + gate.getName(),
+                gate.getQueueWait());
+    }
+
+    private void scheduleMetricsDump(Path file) {
+        timers.schedule(METRICS_DUMP_SECONDS, TimeUnit.SECONDS, () -> {
+            try {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(temp, metrics.toPrometheus().getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Metrics are best effort; try again next period
+            }
+            try {
+                scheduleMetricsDump(file);
+            } catch (IllegalStateException e) {
+                // Engine closed
+            }
+        });
+    }
+
+    private Authenticator newAuthenticator() {
+        // Add a default admin
+        admins.put("admin", PasswordHasher.hash("admin123", HASH_ITERATIONS));
+        return new Authenticator(
+                username -> admins.containsKey(username) ? admins.get(username) : users.get(username),
+                username -> admins.containsKey(username) ? Role.ADMIN : Role.USER,
+                AUTH_WORKERS, AUTH_QUEUE_CAPACITY, Authenticator.DEFAULT_TOKEN_TTL_MILLIS, HASH_ITERATIONS);
+    }
+
+    private static ExecutorService newExpiryExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(EXPIRY_WORKERS, task -> {
+            Thread thread = new Thread(task, "session-expiry-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public QuizPersistence getPersistence() {
+        return persistence;
+    }
+
+    public Authenticator getAuthenticator() {
+        return authenticator;
+    }
+
+    // Front ends pass logins through this gate; see AdmissionController.
+    public AdmissionController getLoginAdmission() {
+        return loginAdmission;
+    }
+
+    // Same for registrations.
+    public AdmissionController getRegisterAdmission() {
+        return registerAdmission;
+    }
+
+    // Same for starting new sessions.
+    public AdmissionController getStartAdmission() {
+        return startAdmission;
+    }
+
+    public boolean isAdmin(String username) {
+        return admins.containsKey(username);
+    }
+
+    // Verifies on the calling thread; returns null for bad credentials.
+    public Role login(String username, String password) {
+        long start = Metrics.start();
+        Role role = authenticator.verify(username, password);
+        recordLogin(start, role);
+        return role;
+    }
+
+    // Verifies on the bounded authentication pool. See Authenticator.verifyAsync.
+    public CompletableFuture<Role> loginAsync(String username, String password) {
+        long start = Metrics.start();
+        return authenticator.verifyAsync(username, password).whenComplete((role, error) -> {
+            if (error == null) {
+                recordLogin(start, role);
+            }
+        });
+    }
+
+    private void recordLogin(long start, Role role) {
+        loginTimer.stop(start);
+        if (role == null) {
+            loginFailures.increment();
+        }
+    }
+
+    // Hashes on the calling thread; returns false if the username is taken.
+    public boolean register(String username, String password) {
+        if (!isAvailable(username)) {
+            return false;
+        }
+        return addUser(username, PasswordHasher.hash(password, HASH_ITERATIONS));
+    }
+
+    // Hashes on the bounded authentication pool, like loginAsync. A taken
+    // username completes with false before any hashing.
+    public CompletableFuture<Boolean> registerAsync(String username, String password) {
+        if (!isAvailable(username)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return authenticator.hashAsync(password).thenApply(hash -> addUser(username, hash));
+    }
+
+    private boolean isAvailable(String username) {
+        if (username == null || username.isEmpty() || username.length() > MAX_USERNAME_LENGTH) {
+            throw new IllegalArgumentException("Usernames must have 1 to " + MAX_USERNAME_LENGTH + " characters");
+        }
+        return !admins.containsKey(username) && !users.containsKey(username);
+    }
+
+    private boolean addUser(String username, String hash) {
+        if (users.putIfAbsent(username, hash) != null) {
+            return false;
+        }
+        catalogChanged();
+        return true;
+    }
+
+    public Quiz createQuiz(String title) {
+        Quiz quiz = catalog.create(title);
+        catalogChanged();
+        return quiz;
+    }
+
+    // Returns the new version of the quiz, or null if the question has no title.
+    public Quiz addQuestion(Quiz quiz, Question question) {
+        if (question.getTitle() == null || question.getTitle().isEmpty()) {
+            return null;
+        }
+        Quiz updated = catalog.update(quiz.getTitle(), latest -> latest.withQuestion(question));
+        catalogChanged();
+        return updated;
+    }
+
+    // Sessions already running keep the version they started with.
+    public Quiz replaceQuestion(Quiz quiz, int index, Question question) {
+        Quiz updated = catalog.update(quiz.getTitle(), latest -> latest.withQuestion(index, question));
+        catalogChanged();
+        return updated;
+    }
+
+    // Bulk load used by QuestionBankIO; missing quizzes are created.
+    public void importQuestions(Map<String, List<Question>> questionsByQuiz) {
+        if (questionsByQuiz.isEmpty()) {
+            return;
+        }
+        catalog.appendQuestions(questionsByQuiz);
+        catalogChanged();
+    }
+
+    // Zero for either limit leaves it off; running sessions keep their version's limits.
+    public Quiz setTimeLimits(Quiz quiz, int timeLimitSeconds, int questionTimeLimitSeconds) {
+        Quiz updated = catalog.update(quiz.getTitle(),
+                latest -> latest.withTimeLimits(timeLimitSeconds, questionTimeLimitSeconds));
+        catalogChanged();
+        return updated;
+    }
+
+    // Null pool restores the fixed, full question list.
+    public Quiz setQuestionPool(Quiz quiz, QuestionPool pool) {
+        Quiz updated = catalog.update(quiz.getTitle(), latest -> latest.withPool(pool));
+        catalogChanged();
+        return updated;
+    }
+
+    // Null settings make the quiz fixed-form again. The selection index is
+    // built here rather than on the first session's first question.
+    public Quiz setAdaptive(Quiz quiz, AdaptiveSettings settings) {
+        Quiz updated = catalog.update(quiz.getTitle(), latest -> latest.withAdaptive(settings));
+        if (updated != null && updated.isAdaptive()) {
+            updated.getInformationIndex();
+        }
+        catalogChanged();
+        return updated;
+    }
+
+    public boolean deleteQuiz(Quiz quiz) {
+        Quiz latest = catalog.find(quiz.getTitle());
+        if (!catalog.delete(quiz.getTitle())) {
+            return false;
+        }
+        if (latest != null) {
+            itemAnalytics.forget(latest);
+        }
+        catalogChanged();
+        return true;
+    }
+
+    public List<Quiz> getQuizzes() {
+        return catalog.getQuizzes();
+    }
+
+    public Quiz findQuiz(String title) {
+        return catalog.find(title);
+    }
+
+    public QuizCatalog getCatalog() {
+        return catalog;
+    }
+
+    // Starts on the quiz as given; pass a fresh findQuiz result for the latest version.
+    public QuizSession startSession(String username, Quiz quiz) {
+        return startSession(username, quiz, ThreadLocalRandom.current().nextLong());
+    }
+
+    // The same seed on the same quiz version reproduces the draw and option order.
+    public QuizSession startSession(String username, Quiz quiz, long seed) {
+        long start = Metrics.start();
+        String id = username + "-" + sessionIdPrefix + "-" + sessionCounter.incrementAndGet();
+        QuizSession session = new QuizSession(id, username, quiz, seed);
+        sessions.put(id, session);
+        journalStarted(session);
+        armTimeouts(session);
+        sessionStartTimer.stop(start);
+        return session;
+    }
+
+    // Unfinished sessions the user can pick up again: ones still live here and
+    // ones recovered from the journal after a restart.
+    public List<SessionCheckpoint> getResumableSessions(String username) {
+        List<SessionCheckpoint> resumable = new ArrayList<>();
+        for (QuizSession session : sessions.values()) {
+            if (session.getUsername().equals(username) && !session.isFinished()) {
+                resumable.add(session.checkpoint());
+            }
+        }
+        if (journal != null) {
+            resumable.addAll(journal.getRecovered(username));
+        }
+        return resumable;
+    }
+
+    // Reattaches to a live session or revives a journalled one.
+    public QuizSession resumeSession(String username, String sessionId) {
+        QuizSession live = sessions.get(sessionId);
+        if (live != null) {
+            if (!live.getUsername().equals(username)) {
+                throw new SecurityException("Session belongs to another user");
+            }
+            return live;
+        }
+        SessionCheckpoint checkpoint = journal == null ? null : journal.take(sessionId, username);
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("Unknown session: " + sessionId);
+        }
+        try {
+            return revive(checkpoint);
+        } catch (IllegalStateException e) {
+            // The quiz changed underneath it; it can never be resumed, so drop it
+            journal.ended(sessionId);
+            throw e;
+        }
+    }
+
+    // Moves a session off this node: it ends here and the returned signed
+    // checkpoint can be resumed once, by the same user, on any node with the
+    // same session key, within HANDOFF_TTL_MILLIS.
+    public byte[] handOffSession(String sessionId) {
+        QuizSession session = getSession(sessionId);
+        session.cancelTimeouts();
+        SessionCheckpoint checkpoint = session.checkpoint();
+        if (!session.handOff()) {
+            throw new IllegalStateException("Session " + sessionId + " is already finished");
+        }
+        sessions.remove(sessionId, session);
+        if (journal != null) {
+            // Ended on disk before the client holds the only copy, so a crash cannot revive it here too
+            journal.ended(sessionId).join();
+        }
+        return checkpoint.toSignedBytes(sessionKey, System.currentTimeMillis());
+    }
+
+    public QuizSession resumeSession(String username, byte[] checkpointBytes) {
+        SessionCheckpoint checkpoint = SessionCheckpoint.fromSignedBytes(checkpointBytes, sessionKey, HANDOFF_TTL_MILLIS);
+        if (!checkpoint.getUsername().equals(username)) {
+            throw new SecurityException("Session belongs to another user");
+        }
+        if (sessions.containsKey(checkpoint.getSessionId())) {
+            throw new IllegalStateException("Session " + checkpoint.getSessionId() + " is already running here");
+        }
+        long now = System.currentTimeMillis();
+        resumedHandoffs.values().removeIf(expiresAt -> expiresAt < now);
+        if (resumedHandoffs.putIfAbsent(checkpoint.getSignature(), now + HANDOFF_TTL_MILLIS) != null) {
+            throw new IllegalStateException("Session " + checkpoint.getSessionId() + " was already resumed from this checkpoint");
+        }
+        QuizSession session;
+        try {
+            session = revive(checkpoint);
+        } catch (RuntimeException e) {
+            resumedHandoffs.remove(checkpoint.getSignature());
+            throw e;
+        }
+        journalStarted(session);
+        return session;
+    }
+
+    // Waits until the session is on disk, so a crash cannot lose one the candidate already has.
+    private void journalStarted(QuizSession session) {
+        if (journal != null) {
+            journal.started(session.checkpoint()).join();
+        }
+    }
+
+    private static byte[] sessionKey() {
+        if (SESSION_KEY != null) {
+            return Base64.getDecoder().decode(SESSION_KEY);
+        }
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    private QuizSession revive(SessionCheckpoint checkpoint) {
+        Quiz quiz = catalog.find(checkpoint.getQuizTitle());
+        if (quiz == null || quiz.getFingerprint() != checkpoint.getQuizFingerprint()) {
+            throw new IllegalStateException("Quiz '" + checkpoint.getQuizTitle()
+                    + "' has changed since the session started and it cannot be resumed");
+        }
+        QuizSession session = new QuizSession(checkpoint, quiz);
+        if (sessions.putIfAbsent(session.getId(), session) != null) {
+            throw new IllegalStateException("Session " + session.getId() + " is already running here");
+        }
+        armTimeouts(session);
+        return session;
+    }
+
+    private void armTimeouts(QuizSession session) {
+        int limit = session.getQuiz().getTimeLimitSeconds();
+        if (limit > 0) {
+            String id = session.getId();
+            long remaining = Math.max(0, TimeUnit.SECONDS.toMillis(limit) - session.getElapsedMillis());
+            session.setQuizTimeout(timers.schedule(remaining, TimeUnit.MILLISECONDS, () -> expireSession(id)));
+        }
+        scheduleQuestionTimeout(session);
+    }
+
+    private void scheduleQuestionTimeout(QuizSession session) {
+        int limit = session.getQuiz().getQuestionTimeLimitSeconds();
+        if (limit <= 0 || session.isComplete()) {
+            return;
+        }
+        String id = session.getId();
+        int position = session.getCurrentQuestionIndex();
+        session.setQuestionTimeout(timers.schedule(limit, TimeUnit.SECONDS, () -> expireQuestion(id, position)));
+    }
+
+    private void expireQuestion(String sessionId, int position) {
+        QuizSession session = sessions.get(sessionId);
+        if (session == null || !session.timeoutQuestion(position)) {
+            return;
+        }
+        if (journal != null) {
+            journal.answered(sessionId, position, 0, session.getElapsedMillis());
+        }
+        if (session.isComplete()) {
+            expireSession(sessionId);
+        } else {
+            scheduleQuestionTimeout(session);
+        }
+    }
+
+    // Grades a session whose time ran out exactly as finish would. The session
+    // stays retrievable for a while so its client can still collect the result.
+    private void expireSession(String sessionId) {
+        QuizSession session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        session.cancelTimeouts();
+        QuizAttempt attempt = session.finish(true);
+        if (attempt == null) {
+            return;
+        }
+        if (journal != null) {
+            journal.ended(sessionId);
+        }
+        itemAnalytics.record(session, attempt);
+        ingest.submit(attempt);
+        timers.schedule(EXPIRED_SESSION_RETENTION_SECONDS, TimeUnit.SECONDS, () -> sessions.remove(sessionId, session));
+    }
+
+    public QuizSession getSession(String sessionId) {
+        QuizSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new IllegalArgumentException("Unknown session: " + sessionId);
+        }
+        return session;
+    }
+
+    public boolean submitAnswer(String sessionId, long selectedMask) {
+        long start = Metrics.start();
+        QuizSession session = getSession(sessionId);
+        int position;
+        boolean correct;
+        synchronized (session) {
+            position = session.getCurrentQuestionIndex();
+            correct = session.submit(selectedMask);
+        }
+        if (journal != null) {
+            // Not waited for; group commit makes a per-answer checkpoint cheap
+            journal.answered(sessionId, position, session.getAnswer(position), session.getElapsedMillis());
+        }
+        scheduleQuestionTimeout(session);
+        gradeTimer.stop(start);
+        answers.increment();
+        if (correct) {
+            correctAnswers.increment();
+        }
+        return correct;
+    }
+
+    public boolean submitAnswer(String sessionId, List<Integer> selectedAnswers) {
+        return submitAnswer(sessionId, AnswerMask.of(selectedAnswers));
+    }
+
+    // Waits until the attempt is durable. For a session that already timed out,
+    // returns the attempt recorded at expiry.
+    public QuizAttempt finish(String sessionId) {
+        return finishAsync(sessionId).join();
+    }
+
+    // Grades and enqueues the attempt; completes once it is visible in history,
+    // leaderboard and reports and has been written durably.
+    public CompletableFuture<QuizAttempt> finishAsync(String sessionId) {
+        long start = Metrics.start();
+        QuizSession session = getSession(sessionId);
+        session.cancelTimeouts();
+        QuizAttempt attempt = session.finish(false);
+        sessions.remove(sessionId);
+        if (attempt == null) {
+            if (session.isTimedOut()) {
+                return CompletableFuture.completedFuture(session.getResult());
+            }
+            throw new IllegalStateException("Session " + sessionId + " is already finished");
+        }
+        if (journal != null) {
+            journal.ended(sessionId);
+        }
+        // Updated on the finishing thread, striped so finishes do not serialize here
+        itemAnalytics.record(session, attempt);
+        CompletableFuture<Void> recorded = ingest.submit(attempt);
+        finishTimer.stop(start);
+        return recorded.thenApply(ignored -> attempt);
+    }
+
+    // Attempts oldest first, materialized for display.
+    public List<QuizAttempt> getHistory(String username) {
+        List<QuizAttempt> history = new ArrayList<>();
+        AttemptStore.Cursor cursor = attempts.forUser(username);
+        while (cursor.next()) {
+            history.add(cursor.toAttempt());
+        }
+        Collections.reverse(history);
+        return history;
+    }
+
+    // Allocation-free scan of a user's attempts, newest first.
+    public AttemptStore.Cursor historyCursor(String username) {
+        return attempts.forUser(username);
+    }
+
+    // Null quizTitle for all quizzes. Cheap to create for the default order;
+    // see HistoryPager.
+    public HistoryPager historyPager(String username, String quizTitle, HistoryPager.Sort sort, int pageSize) {
+        return new HistoryPager(attempts, username, quizTitle, sort, pageSize);
+    }
+
+    public AttemptStore getAttemptStore() {
+        return attempts;
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    // Admin reporting across all users' attempts.
+    public AttemptStore.Cursor queryAttempts(AttemptQuery query) {
+        return attemptIndex.query(query);
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Metrics.Timer getDisplayQuestionTimer() {
+        return displayQuestionTimer;
+    }
+
+    public ItemAnalytics getItemAnalytics() {
+        return itemAnalytics;
+    }
+
+    // Difficulty and discrimination for each question of the current version.
+    public List<ItemAnalytics.ItemStatistics> getItemStatistics(Quiz quiz) {
+        Quiz latest = catalog.find(quiz.getTitle());
+        return itemAnalytics.getStatistics(latest != null ? latest : quiz);
+    }
+
+    // Ranked question search across all quizzes; each word may be the start of a longer one.
+    public List<QuestionSearchIndex.Hit> searchQuestions(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    // Existing questions nearly identical to one about to be added.
+    public List<DuplicateDetector.Match> findDuplicates(Question question) {
+        return duplicates.findDuplicates(question, DuplicateDetector.DEFAULT_THRESHOLD);
+    }
+
+    // Batch pass over the whole current catalog on the common fork-join pool.
+    public List<List<DuplicateDetector.Match>> findDuplicateGroups() {
+        return DuplicateDetector.findGroups(catalog.getQuizzes(), DuplicateDetector.DEFAULT_THRESHOLD,
+                ForkJoinPool.commonPool());
+    }
+
+    public AttemptPipeline getIngestPipeline() {
+        return ingest;
+    }
+
+    // Quiz and question deadlines currently armed on the timing wheel.
+    public int getPendingTimeoutCount() {
+        return timers.getScheduledCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        timers.close();
+        expiryExecutor.shutdown();
+        try {
+            // Let in-flight expiries record their attempts before persistence closes
+            expiryExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loginAdmission.close();
+        registerAdmission.close();
+        startAdmission.close();
+        ingest.close();
+        authenticator.close();
+        if (persistence != null) {
+            persistence.close();
+        }
+        attempts.close();
+    }
+
+    // Copy of registered (non-admin) users for snapshotting.
+    Map<String, String> getUserCredentials() {
+        return new HashMap<>(users);
+    }
+
+    // Snapshots written before passwords were hashed hold plaintext; hash on load.
+    void restoreUser(String username, String password) {
+        if (!PasswordHasher.isHash(password)) {
+            password = PasswordHasher.hash(password, HASH_ITERATIONS);
+        }
+        users.put(username, password);
+    }
+
+    void restoreQuiz(Quiz quiz) {
+        catalog.put(quiz);
+    }
+
+    void restoreReplicationState(byte[] saved) {
+        savedReplicationState = saved;
+    }
+
+    void restoreAttempt(QuizAttempt attempt) {
+        attempts.appendUnchecked(attempt);
+    }
+
+    // The leaderboard and attempt index are loaded from their last snapshot and
+    // brought up to date from the rows past it, so restart cost tracks the rows
+    // recorded since that snapshot. Without a usable snapshot every row is read.
+    private void rebuildDerivedState() throws IOException {
+        long start = System.nanoTime();
+        // The snapshotter may already be running
+        synchronized (derivedLock) {
+            long covered = persistence.loadDerivedState(leaderboard, attemptIndex, attempts.size());
+            AttemptStore.Cursor cursor = attempts.scanFrom(covered);
+            while (cursor.next()) {
+                attemptIndex.add(cursor.getRow(), cursor.getQuizTitle(), cursor.getScore(),
+                        cursor.getTotalQuestions(), cursor.getEpochMillis());
+                leaderboard.record(cursor.getUsername(), cursor.getQuizTitle(), cursor.getScore(),
+                        cursor.getTotalQuestions(), cursor.getEpochMillis());
+            }
+            derivedRows = attempts.size();
+            rebuiltAttempts = derivedRows - covered;
+        }
+        rebuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        syncIndexes();
+    }
+
+    // Attempts applied to the leaderboard and index row by row during the last startup.
+    public long getRebuiltAttempts() {
+        return rebuiltAttempts;
+    }
+
+    // Time to load and catch up the leaderboard and index during the last startup.
+    public long getRebuildMillis() {
+        return rebuildMillis;
+    }
+
+    long getDerivedRows() {
+        synchronized (derivedLock) {
+            return derivedRows;
+        }
+    }
+
+    // Writes the leaderboard and attempt index and returns the row count they cover.
+    long writeDerivedState(DataOutput out) throws IOException {
+        synchronized (derivedLock) {
+            leaderboard.writeTo(out);
+            attemptIndex.writeTo(out);
+            return derivedRows;
+        }
+    }
+
+    private void syncIndexes() {
+        searchIndex.sync(catalog);
+        duplicates.sync(catalog);
+    }
+
+    private void catalogChanged() {
+        syncIndexes();
+        if (persistence != null) {
+            persistence.catalogChanged();
+        }
+        Runnable listener = catalogListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    // Called after every local catalog or user change; replicated installs do not call it.
+    void setCatalogListener(Runnable listener) {
+        this.catalogListener = listener;
+    }
+
+    // A cluster node's replication stamps, saved with the catalog snapshot so a
+    // restarted node keeps them; see ClusterNode.
+    interface ReplicationState {
+        // Writes the stamps and returns the quizzes they stamp, as of one moment.
+        List<Quiz> write(DataOutput out) throws IOException;
+    }
+
+    void setReplicationState(ReplicationState state) {
+        this.replicationState = state;
+    }
+
+    ReplicationState getReplicationState() {
+        return replicationState;
+    }
+
+    // What the last snapshot saved through ReplicationState, or null; only the
+    // first caller gets it.
+    synchronized byte[] takeSavedReplicationState() {
+        byte[] saved = savedReplicationState;
+        savedReplicationState = null;
+        return saved;
+    }
+
+    // Installs quiz edits and deletions received from another node; see
+    // QuizCatalog.replicate for expected. Quizzes whose content is unchanged keep
+    // their local instance, so running sessions are not disturbed by a replica
+    // of this node's own edit.
+    QuizCatalog.Version installQuizzes(Map<String, Quiz> expected, List<Quiz> quizzes, List<String> deleted) {
+        List<Quiz> merged = new ArrayList<>(quizzes.size());
+        for (Quiz quiz : quizzes) {
+            Quiz existing = catalog.find(quiz.getTitle());
+            merged.add(existing != null && sameContent(existing, quiz) ? existing : quiz);
+        }
+        QuizCatalog.Version version = catalog.replicate(expected, merged, deleted);
+        for (String title : deleted) {
+            if (version.find(title) == null && expected.get(title) != null) {
+                itemAnalytics.forget(expected.get(title));
+            }
+        }
+        syncIndexes();
+        if (persistence != null) {
+            persistence.catalogChanged();
+        }
+        return version;
+    }
+
+    private static boolean sameContent(Quiz a, Quiz b) {
+        if (a.getQuestions().size() != b.getQuestions().size()
+                || a.getTimeLimitSeconds() != b.getTimeLimitSeconds()
+                || a.getQuestionTimeLimitSeconds() != b.getQuestionTimeLimitSeconds()
+                || !samePool(a.getPool(), b.getPool())
+                || !sameAdaptive(a.getAdaptive(), b.getAdaptive())) {
+            return false;
+        }
+        for (int i = 0; i < a.getQuestions().size(); i++) {
+            Question x = a.getQuestions().get(i);
+            Question y = b.getQuestions().get(i);
+            if (x.getCorrectMask() != y.getCorrectMask() || !x.getTitle().equals(y.getTitle())
+                    || !x.getOptions().equals(y.getOptions()) || !x.getTopic().equals(y.getTopic())
+                    || x.getDiscrimination() != y.getDiscrimination() || x.getDifficulty() != y.getDifficulty()
+                    || x.getGuessing() != y.getGuessing()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameAdaptive(AdaptiveSettings a, AdaptiveSettings b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getMinQuestions() == b.getMinQuestions() && a.getMaxQuestions() == b.getMaxQuestions()
+                && a.getTargetStandardError() == b.getTargetStandardError();
+    }
+
+    private static boolean samePool(QuestionPool a, QuestionPool b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.isShuffleOptions() == b.isShuffleOptions() && a.getQuotas().equals(b.getQuotas());
+    }
+
+    // Batch writer for the ingest pipeline; runs on its single consumer thread.
+    // Store rows and log records are appended under one lock so they stay in
+    // the same order, which recovery relies on. Returns the durability of the
+    // batch's last log record, which the log completes in order, so it covers
+    // the whole batch.
+    private CompletableFuture<Void> writeAttempts(List<QuizAttempt> batch) {
+        CompletableFuture<Void> durable = CompletableFuture.completedFuture(null);
+        synchronized (derivedLock) {
+            long rows;
+            synchronized (attempts) {
+                for (QuizAttempt attempt : batch) {
+                    long row = attempts.appendUnchecked(attempt);
+                    if (persistence != null) {
+                        durable = persistence.appendAttempt(attempt);
+                    }
+                    // Index lists are appended in row order too
+                    attemptIndex.add(row, attempt.getQuizTitle(), attempt.getScore(),
+                            attempt.getTotalQuestions(), attempt.getEpochMillis());
+                }
+                rows = attempts.size();
+            }
+            for (QuizAttempt attempt : batch) {
+                leaderboard.record(attempt);
+            }
+            derivedRows = rows;
+        }
+        return durable;
+    }
+}
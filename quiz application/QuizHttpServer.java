@@ -0,0 +1,817 @@
+package com.example.demo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// HTTP/JSON front end over QuizEngine. Mirrors the JavaFX flow:
+//   POST /login, POST /register          -> login / register
+//   POST /logout                         -> logout button
+//   GET  /quizzes                        -> showTakeQuizDialog
+//   POST /sessions                       -> takeQuiz
+//   GET  /sessions/{id}/question         -> displayQuestion, with remainingMillis on timed quizzes
+//   POST /sessions/{id}/answer           -> submitButton
+//   POST /sessions/{id}/finish           -> showQuizResults
+//   GET  /sessions                       -> caller's unfinished sessions, including ones journalled before a restart
+//   POST /sessions/{id}/resume           -> picks one of those up again
+//   POST /sessions/{id}/handoff          -> ends the session here and returns a signed, single-use checkpoint
+//   POST /sessions/resume {"checkpoint"} -> continues the caller's own handed-off session on this node
+//   GET  /history                        -> showQuizHistory
+//   GET  /history?page=&size=&sort=&quiz= -> one page of it, total in X-Total-Count
+//   GET  /leaderboard?quiz=T&top=K       -> top scorers, caller's rank and quiz statistics
+//   GET  /admin/attempts?quiz=&from=&to=&minScore=&maxScore=&limit=
+//                                        -> admin report over all attempts (this node's, in cluster mode)
+//   POST /admin/import, GET /admin/export -> bulk question bank as JSON Lines
+//   GET  /admin/items?quiz=T             -> live difficulty, discrimination and option counts per question
+//   GET  /admin/search?q=&limit=         -> ranked questions matching every word (or word prefix) of q
+//   GET  /admin/duplicates               -> groups of near-identical questions across all quizzes
+//   GET  /stats                          -> request latency percentiles, ingest queue and lag
+//   GET  /metrics                        -> all engine and server metrics, Prometheus text format
+//   GET  /cluster                        -> this node, the ring's nodes and the catalog clock
+// Login, register and POST /sessions pass through the engine's admission gates. A
+// request still waiting for its turn after a short wait gets 202 with
+// {"ticket", "position", "estimatedWaitSeconds"}; repeating it with that
+// "ticket" in the body keeps its place. Rate-limited requests get 429 and
+// shed ones 503, both with Retry-After.
+// In cluster mode (see ClusterNode) login, register and token-authenticated
+// requests for a user owned by another node are relayed there; quiz lists,
+// stats and metrics are answered by whichever node receives them. Attempts
+// are not replicated, so leaderboards, ranks, item statistics and admin
+// attempt reports cover only the users of the node that answers: the
+// caller's owner. Those responses carry that node's id in X-Quiz-Shard.
+public class QuizHttpServer {
+    // How long a request waits in the admission queue before answering 202
+    static final long ADMISSION_POLL_MILLIS = Long.getLong("quiz.admission.pollMillis", 2000);
+
+    private final QuizEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final Metrics.Timer displayQuestionTimer;
+    private final ClusterNode cluster;
+
+    public QuizHttpServer(QuizEngine engine, int port) throws IOException {
+        this(engine, port, null);
+    }
+
+    // Starts the cluster node too, with this server handling requests relayed to it.
+    public QuizHttpServer(QuizEngine engine, int port, ClusterNode cluster) throws IOException {
+        this.engine = engine;
+        this.cluster = cluster;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        Metrics metrics = engine.getMetrics();
+        metrics.timer("quiz_http_request_seconds", "HTTP request latency, all routes", requestLatency);
+        this.displayQuestionTimer = engine.getDisplayQuestionTimer();
+    }
+
+    // Cluster mode: -Dquiz.cluster.nodes=host:port,... lists every node's cluster
+    // address, -Dquiz.cluster.self names this one and -Dquiz.cluster.secret is
+    // the passphrase every node shares.
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        QuizEngine engine = args.length > 1 ? new QuizEngine(Paths.get(args[1])) : new QuizEngine();
+        String nodes = System.getProperty("quiz.cluster.nodes");
+        String secret = System.getProperty("quiz.cluster.secret", "");
+        ClusterNode cluster = nodes == null ? null
+                : new ClusterNode(engine, System.getProperty("quiz.cluster.self"), Arrays.asList(nodes.split(",")),
+                        secret.getBytes(StandardCharsets.UTF_8));
+        QuizHttpServer server = new QuizHttpServer(engine, port, cluster);
+        server.start();
+        System.out.println("Quiz server listening on port " + server.getPort()
+                + (cluster == null ? "" : ", cluster node " + cluster.getSelf()));
+    }
+
+    public void start() {
+        server.start();
+        if (cluster != null) {
+            cluster.start(this::handle);
+        }
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        if (cluster != null) {
+            try {
+                cluster.close();
+            } catch (IOException e) {
+                // Sockets are closing anyway
+            }
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    // One virtual thread per request where the runtime has them (JDK 21+);
+    // older runtimes fall back to an unbounded cached platform-thread pool.
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (cluster == null || exchange instanceof ClusterNode.ForwardedExchange || !forwardToOwner(exchange)) {
+                route(exchange);
+            }
+        } catch (AdmissionController.Rejection e) {
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(e.getRetryAfterSeconds()));
+            int status = e.getReason() == AdmissionController.Reason.RATE_LIMITED ? 429 : 503;
+            send(exchange, status, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            send(exchange, 409, error(e.getMessage()));
+        } catch (SecurityException e) {
+            send(exchange, 401, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            send(exchange, 500, error("Internal error"));
+        } finally {
+            exchange.close();
+            requestLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    // Relays the request if its user lives on another node. Login and register
+    // are routed by the username in the body, everything else by the routing
+    // token; requests with neither are served here.
+    private boolean forwardToOwner(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String username = null;
+        byte[] body = null;
+        if (exchange.getRequestMethod().equals("POST") && (path.equals("/login") || path.equals("/register"))) {
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            exchange.setStreams(new ByteArrayInputStream(body), null);
+            try {
+                Object field = Json.parseObject(new String(body, StandardCharsets.UTF_8)).get("username");
+                username = field instanceof String ? (String) field : null;
+            } catch (IllegalArgumentException e) {
+                // Malformed; let the local route reject it
+            }
+        } else {
+            String token = rawBearerToken(exchange);
+            username = token == null ? null : ClusterNode.routingUser(token);
+        }
+        if (username == null || cluster.isLocal(username)) {
+            return false;
+        }
+        if (body == null) {
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+        }
+        try {
+            cluster.forward(cluster.ownerOf(username), exchange, body);
+        } catch (IOException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, error("Node " + cluster.ownerOf(username) + " is unavailable."));
+        }
+        return true;
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+
+        if (path.length == 2 && method.equals("POST") && path[1].equals("login")) {
+            login(exchange);
+        } else if (path.length == 2 && method.equals("POST") && path[1].equals("logout")) {
+            engine.getAuthenticator().revoke(bearerToken(exchange));
+            send(exchange, 200, new LinkedHashMap<>());
+        } else if (path.length == 2 && method.equals("POST") && path[1].equals("register")) {
+            register(exchange);
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("quizzes")) {
+            send(exchange, 200, quizList());
+        } else if (path.length == 2 && method.equals("POST") && path[1].equals("sessions")) {
+            startSession(exchange);
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("sessions")) {
+            send(exchange, 200, resumableSessions(authenticate(exchange)));
+        } else if (path.length == 3 && method.equals("POST") && path[1].equals("sessions") && path[2].equals("resume")) {
+            String username = authenticate(exchange);
+            String checkpoint = stringField(readBody(exchange), "checkpoint");
+            QuizSession session = engine.resumeSession(username, Base64.getDecoder().decode(checkpoint));
+            send(exchange, 200, sessionJson(session));
+        } else if (path.length == 4 && method.equals("POST") && path[1].equals("sessions") && path[3].equals("resume")) {
+            send(exchange, 200, sessionJson(engine.resumeSession(authenticate(exchange), path[2])));
+        } else if (path.length == 4 && path[1].equals("sessions")) {
+            QuizSession session = ownedSession(exchange, path[2]);
+            if (method.equals("GET") && path[3].equals("question")) {
+                send(exchange, 200, question(session));
+            } else if (method.equals("POST") && path[3].equals("answer")) {
+                answer(exchange, session);
+            } else if (method.equals("POST") && path[3].equals("finish")) {
+                Map<String, Object> response = attemptJson(engine.finish(session.getId()));
+                if (session.isAdaptive()) {
+                    response.put("ability", session.getAbility());
+                    response.put("standardError", session.getStandardError());
+                }
+                send(exchange, 200, response);
+            } else if (method.equals("POST") && path[3].equals("handoff")) {
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("checkpoint", Base64.getEncoder().encodeToString(engine.handOffSession(session.getId())));
+                send(exchange, 200, response);
+            } else {
+                send(exchange, 404, error("Not found"));
+            }
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("history")) {
+            send(exchange, 200, history(exchange, authenticate(exchange)));
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("leaderboard")) {
+            Map<String, Object> response = leaderboard(exchange);
+            markShard(exchange);
+            send(exchange, 200, response);
+        } else if (path.length == 3 && method.equals("GET") && path[1].equals("admin") && path[2].equals("attempts")) {
+            List<Object> response = adminAttempts(exchange);
+            markShard(exchange);
+            send(exchange, 200, response);
+        } else if (path.length == 3 && method.equals("GET") && path[1].equals("admin") && path[2].equals("items")) {
+            List<Object> response = itemStatistics(exchange);
+            markShard(exchange);
+            send(exchange, 200, response);
+        } else if (path.length == 3 && method.equals("GET") && path[1].equals("admin") && path[2].equals("search")) {
+            send(exchange, 200, searchQuestions(exchange));
+        } else if (path.length == 3 && method.equals("GET") && path[1].equals("admin") && path[2].equals("duplicates")) {
+            send(exchange, 200, duplicateGroups(exchange));
+        } else if (path.length == 3 && method.equals("POST") && path[1].equals("admin") && path[2].equals("import")) {
+            requireAdmin(exchange);
+            send(exchange, 200, importQuestions(exchange));
+        } else if (path.length == 3 && method.equals("GET") && path[1].equals("admin") && path[2].equals("export")) {
+            requireAdmin(exchange);
+            exportQuestions(exchange);
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("stats")) {
+            send(exchange, 200, stats());
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("cluster")) {
+            send(exchange, 200, clusterStatus());
+        } else if (path.length == 2 && method.equals("GET") && path[1].equals("metrics")) {
+            sendText(exchange, 200, engine.getMetrics().toPrometheus());
+        } else {
+            send(exchange, 404, error("Not found"));
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = readBody(exchange);
+        String username = stringField(body, "username");
+        String password = stringField(body, "password");
+        AdmissionController.Ticket ticket = admit(exchange, engine.getLoginAdmission(),
+                AdmissionController.loginKey(username, clientAddress(exchange)), body);
+        if (ticket == null) {
+            return;
+        }
+        QuizEngine.Role role;
+        try {
+            // Hashing runs on the bounded auth pool; this request thread just waits
+            role = engine.loginAsync(username, password).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("Too many logins in progress, please retry."));
+                return;
+            }
+            throw e;
+        } finally {
+            ticket.release();
+        }
+        if (role == null) {
+            send(exchange, 401, error("Invalid username or password."));
+            return;
+        }
+        String token = engine.getAuthenticator().issueToken(username);
+        if (cluster != null) {
+            token = ClusterNode.routingToken(username, token);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", token);
+        response.put("role", role.name());
+        send(exchange, 200, response);
+    }
+
+    private void register(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = readBody(exchange);
+        String username = stringField(body, "username");
+        String password = stringField(body, "password");
+        AdmissionController.Ticket ticket = admit(exchange, engine.getRegisterAdmission(),
+                AdmissionController.loginKey(username, clientAddress(exchange)), body);
+        if (ticket == null) {
+            return;
+        }
+        boolean registered;
+        try {
+            // Hashing runs on the bounded auth pool, as for logins
+            registered = engine.registerAsync(username, password).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("Too many registrations in progress, please retry."));
+                return;
+            }
+            throw e;
+        } finally {
+            ticket.release();
+        }
+        if (!registered) {
+            send(exchange, 409, error("Username already exists."));
+            return;
+        }
+        send(exchange, 201, new LinkedHashMap<>());
+    }
+
+    private List<Object> quizList() {
+        List<Object> list = new ArrayList<>();
+        for (Quiz quiz : engine.getQuizzes()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("title", quiz.getTitle());
+            entry.put("questions", quiz.getQuestions().size());
+            list.add(entry);
+        }
+        return list;
+    }
+
+    private void startSession(HttpExchange exchange) throws IOException {
+        String username = authenticate(exchange);
+        Map<String, Object> body = readBody(exchange);
+        String title = stringField(body, "quiz");
+        if (engine.findQuiz(title) == null) {
+            send(exchange, 404, error("Unknown quiz: " + title));
+            return;
+        }
+        AdmissionController.Ticket ticket = admit(exchange, engine.getStartAdmission(), username, body);
+        if (ticket == null) {
+            return;
+        }
+        QuizSession session;
+        try {
+            // Latest version once admitted, which may be a while after the request arrived
+            Quiz quiz = engine.findQuiz(title);
+            if (quiz == null) {
+                send(exchange, 404, error("Unknown quiz: " + title));
+                return;
+            }
+            session = engine.startSession(username, quiz);
+        } finally {
+            ticket.release();
+        }
+        send(exchange, 201, sessionJson(session));
+    }
+
+    // Waits up to ADMISSION_POLL_MILLIS for the gate. Returns the admitted
+    // ticket, for the caller to release, or null after answering 202 with the
+    // place in line. A "ticket" from an earlier 202 resumes that place; one
+    // that expired or belongs to another client joins the back of the line.
+    private AdmissionController.Ticket admit(HttpExchange exchange, AdmissionController gate, String client,
+                                             Map<String, Object> body) throws IOException {
+        Object ticketId = body.get("ticket");
+        AdmissionController.Ticket ticket = gate.find(ticketId instanceof String ? (String) ticketId : null);
+        if (ticket == null || !ticket.getClient().equals(client)) {
+            ticket = gate.enqueue(client);
+        }
+        if (ticket.await(ADMISSION_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            return ticket;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("ticket", ticket.getId());
+        response.put("position", ticket.getPosition());
+        response.put("estimatedWaitSeconds", (ticket.getEstimatedWaitMillis() + 999) / 1000);
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        send(exchange, 202, response);
+        return null;
+    }
+
+    // Half of the login and register rate-limit key; see
+    // AdmissionController.loginKey. A relayed request carries the address its
+    // first node saw.
+    private static String clientAddress(HttpExchange exchange) {
+        InetSocketAddress remote = exchange.getRemoteAddress();
+        return remote == null || remote.getAddress() == null ? "unknown" : remote.getAddress().getHostAddress();
+    }
+
+    private static Map<String, Object> sessionJson(QuizSession session) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("session", session.getId());
+        response.put("totalQuestions", session.getTotalQuestions());
+        response.put("answered", session.getCurrentQuestionIndex());
+        response.put("adaptive", session.isAdaptive());
+        return response;
+    }
+
+    private List<Object> resumableSessions(String username) {
+        List<Object> sessions = new ArrayList<>();
+        for (SessionCheckpoint checkpoint : engine.getResumableSessions(username)) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("session", checkpoint.getSessionId());
+            json.put("quiz", checkpoint.getQuizTitle());
+            json.put("answered", checkpoint.getAnsweredCount());
+            json.put("totalQuestions", checkpoint.getTotalQuestions());
+            json.put("elapsedMillis", checkpoint.getElapsedMillis());
+            sessions.add(json);
+        }
+        return sessions;
+    }
+
+    private Map<String, Object> question(QuizSession session) {
+        long start = Metrics.start();
+        Map<String, Object> response = new LinkedHashMap<>();
+        Question question = session.getCurrentQuestion();
+        response.put("complete", question == null);
+        if (session.getQuiz().isTimed()) {
+            response.put("remainingMillis", session.getRemainingMillis());
+            response.put("timedOut", session.isTimedOut());
+        }
+        if (question != null) {
+            response.put("index", session.getCurrentQuestionIndex());
+            response.put("totalQuestions", session.getTotalQuestions());
+            response.put("adaptive", session.isAdaptive());
+            response.put("title", question.getTitle());
+            response.put("options", question.getOptions());
+        }
+        displayQuestionTimer.stop(start);
+        return response;
+    }
+
+    private void answer(HttpExchange exchange, QuizSession session) throws IOException {
+        Object answers = readBody(exchange).get("answers");
+        if (!(answers instanceof List)) {
+            throw new IllegalArgumentException("Missing 'answers' array");
+        }
+        long selectedMask = 0;
+        for (Object answer : (List<?>) answers) {
+            if (!(answer instanceof Number)) {
+                throw new IllegalArgumentException("Answers must be option indices");
+            }
+            selectedMask |= AnswerMask.of(((Number) answer).intValue());
+        }
+        Question question = session.getCurrentQuestion();
+        boolean isCorrect = engine.submitAnswer(session.getId(), selectedMask);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("correct", isCorrect);
+        response.put("correctAnswers", question.getCorrectAnswers());
+        response.put("complete", session.isComplete());
+        send(exchange, 200, response);
+    }
+
+    private Map<String, Object> leaderboard(HttpExchange exchange) {
+        String username = authenticate(exchange);
+        Map<String, String> query = queryParameters(exchange);
+        String quiz = query.get("quiz");
+        if (quiz == null) {
+            throw new IllegalArgumentException("Missing 'quiz'");
+        }
+        int top = query.containsKey("top") ? Integer.parseInt(query.get("top")) : 10;
+        Leaderboard leaderboard = engine.getLeaderboard();
+
+        List<Object> entries = new ArrayList<>();
+        for (Leaderboard.Entry entry : leaderboard.getTop(quiz, top)) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("username", entry.getUsername());
+            json.put("percentage", entry.getPercentage());
+            entries.add(json);
+        }
+        Leaderboard.Stats stats = leaderboard.getStats(quiz);
+        List<Object> histogram = new ArrayList<>();
+        for (long count : stats.getHistogram()) {
+            histogram.add(count);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("quiz", quiz);
+        response.put("top", entries);
+        response.put("rank", leaderboard.getRank(quiz, username));
+        response.put("attempts", stats.getAttempts());
+        response.put("users", stats.getUsers());
+        response.put("meanPercentage", stats.getMeanPercentage());
+        response.put("histogram", histogram);
+        return response;
+    }
+
+    private Map<String, Object> stats() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("requests", requestLatency.getCount());
+        response.put("activeSessions", engine.getActiveSessionCount());
+        response.put("pendingTimeouts", engine.getPendingTimeoutCount());
+        AttemptPipeline ingest = engine.getIngestPipeline();
+        response.put("ingestQueueDepth", ingest.getQueueDepth());
+        response.put("ingestCapacity", ingest.getCapacity());
+        response.put("ingestFullWaits", ingest.getFullWaits());
+        response.put("ingestBatches", ingest.getBatchCount());
+        response.put("ingestMeanBatchSize", ingest.getMeanBatchSize());
+        response.put("ingestMaxBatchSize", ingest.getMaxBatchSize());
+        response.put("ingestLagP50Micros", ingest.getLag().getValueAtPercentile(50) / 1000);
+        response.put("ingestLagP99Micros", ingest.getLag().getValueAtPercentile(99) / 1000);
+        response.put("authQueueDepth", engine.getAuthenticator().getQueueDepth());
+        response.put("meanMicros", requestLatency.getMeanNanos() / 1000);
+        response.put("p50Micros", requestLatency.getValueAtPercentile(50) / 1000);
+        response.put("p99Micros", requestLatency.getValueAtPercentile(99) / 1000);
+        response.put("p999Micros", requestLatency.getValueAtPercentile(99.9) / 1000);
+        response.put("maxMicros", requestLatency.getMaxNanos() / 1000);
+        return response;
+    }
+
+    // Reports built from this node's attempts only.
+    private void markShard(HttpExchange exchange) {
+        if (cluster != null) {
+            exchange.getResponseHeaders().set("X-Quiz-Shard", cluster.getSelf());
+        }
+    }
+
+    private Map<String, Object> clusterStatus() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (cluster == null) {
+            response.put("clustered", false);
+            return response;
+        }
+        response.put("clustered", true);
+        response.put("self", cluster.getSelf());
+        response.put("nodes", new ArrayList<Object>(cluster.getRing().getNodes()));
+        response.put("catalogClock", cluster.getCatalogClock());
+        return response;
+    }
+
+    // Newest first, read straight off the attempt store's columns. With any
+    // paging parameter only the requested page is read; sort is a
+    // HistoryPager.Sort name.
+    private List<Object> history(HttpExchange exchange, String username) {
+        Map<String, String> parameters = queryParameters(exchange);
+        if (!parameters.containsKey("page") && !parameters.containsKey("size")
+                && !parameters.containsKey("sort") && !parameters.containsKey("quiz")) {
+            return attemptList(engine.historyCursor(username));
+        }
+        HistoryPager pager = engine.historyPager(username, parameters.get("quiz"),
+                HistoryPager.Sort.valueOf(parameters.getOrDefault("sort", "NEWEST_FIRST")),
+                Integer.parseInt(parameters.getOrDefault("size", "50")));
+        exchange.getResponseHeaders().set("X-Total-Count", String.valueOf(pager.getTotalCount()));
+        List<Object> page = new ArrayList<>();
+        for (HistoryPager.Row row : pager.getPage(Integer.parseInt(parameters.getOrDefault("page", "0")))) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("username", row.getUsername());
+            json.put("quiz", row.getQuizTitle());
+            json.put("score", row.getScore());
+            json.put("totalQuestions", row.getTotalQuestions());
+            json.put("timestamp", LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(row.getEpochMillis()), ZoneId.systemDefault()).toString());
+            page.add(json);
+        }
+        return page;
+    }
+
+    // Times are epoch milliseconds, scores are percentages; newest attempts first.
+    private List<Object> adminAttempts(HttpExchange exchange) {
+        requireAdmin(exchange);
+        Map<String, String> parameters = queryParameters(exchange);
+        AttemptQuery query = new AttemptQuery()
+                .quiz(parameters.get("quiz"))
+                .between(Long.parseLong(parameters.getOrDefault("from", String.valueOf(Long.MIN_VALUE))),
+                        Long.parseLong(parameters.getOrDefault("to", String.valueOf(Long.MAX_VALUE))))
+                .scoreBetween(Double.parseDouble(parameters.getOrDefault("minScore", "0")),
+                        Double.parseDouble(parameters.getOrDefault("maxScore", "100")))
+                .limit(Integer.parseInt(parameters.getOrDefault("limit", "1000")));
+        return attemptList(engine.queryAttempts(query));
+    }
+
+    // Undefined statistics (no responses yet, or no spread) come back as null.
+    private List<Object> itemStatistics(HttpExchange exchange) {
+        requireAdmin(exchange);
+        String title = queryParameters(exchange).get("quiz");
+        Quiz quiz = title == null ? null : engine.findQuiz(title);
+        if (quiz == null) {
+            throw new IllegalArgumentException("Unknown quiz: " + title);
+        }
+        List<Object> items = new ArrayList<>();
+        for (ItemAnalytics.ItemStatistics statistics : engine.getItemStatistics(quiz)) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("question", statistics.getQuestion().getTitle());
+            json.put("topic", statistics.getQuestion().getTopic());
+            json.put("responses", statistics.getResponses());
+            json.put("pValue", finiteOrNull(statistics.getPValue()));
+            json.put("pointBiserial", finiteOrNull(statistics.getPointBiserial()));
+            json.put("blankResponses", statistics.getBlankResponses());
+            List<Object> options = new ArrayList<>();
+            for (long count : statistics.getOptionCounts()) {
+                options.add(count);
+            }
+            json.put("optionCounts", options);
+            items.add(json);
+        }
+        return items;
+    }
+
+    private List<Object> searchQuestions(HttpExchange exchange) {
+        requireAdmin(exchange);
+        Map<String, String> parameters = queryParameters(exchange);
+        String query = parameters.getOrDefault("q", "");
+        int limit = Integer.parseInt(parameters.getOrDefault("limit", "20"));
+        List<Object> hits = new ArrayList<>();
+        for (QuestionSearchIndex.Hit hit : engine.searchQuestions(query, Math.min(limit, 1000))) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("quiz", hit.getQuizTitle());
+            json.put("index", hit.getQuestionIndex());
+            json.put("title", hit.getQuestion().getTitle());
+            json.put("options", hit.getQuestion().getOptions());
+            json.put("score", hit.getScore());
+            hits.add(json);
+        }
+        return hits;
+    }
+
+    private List<Object> duplicateGroups(HttpExchange exchange) {
+        requireAdmin(exchange);
+        List<Object> groups = new ArrayList<>();
+        for (List<DuplicateDetector.Match> group : engine.findDuplicateGroups()) {
+            List<Object> members = new ArrayList<>();
+            for (DuplicateDetector.Match match : group) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("quiz", match.getQuizTitle());
+                json.put("index", match.getQuestionIndex());
+                json.put("title", match.getQuestion().getTitle());
+                json.put("similarity", match.getSimilarity());
+                members.add(json);
+            }
+            groups.add(members);
+        }
+        return groups;
+    }
+
+    private static Double finiteOrNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private Map<String, Object> importQuestions(HttpExchange exchange) throws IOException {
+        QuestionBankIO.ImportResult result;
+        try (Reader body = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            result = new QuestionBankIO(engine).importFrom(body);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("imported", result.getImported());
+        response.put("rejected", result.getRejected());
+        response.put("elapsedMillis", result.getElapsedMillis());
+        response.put("questionsPerSecond", result.getQuestionsPerSecond());
+        response.put("errors", result.getErrors());
+        return response;
+    }
+
+    // Streams the export with chunked encoding rather than buffering it.
+    private void exportQuestions(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            new QuestionBankIO(engine).exportTo(writer);
+        }
+    }
+
+    private static List<Object> attemptList(AttemptStore.Cursor cursor) {
+        List<Object> attempts = new ArrayList<>();
+        while (cursor.next()) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("username", cursor.getUsername());
+            json.put("quiz", cursor.getQuizTitle());
+            json.put("score", cursor.getScore());
+            json.put("totalQuestions", cursor.getTotalQuestions());
+            json.put("timestamp", LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(cursor.getEpochMillis()), ZoneId.systemDefault()).toString());
+            attempts.add(json);
+        }
+        return attempts;
+    }
+
+    private static Map<String, Object> attemptJson(QuizAttempt attempt) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("username", attempt.getUsername());
+        json.put("quiz", attempt.getQuizTitle());
+        json.put("score", attempt.getScore());
+        json.put("totalQuestions", attempt.getTotalQuestions());
+        json.put("timestamp", attempt.getTimestamp().toString());
+        return json;
+    }
+
+    private QuizSession ownedSession(HttpExchange exchange, String sessionId) {
+        String username = authenticate(exchange);
+        QuizSession session = engine.getSession(sessionId);
+        if (!session.getUsername().equals(username)) {
+            throw new SecurityException("Session belongs to another user");
+        }
+        return session;
+    }
+
+    private void requireAdmin(HttpExchange exchange) {
+        if (!engine.isAdmin(authenticate(exchange))) {
+            throw new SecurityException("Admin login required");
+        }
+    }
+
+    private String authenticate(HttpExchange exchange) {
+        String token = bearerToken(exchange);
+        String username = token == null ? null : engine.getAuthenticator().authenticate(token);
+        if (username == null) {
+            throw new SecurityException("Login required");
+        }
+        return username;
+    }
+
+    // Token as the authenticator issued it, without any cluster routing prefix.
+    private static String bearerToken(HttpExchange exchange) {
+        String token = rawBearerToken(exchange);
+        return token == null ? null : token.substring(token.indexOf('.') + 1);
+    }
+
+    private static String rawBearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return null;
+        }
+        return header.substring("Bearer ".length());
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return body.isBlank() ? new LinkedHashMap<>() : Json.parseObject(body);
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String stringField(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Missing '" + name + "'");
+        }
+        return (String) value;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("error", message);
+        return json;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.example.demo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Durable storage for a QuizEngine. Quiz attempts go to an append-only
+// RecordLog and into the engine's AttemptStore; users and quiz definitions are
+// written as a compact snapshot whenever they have changed. Both the snapshot
+// and an AttemptStore flush happen every snapshotIntervalMillis.
+// Recovery loads the snapshot and replays only the log tail past the store's
+// last flushed row. Unfinished sessions are kept in a separate SessionJournal.
+// The leaderboard and attempt index are snapshotted after each flush too, with
+// the row count they cover; that snapshot is only a cache, so a missing or
+// damaged one costs a full scan of the store, never data.
+public class QuizPersistence implements Closeable {
+    private static final String SNAPSHOT_FILE = "catalog.snapshot";
+    private static final String ATTEMPT_LOG_FILE = "attempts.log";
+    private static final String ATTEMPT_STORE_DIRECTORY = "attempts";
+    private static final String SESSION_JOURNAL_FILE = "sessions.log";
+    private static final String DERIVED_STATE_FILE = "derived.snapshot";
+    private static final int DERIVED_STATE_MAGIC = 0x51554944;
+    private static final int DERIVED_STATE_VERSION = 1;
+    private static final String ITEM_STATISTICS_FILE = "items.snapshot";
+    private static final int ITEM_STATISTICS_MAGIC = 0x51554954;
+    // Version 2 keys questions by content rather than position
+    private static final int ITEM_STATISTICS_VERSION = 2;
+    private static final int SNAPSHOT_MAGIC = 0x51554953;
+    // Version 2 adds question topics and quiz pools, version 3 time limits, version 4 item
+    // parameters and adaptive settings, version 5 a CRC32 trailer, version 6 cluster
+    // replication stamps; older versions are still readable.
+    private static final int SNAPSHOT_VERSION = 6;
+    private static final int LOG_QUEUE_CAPACITY = 65536;
+    private static final System.Logger LOG = System.getLogger(QuizPersistence.class.getName());
+
+    private final Path directory;
+    private final QuizEngine engine;
+    private final AttemptStore attemptStore;
+    private final RecordLog attemptLog;
+    private final SessionJournal sessionJournal;
+    private final ScheduledExecutorService snapshotter;
+    private final AtomicBoolean catalogDirty = new AtomicBoolean();
+    private final AtomicLong checkpointFailures = new AtomicLong();
+    private long derivedStateRows = -1;
+    private long itemStatisticsUpdates;
+    private final long recoveredAttempts;
+    private final long recoveryMillis;
+
+    private QuizPersistence(Path directory, QuizEngine engine, AttemptStore attemptStore, long snapshotIntervalMillis)
+            throws IOException {
+        this.directory = directory;
+        this.engine = engine;
+        this.attemptStore = attemptStore;
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        loadSnapshot();
+        loadItemStatistics();
+        long flushedRows = attemptStore.size();
+        this.attemptLog = RecordLog.open(directory.resolve(ATTEMPT_LOG_FILE), LOG_QUEUE_CAPACITY, flushedRows,
+                record -> engine.restoreAttempt(decodeAttempt(record)));
+        this.recoveredAttempts = attemptLog.getRecordCount() - flushedRows;
+        this.sessionJournal = SessionJournal.open(directory.resolve(SESSION_JOURNAL_FILE));
+        this.recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "quiz-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::checkpoint,
+                snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static QuizPersistence open(Path directory, QuizEngine engine, AttemptStore attemptStore,
+                                long snapshotIntervalMillis) throws IOException {
+        return new QuizPersistence(directory, engine, attemptStore, snapshotIntervalMillis);
+    }
+
+    static Path attemptStoreDirectory(Path directory) {
+        return directory.resolve(ATTEMPT_STORE_DIRECTORY);
+    }
+
+    // Attempts replayed from the log tail during the last startup.
+    public long getRecoveredAttempts() {
+        return recoveredAttempts;
+    }
+
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    public SessionJournal getSessionJournal() {
+        return sessionJournal;
+    }
+
+    void catalogChanged() {
+        catalogDirty.set(true);
+    }
+
+    CompletableFuture<Void> appendAttempt(QuizAttempt attempt) {
+        return attemptLog.append(encodeAttempt(attempt));
+    }
+
+    public void snapshotIfDirty() {
+        if (catalogDirty.getAndSet(false)) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                catalogDirty.set(true);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Runs on the snapshotter. An exception escaping a fixed-delay task cancels every
+    // later run, so failures are logged and retried on the next tick instead: a dirty
+    // catalog stays dirty, and an unflushed store only means a longer log tail to replay.
+    private void checkpoint() {
+        try {
+            snapshotIfDirty();
+        } catch (RuntimeException e) {
+            checkpointFailed("catalog snapshot", e);
+        }
+        try {
+            attemptStore.flush(attemptLog.getRecordCount());
+        } catch (IOException | RuntimeException e) {
+            checkpointFailed("attempt store flush", e);
+        }
+        try {
+            writeDerivedState();
+        } catch (IOException | RuntimeException e) {
+            checkpointFailed("derived state snapshot", e);
+        }
+        try {
+            writeItemStatistics();
+        } catch (IOException | RuntimeException e) {
+            checkpointFailed("item statistics snapshot", e);
+        }
+    }
+
+    private void checkpointFailed(String what, Exception e) {
+        checkpointFailures.incrementAndGet();
+        LOG.log(System.Logger.Level.WARNING, what + " failed in " + directory + "; retrying next checkpoint", e);
+    }
+
+    public long getCheckpointFailures() {
+        return checkpointFailures.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotIfDirty();
+        attemptLog.close();
+        attemptStore.flush(attemptLog.getRecordCount());
+        writeDerivedState();
+        writeItemStatistics();
+        sessionJournal.close();
+    }
+
+    // Returns the rows the loaded state covers, or 0 (nothing loaded) when there is no
+    // snapshot, it is damaged, or it is ahead of the store because the rows it covered
+    // were lost with the unforced log tail. A discarded snapshot is deleted so it cannot
+    // match a store that later grows past it with different rows.
+    long loadDerivedState(Leaderboard leaderboard, AttemptIndex index, long storeRows) throws IOException {
+        Path file = directory.resolve(DERIVED_STATE_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        long rows = -1;
+        if (buffer.remaining() >= 24 && buffer.getInt() == DERIVED_STATE_MAGIC
+                && buffer.getInt() == DERIVED_STATE_VERSION) {
+            rows = buffer.getLong();
+            long checksum = buffer.getLong();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                rows = -1;
+            }
+        }
+        if (rows < 0 || rows > storeRows) {
+            Files.delete(file);
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                buffer.array(), buffer.position(), buffer.remaining()))) {
+            leaderboard.readFrom(in);
+            index.readFrom(in);
+        }
+        derivedStateRows = rows;
+        return rows;
+    }
+
+    // Runs on the snapshotter or at close. The ingest writer waits only while the
+    // state is copied into memory; the file is written after it resumes.
+    private void writeDerivedState() throws IOException {
+        if (engine.getDerivedRows() == derivedStateRows) {
+            return;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 16);
+        long rows;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(payload, 1 << 16))) {
+            rows = engine.writeDerivedState(out);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        Path temp = directory.resolve(DERIVED_STATE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(DERIVED_STATE_MAGIC);
+            out.writeInt(DERIVED_STATE_VERSION);
+            out.writeLong(rows);
+            out.writeLong(crc.getValue());
+            out.write(bytes);
+        }
+        replaceDurably(temp, DERIVED_STATE_FILE);
+        derivedStateRows = rows;
+    }
+
+    // Item statistics cannot be rebuilt from the attempt store, which keeps only
+    // scores, so sessions finished after the last checkpoint are missing from
+    // them after a crash. A damaged file is discarded rather than failing startup.
+    private void loadItemStatistics() throws IOException {
+        Path file = directory.resolve(ITEM_STATISTICS_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        boolean valid = false;
+        int version = 0;
+        if (buffer.remaining() >= 16 && buffer.getInt() == ITEM_STATISTICS_MAGIC) {
+            version = buffer.getInt();
+        }
+        if (version >= 1 && version <= ITEM_STATISTICS_VERSION) {
+            long checksum = buffer.getLong();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            valid = crc.getValue() == checksum;
+        }
+        if (!valid) {
+            LOG.log(System.Logger.Level.WARNING, "Discarding damaged item statistics: " + file);
+            Files.delete(file);
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                buffer.array(), buffer.position(), buffer.remaining()))) {
+            engine.getItemAnalytics().readFrom(in, version, engine::findQuiz);
+        }
+        // An older version is rewritten at the next checkpoint
+        itemStatisticsUpdates = version < ITEM_STATISTICS_VERSION ? -1 : engine.getItemAnalytics().getUpdateCount();
+    }
+
+    private void writeItemStatistics() throws IOException {
+        ItemAnalytics analytics = engine.getItemAnalytics();
+        long updates = analytics.getUpdateCount();
+        if (updates == itemStatisticsUpdates) {
+            return;
+        }
+        analytics.retain(engine.getQuizzes());
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 12);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            analytics.writeTo(out);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        Path temp = directory.resolve(ITEM_STATISTICS_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(ITEM_STATISTICS_MAGIC);
+            out.writeInt(ITEM_STATISTICS_VERSION);
+            out.writeLong(crc.getValue());
+            out.write(bytes);
+        }
+        replaceDurably(temp, ITEM_STATISTICS_FILE);
+        itemStatisticsUpdates = updates;
+    }
+
+    // Forces a fully written temp file to disk, renames it over the named file and
+    // forces the directory entry, so a crash leaves either the old file or the new
+    // one, never an empty or partly written one in its place.
+    private void replaceDurably(Path temp, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open a directory; the rename is atomic all the same
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(payload, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+
+            Map<String, String> users = engine.getUserCredentials();
+            out.writeInt(users.size());
+            for (Map.Entry<String, String> user : users.entrySet()) {
+                out.writeUTF(user.getKey());
+                out.writeUTF(user.getValue());
+            }
+
+            // In cluster mode the quizzes saved are exactly those the saved stamps cover
+            QuizEngine.ReplicationState replication = engine.getReplicationState();
+            ByteArrayOutputStream stamps = new ByteArrayOutputStream();
+            List<Quiz> quizzes = replication == null ? engine.getQuizzes()
+                    : replication.write(new DataOutputStream(stamps));
+            out.writeInt(quizzes.size());
+            for (Quiz quiz : quizzes) {
+                writeQuiz(out, quiz);
+            }
+            out.writeInt(stamps.size());
+            stamps.writeTo(out);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.write(bytes);
+            out.writeLong(crc.getValue());
+        }
+        replaceDurably(temp, SNAPSHOT_FILE);
+    }
+
+    // Users and quizzes cannot be rebuilt from anything else, so a damaged snapshot
+    // is moved aside for manual recovery rather than deleted, and the engine starts
+    // with an empty catalog instead of failing to start. Nothing is restored until
+    // the whole file has been read.
+    private void loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Map<String, String> users = new LinkedHashMap<>();
+        List<Quiz> quizzes = new ArrayList<>();
+        byte[] replication;
+        try {
+            replication = readSnapshot(bytes, users, quizzes);
+        } catch (IOException | RuntimeException e) {
+            Path damaged = directory.resolve(SNAPSHOT_FILE + ".damaged");
+            LOG.log(System.Logger.Level.ERROR, "Catalog snapshot " + file + " is damaged; moved to " + damaged
+                    + " and starting with no users or quizzes", e);
+            Files.move(file, damaged, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        for (Map.Entry<String, String> user : users.entrySet()) {
+            if (!PasswordHasher.isHash(user.getValue())) {
+                // Rewrite the snapshot with the hash the engine stores instead
+                catalogDirty.set(true);
+            }
+            engine.restoreUser(user.getKey(), user.getValue());
+        }
+        for (Quiz quiz : quizzes) {
+            engine.restoreQuiz(quiz);
+        }
+        if (replication.length > 0) {
+            engine.restoreReplicationState(replication);
+        }
+    }
+
+    // Returns the saved replication state, empty when there is none.
+    private byte[] readSnapshot(byte[] bytes, Map<String, String> users, List<Quiz> quizzes) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (bytes.length < 8 || header.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Unrecognized snapshot format");
+        }
+        int version = header.getInt();
+        if (version < 1 || version > SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int length = bytes.length;
+        if (version >= 5) {
+            length -= 8;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, Math.max(0, length));
+            if (length < 8 || crc.getValue() != ByteBuffer.wrap(bytes, length, 8).getLong()) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+        }
+        if (version < SNAPSHOT_VERSION) {
+            catalogDirty.set(true);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 8, length - 8))) {
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                users.put(in.readUTF(), in.readUTF());
+            }
+            int quizCount = in.readInt();
+            for (int i = 0; i < quizCount; i++) {
+                quizzes.add(readQuiz(in, version));
+            }
+            byte[] replication = new byte[version >= 6 ? in.readInt() : 0];
+            in.readFully(replication);
+            if (in.available() > 0) {
+                throw new IOException("Trailing bytes after the replication state");
+            }
+            return replication;
+        }
+    }
+
+    // Also the wire format for catalog replication between cluster nodes.
+    static void writeQuiz(DataOutput out, Quiz quiz) throws IOException {
+        List<Question> questions = quiz.getQuestions();
+        out.writeUTF(quiz.getTitle());
+        out.writeInt(questions.size());
+        for (Question question : questions) {
+            out.writeUTF(question.getTitle());
+            out.writeInt(question.getOptions().size());
+            for (String option : question.getOptions()) {
+                out.writeUTF(option);
+            }
+            out.writeLong(question.getCorrectMask());
+            out.writeUTF(question.getTopic());
+            out.writeDouble(question.getDiscrimination());
+            out.writeDouble(question.getDifficulty());
+            out.writeDouble(question.getGuessing());
+        }
+        QuestionPool pool = quiz.getPool();
+        out.writeBoolean(pool != null);
+        if (pool != null) {
+            out.writeBoolean(pool.isShuffleOptions());
+            out.writeInt(pool.getQuotas().size());
+            for (Map.Entry<String, Integer> quota : pool.getQuotas().entrySet()) {
+                out.writeUTF(quota.getKey());
+                out.writeInt(quota.getValue());
+            }
+        }
+        out.writeInt(quiz.getTimeLimitSeconds());
+        out.writeInt(quiz.getQuestionTimeLimitSeconds());
+        AdaptiveSettings adaptive = quiz.getAdaptive();
+        out.writeBoolean(adaptive != null);
+        if (adaptive != null) {
+            out.writeInt(adaptive.getMinQuestions());
+            out.writeInt(adaptive.getMaxQuestions());
+            out.writeDouble(adaptive.getTargetStandardError());
+        }
+    }
+
+    static Quiz readQuiz(DataInput in) throws IOException {
+        return readQuiz(in, SNAPSHOT_VERSION);
+    }
+
+    private static Quiz readQuiz(DataInput in, int version) throws IOException {
+        String quizTitle = in.readUTF();
+        int questionCount = in.readInt();
+        List<Question> questions = new ArrayList<>(questionCount);
+        for (int j = 0; j < questionCount; j++) {
+            String title = in.readUTF();
+            int optionCount = in.readInt();
+            List<String> options = new ArrayList<>(optionCount);
+            for (int k = 0; k < optionCount; k++) {
+                options.add(in.readUTF());
+            }
+            List<Integer> correct = AnswerMask.toList(in.readLong());
+            String topic = version >= 2 ? in.readUTF() : "";
+            if (version >= 4) {
+                questions.add(new Question(title, options, correct, topic,
+                        in.readDouble(), in.readDouble(), in.readDouble()));
+            } else {
+                questions.add(new Question(title, options, correct, topic));
+            }
+        }
+        QuestionPool pool = null;
+        if (version >= 2 && in.readBoolean()) {
+            boolean shuffleOptions = in.readBoolean();
+            int quotaCount = in.readInt();
+            Map<String, Integer> quotas = new LinkedHashMap<>();
+            for (int k = 0; k < quotaCount; k++) {
+                quotas.put(in.readUTF(), in.readInt());
+            }
+            pool = new QuestionPool(quotas, shuffleOptions);
+        }
+        int timeLimitSeconds = version >= 3 ? in.readInt() : 0;
+        int questionTimeLimitSeconds = version >= 3 ? in.readInt() : 0;
+        AdaptiveSettings adaptive = null;
+        if (version >= 4 && in.readBoolean()) {
+            adaptive = new AdaptiveSettings(in.readInt(), in.readInt(), in.readDouble());
+        }
+        return new Quiz(quizTitle, questions, pool, timeLimitSeconds, questionTimeLimitSeconds, adaptive);
+    }
+
+    private static byte[] encodeAttempt(QuizAttempt attempt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(attempt.getUsername());
+            out.writeUTF(attempt.getQuizTitle());
+            out.writeInt(attempt.getScore());
+            out.writeInt(attempt.getTotalQuestions());
+            out.writeLong(attempt.getEpochMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static QuizAttempt decodeAttempt(ByteBuffer record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                record.array(), record.arrayOffset() + record.position(), record.remaining()))) {
+            String username = in.readUTF();
+            String quizTitle = in.readUTF();
+            int score = in.readInt();
+            int totalQuestions = in.readInt();
+            return new QuizAttempt(username, quizTitle, score, totalQuestions, in.readLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per-candidate progress through one quiz. Replaces the closure-captured
+// index/score arrays that used to live inside takeQuiz. When the quiz has a
+// question pool the session holds only its drawn index order and seed;
+// answers are stored against the original option indices. checkpoint()
+// captures all of it so the session can be resumed after a restart or on
+// another node. On an adaptive quiz each answer updates an ability estimate
+// that picks the next question and decides when the test has measured
+// enough; a resumed adaptive session replays its answers to rebuild both.
+// On a 20-question quiz a started session retains at most 640 bytes beyond
+// the shared quiz and names, and 680 once finished with its result
+// (FootprintReport checks both).
+public class QuizSession {
+    private final String id;
+    // InternTable.USERNAMES' copy, so a session does not keep its own copy of the name
+    private final String username;
+    private final Quiz quiz;
+    private final List<Question> questions;
+    private final long seed;
+    private final int[] order;
+    private final long[] answerKey;
+    private final long[] answers;
+    private int currentQuestionIndex;
+    // Questions in this test; an adaptive test can stop before order.length
+    private int testLength;
+    private final AbilityEstimator ability;
+    private boolean finished;
+    // Timed quizzes only; deadlines are enforced here, expiry is driven by the engine's TimingWheel
+    private final long startedNanos;
+    private final long startedEpochMillis;
+    private long questionStartedNanos;
+    private boolean timedOut;
+    private QuizAttempt result;
+    private TimingWheel.Timeout quizTimeout;
+    private TimingWheel.Timeout questionTimeout;
+    // The current question as presented, reused by every poll and re-render until
+    // the candidate moves on; only positions are cached, never the whole test
+    private int presentedPosition = -1;
+    private Question presented;
+    private int[] presentedOptionOrder;
+
+    public QuizSession(String id, String username, Quiz quiz) {
+        this(id, username, quiz, 0L);
+    }
+
+    public QuizSession(String id, String username, Quiz quiz, long seed) {
+        this(id, username, quiz, seed, QuestionSampler.drawQuestions(quiz, seed),
+                System.currentTimeMillis(), 0);
+    }
+
+    // Resumes a checkpointed session; quiz must be the version it was drawn from.
+    QuizSession(SessionCheckpoint checkpoint, Quiz quiz) {
+        this(checkpoint.getSessionId(), checkpoint.getUsername(), quiz, checkpoint.getSeed(),
+                quiz.isAdaptive() ? QuestionSampler.drawQuestions(quiz, checkpoint.getSeed()) : checkpoint.getOrder().clone(),
+                checkpoint.getStartedEpochMillis(), checkpoint.getElapsedMillis());
+        int answered = checkpoint.getAnsweredCount();
+        if (ability != null) {
+            replay(checkpoint);
+        } else {
+            for (int index : order) {
+                if (index < 0 || index >= questions.size()) {
+                    throw mismatch();
+                }
+            }
+            System.arraycopy(checkpoint.getAnswers(), 0, answers, 0, answered);
+        }
+        this.currentQuestionIndex = answered;
+    }
+
+    private QuizSession(String id, String username, Quiz quiz, long seed, int[] order,
+                        long startedEpochMillis, long elapsedMillis) {
+        this.id = id;
+        this.username = InternTable.USERNAMES.canonical(username);
+        this.quiz = quiz;
+        this.questions = quiz.getQuestions();
+        this.seed = seed;
+        this.order = order;
+        this.answerKey = new long[order.length];
+        this.answers = new long[order.length];
+        // Time spent before a resume still counts against the quiz limit
+        long now = System.nanoTime();
+        this.startedNanos = now - TimeUnit.MILLISECONDS.toNanos(elapsedMillis);
+        this.startedEpochMillis = startedEpochMillis;
+        this.questionStartedNanos = now;
+        this.testLength = order.length;
+        this.ability = quiz.isAdaptive() ? new AbilityEstimator() : null;
+        for (int i = 0; i < order.length && order[i] >= 0 && order[i] < questions.size(); i++) {
+            answerKey[i] = questions.get(order[i]).getCorrectMask();
+        }
+    }
+
+    // Re-derives an adaptive session's questions from its answers. Whatever
+    // part of the order the checkpoint recorded must come out the same.
+    private void replay(SessionCheckpoint checkpoint) {
+        int[] recorded = checkpoint.getOrder();
+        int answered = checkpoint.getAnsweredCount();
+        if (recorded.length != order.length) {
+            throw mismatch();
+        }
+        for (int i = 0; i < answered; i++) {
+            if (i >= testLength || order[i] < 0 || (recorded[i] >= 0 && recorded[i] != order[i])) {
+                throw mismatch();
+            }
+            answers[i] = checkpoint.getAnswers()[i];
+            adapt(i, answerKey[i] == answers[i]);
+        }
+        if (answered < testLength && recorded[answered] >= 0 && recorded[answered] != order[answered]) {
+            throw mismatch();
+        }
+    }
+
+    private IllegalArgumentException mismatch() {
+        return new IllegalArgumentException("Checkpoint does not match quiz '" + quiz.getTitle() + "'");
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Quiz getQuiz() {
+        return quiz;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // For an adaptive quiz, the most questions still possible until it stops.
+    public synchronized int getTotalQuestions() {
+        return testLength;
+    }
+
+    // Index into quiz.getQuestions() of the question shown at a position.
+    public synchronized int getQuestionOrder(int position) {
+        return order[position];
+    }
+
+    public boolean isAdaptive() {
+        return ability != null;
+    }
+
+    // Current ability estimate on the standard-normal scale; NaN unless adaptive.
+    public synchronized double getAbility() {
+        return ability == null ? Double.NaN : ability.getTheta();
+    }
+
+    public synchronized double getStandardError() {
+        return ability == null ? Double.NaN : ability.getStandardError();
+    }
+
+    public synchronized int getCurrentQuestionIndex() {
+        return currentQuestionIndex;
+    }
+
+    public synchronized int getScore() {
+        return AnswerMask.grade(answerKey, answers, currentQuestionIndex);
+    }
+
+    public synchronized boolean isComplete() {
+        return currentQuestionIndex >= testLength;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    // Stored answer at a position, as a mask over the original option order.
+    synchronized long getAnswer(int position) {
+        return answers[position];
+    }
+
+    public synchronized SessionCheckpoint checkpoint() {
+        return new SessionCheckpoint(id, getUsername(), quiz.getTitle(), quiz.getFingerprint(), seed,
+                startedEpochMillis, getElapsedMillis(), order.clone(), answers.clone(), currentQuestionIndex);
+    }
+
+    // Ends this copy without grading because the session moved to another node.
+    synchronized boolean handOff() {
+        if (finished) {
+            return false;
+        }
+        finished = true;
+        return true;
+    }
+
+    // True when the quiz deadline ended the session rather than the candidate.
+    public synchronized boolean isTimedOut() {
+        return timedOut;
+    }
+
+    // The graded attempt once finished, otherwise null.
+    public synchronized QuizAttempt getResult() {
+        return result;
+    }
+
+    // Time left before the nearer of the quiz and question deadlines, or -1 if untimed.
+    public synchronized long getRemainingMillis() {
+        if (!quiz.isTimed()) {
+            return -1;
+        }
+        if (finished) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long remaining = Long.MAX_VALUE;
+        if (quiz.getTimeLimitSeconds() > 0) {
+            remaining = startedNanos + TimeUnit.SECONDS.toNanos(quiz.getTimeLimitSeconds()) - now;
+        }
+        if (quiz.getQuestionTimeLimitSeconds() > 0 && !isComplete()) {
+            remaining = Math.min(remaining,
+                    questionStartedNanos + TimeUnit.SECONDS.toNanos(quiz.getQuestionTimeLimitSeconds()) - now);
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining));
+    }
+
+    public synchronized Question getCurrentQuestion() {
+        if (isComplete()) {
+            return null;
+        }
+        present(currentQuestionIndex);
+        return presented;
+    }
+
+    // selectedMask is over the options as presented by getCurrentQuestion().
+    synchronized boolean submit(long selectedMask) {
+        if (finished || isComplete()) {
+            throw new IllegalStateException("Session " + id + " has no question left to answer");
+        }
+        long now = System.nanoTime();
+        if (pastDeadline(startedNanos, quiz.getTimeLimitSeconds(), now)) {
+            throw new IllegalStateException("Time is up for session " + id);
+        }
+        if (pastDeadline(questionStartedNanos, quiz.getQuestionTimeLimitSeconds(), now)) {
+            // Arrived after the question closed but before the wheel fired; counts as unanswered
+            nextQuestion(now, false);
+            return false;
+        }
+        present(currentQuestionIndex);
+        long original = QuestionSampler.toOriginalMask(selectedMask, presentedOptionOrder);
+        answers[currentQuestionIndex] = original;
+        boolean correct = answerKey[currentQuestionIndex] == original;
+        nextQuestion(now, correct);
+        return correct;
+    }
+
+    // Auto-submits an empty answer if the question at position is still open.
+    synchronized boolean timeoutQuestion(int position) {
+        if (finished || position != currentQuestionIndex || isComplete()) {
+            return false;
+        }
+        nextQuestion(System.nanoTime(), false);
+        return true;
+    }
+
+    private void nextQuestion(long now, boolean correct) {
+        if (ability != null) {
+            adapt(currentQuestionIndex, correct);
+        }
+        currentQuestionIndex++;
+        questionStartedNanos = now;
+    }
+
+    // Folds the response at position into the ability estimate, then either
+    // ends the test or picks the question for the following position.
+    private void adapt(int position, boolean correct) {
+        ability.update(questions.get(order[position]), correct);
+        int administered = position + 1;
+        AdaptiveSettings settings = quiz.getAdaptive();
+        if (administered >= testLength) {
+            return;
+        }
+        if (administered >= settings.getMinQuestions()
+                && ability.getStandardError() <= settings.getTargetStandardError()) {
+            testLength = administered;
+            return;
+        }
+        int next = QuestionSampler.selectAdaptive(quiz, seed, ability.getTheta(), order, administered);
+        if (next < 0) {
+            testLength = administered;
+            return;
+        }
+        order[administered] = next;
+        answerKey[administered] = questions.get(next).getCorrectMask();
+    }
+
+    private static boolean pastDeadline(long fromNanos, int limitSeconds, long now) {
+        return limitSeconds > 0 && now - fromNanos >= TimeUnit.SECONDS.toNanos(limitSeconds);
+    }
+
+    synchronized void setQuizTimeout(TimingWheel.Timeout timeout) {
+        quizTimeout = timeout;
+    }
+
+    // Replaces the previous question's timeout, which may still be pending.
+    synchronized void setQuestionTimeout(TimingWheel.Timeout timeout) {
+        if (questionTimeout != null) {
+            questionTimeout.cancel();
+        }
+        questionTimeout = timeout;
+    }
+
+    synchronized void cancelTimeouts() {
+        if (quizTimeout != null) {
+            quizTimeout.cancel();
+        }
+        if (questionTimeout != null) {
+            questionTimeout.cancel();
+        }
+    }
+
+    private void present(int position) {
+        if (presentedPosition == position) {
+            return;
+        }
+        Question question = questions.get(order[position]);
+        presentedOptionOrder = QuestionSampler.optionOrder(quiz, seed, position, question.getOptions().size());
+        presented = QuestionSampler.present(question, presentedOptionOrder);
+        presentedPosition = position;
+    }
+
+    // Grades the session; null if it had already finished. Unanswered questions score zero.
+    synchronized QuizAttempt finish(boolean timedOut) {
+        if (finished) {
+            return null;
+        }
+        finished = true;
+        this.timedOut = timedOut;
+        int score = AnswerMask.grade(answerKey, answers, currentQuestionIndex);
+        result = new QuizAttempt(getUsername(), quiz.getTitle(), score, testLength);
+        return result;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.demo;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only log of length-prefixed binary records: [int length][int crc32][payload].
+// A single writer thread drains every pending append into one write + fsync
+// (group commit), so concurrent callers share the cost of each force().
+public class RecordLog implements Closeable {
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_BATCH = 4096;
+
+    private final FileChannel channel;
+    private final BlockingQueue<PendingRecord> pending;
+    private final Thread writer;
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1 << 20);
+    private volatile boolean closed;
+    // Appenders between their closed check and enqueueing; the writer only
+    // stops once this is zero, so no record queued around close is stranded
+    private final AtomicInteger activeAppenders = new AtomicInteger();
+    // Set when a failed batch could not be cut back off the end of the file;
+    // appending after its partial record would put good records behind a torn one
+    private volatile IOException failure;
+    private long recordCount;
+
+    private RecordLog(FileChannel channel, int queueCapacity, long recordCount, String name) {
+        this.channel = channel;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.recordCount = recordCount;
+        this.writer = new Thread(this::writeLoop, name + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Opens (or creates) the log, hands every intact record to the replay
+    // consumer, and truncates a torn tail left by a crash before appending.
+    public static RecordLog open(Path file, int queueCapacity, Consumer<ByteBuffer> replay) throws IOException {
+        return open(file, queueCapacity, 0, replay);
+    }
+
+    // As above, but the first skipRecords records are already applied elsewhere
+    // and are stepped over without being read or checksummed.
+    public static RecordLog open(Path file, int queueCapacity, long skipRecords, Consumer<ByteBuffer> replay)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validLength = 0;
+        long records = 0;
+        try {
+            channel.position(0);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 20));
+            CRC32 crc = new CRC32();
+            long fileSize = channel.size();
+            while (validLength + HEADER_BYTES <= fileSize) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || validLength + HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+                if (records < skipRecords) {
+                    in.skipNBytes(length);
+                    validLength += HEADER_BYTES + length;
+                    records++;
+                    continue;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                replay.accept(ByteBuffer.wrap(payload));
+                validLength += HEADER_BYTES + length;
+                records++;
+            }
+        } catch (EOFException e) {
+            // Torn tail; everything up to validLength is intact.
+        }
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new RecordLog(channel, queueCapacity, records, file.getFileName().toString());
+    }
+
+    // Completes once the record is on disk. Blocks when the queue is full.
+    public CompletableFuture<Void> append(byte[] payload) {
+        activeAppenders.incrementAndGet();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Log is closed");
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(new UncheckedIOException(failure));
+            }
+            PendingRecord record = new PendingRecord(payload);
+            try {
+                pending.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                record.future.completeExceptionally(e);
+            }
+            return record.future;
+        } finally {
+            activeAppenders.decrementAndGet();
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingRecord> leftover = new ArrayList<>();
+        pending.drainTo(leftover);
+        for (PendingRecord record : leftover) {
+            record.future.completeExceptionally(new IllegalStateException("Log is closed"));
+        }
+        channel.close();
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>(MAX_BATCH);
+        CRC32 crc = new CRC32();
+        while (true) {
+            PendingRecord first;
+            try {
+                first = pending.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                if (closed && activeAppenders.get() == 0 && pending.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            pending.drainTo(batch, MAX_BATCH - 1);
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+                writeBatch(batch, crc);
+                for (PendingRecord record : batch) {
+                    record.future.complete(null);
+                }
+            } catch (IOException e) {
+                for (PendingRecord record : batch) {
+                    record.future.completeExceptionally(new UncheckedIOException(e));
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch, CRC32 crc) throws IOException {
+        int bytes = 0;
+        for (PendingRecord record : batch) {
+            bytes += HEADER_BYTES + record.payload.length;
+        }
+        if (writeBuffer.capacity() < bytes) {
+            writeBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+        }
+        writeBuffer.clear();
+        for (PendingRecord record : batch) {
+            crc.reset();
+            crc.update(record.payload);
+            writeBuffer.putInt(record.payload.length);
+            writeBuffer.putInt((int) crc.getValue());
+            writeBuffer.put(record.payload);
+        }
+        writeBuffer.flip();
+        long start = channel.position();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Drop whatever part of the batch reached the file, so the next batch
+            // starts where this one did and every caller here sees it fail
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncateFailed) {
+                e.addSuppressed(truncateFailed);
+                failure = e;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            recordCount += batch.size();
+        }
+    }
+
+    private static final class PendingRecord {
+        final byte[] payload;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingRecord(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Append-only list of attempt store rows kept as primitive ints. One writer
+// appends under the lock; readers take a consistent prefix without locking.
+class RowList {
+    private volatile int[] rows = new int[8];
+    private volatile int size;
+
+    RowList() {
+    }
+
+    // A list holding the given rows, which it takes ownership of.
+    RowList(int[] rows, int size) {
+        this.rows = rows;
+        this.size = size;
+    }
+
+    synchronized void add(int row) {
+        int[] current = rows;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+            rows = current;
+        }
+        current[size] = row;
+        size = size + 1;
+    }
+
+    // Rows go through one bulk array copy each way rather than an int at a time.
+    void writeTo(DataOutput out) throws IOException {
+        int count = size;
+        ByteBuffer bytes = ByteBuffer.allocate(count * Integer.BYTES);
+        bytes.asIntBuffer().put(rows, 0, count);
+        out.writeInt(count);
+        out.write(bytes.array());
+    }
+
+    static RowList readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        byte[] bytes = new byte[count * Integer.BYTES];
+        in.readFully(bytes);
+        int[] rows = new int[Math.max(8, count)];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(rows, 0, count);
+        return new RowList(rows, count);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Rows published so far; elements past size() are not meaningful.
+    int[] rows() {
+        return rows;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.demo;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Everything needed to rebuild a QuizSession elsewhere: which quiz version it
+// was drawn from (by content fingerprint), the drawn question order, the seed
+// that fixes option order, the answers so far as original-option bitmasks, and
+// how long the candidate has been at it. A 20-question session encodes to
+// about 250 bytes; after that each answer is journalled on its own. The copy
+// handed to a client is signed with a server key, since it carries the
+// username, answers and elapsed time that resuming trusts.
+public final class SessionCheckpoint {
+    private static final int FORMAT = 1;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+
+    private final String sessionId;
+    private final String username;
+    private final String quizTitle;
+    private final long quizFingerprint;
+    private final long seed;
+    private final long startedEpochMillis;
+    private final int[] order;
+    private final long[] answers;
+    // Advanced in place by SessionJournal while it replays answer records
+    private long elapsedMillis;
+    private int answeredCount;
+    // Set when read from a signed copy, which it then identifies
+    private String signature;
+
+    SessionCheckpoint(String sessionId, String username, String quizTitle, long quizFingerprint, long seed,
+                      long startedEpochMillis, long elapsedMillis, int[] order, long[] answers, int answeredCount) {
+        this.sessionId = sessionId;
+        this.username = username;
+        this.quizTitle = quizTitle;
+        this.quizFingerprint = quizFingerprint;
+        this.seed = seed;
+        this.startedEpochMillis = startedEpochMillis;
+        this.elapsedMillis = elapsedMillis;
+        this.order = order;
+        this.answers = answers;
+        this.answeredCount = answeredCount;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getQuizTitle() {
+        return quizTitle;
+    }
+
+    public long getQuizFingerprint() {
+        return quizFingerprint;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getStartedEpochMillis() {
+        return startedEpochMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int getTotalQuestions() {
+        return order.length;
+    }
+
+    public int getAnsweredCount() {
+        return answeredCount;
+    }
+
+    int[] getOrder() {
+        return order;
+    }
+
+    long[] getAnswers() {
+        return answers;
+    }
+
+    // Signature of the signed copy this was read from, or null.
+    String getSignature() {
+        return signature;
+    }
+
+    void applyAnswer(int position, long mask, long elapsedMillis) {
+        if (position < 0 || position >= order.length) {
+            return;
+        }
+        answers[position] = mask;
+        answeredCount = Math.max(answeredCount, position + 1);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // The checkpoint and when it was issued, followed by an HMAC-SHA256 over both,
+    // so a client can hold it but not alter it.
+    public byte[] toSignedBytes(byte[] key, long issuedEpochMillis) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + order.length * 12 + MAC_BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out);
+            out.writeLong(issuedEpochMillis);
+            out.write(mac(key, bytes.toByteArray(), bytes.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(FORMAT);
+        out.writeUTF(sessionId);
+        out.writeUTF(username);
+        out.writeUTF(quizTitle);
+        out.writeLong(quizFingerprint);
+        out.writeLong(seed);
+        out.writeLong(startedEpochMillis);
+        out.writeLong(elapsedMillis);
+        out.writeInt(order.length);
+        for (int index : order) {
+            out.writeInt(index);
+        }
+        out.writeInt(answeredCount);
+        for (int i = 0; i < answeredCount; i++) {
+            out.writeLong(answers[i]);
+        }
+    }
+
+    // Reads a copy made by toSignedBytes with the same key. Throws SecurityException
+    // if it was altered or signed with another key, IllegalStateException if it was
+    // issued more than maxAgeMillis ago.
+    public static SessionCheckpoint fromSignedBytes(byte[] bytes, byte[] key, long maxAgeMillis) {
+        int length = bytes.length - MAC_BYTES;
+        if (length <= 0 || !MessageDigest.isEqual(mac(key, bytes, length),
+                Arrays.copyOfRange(bytes, length, bytes.length))) {
+            throw new SecurityException("Session checkpoint signature does not match");
+        }
+        SessionCheckpoint checkpoint;
+        long issuedEpochMillis;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+            checkpoint = read(in);
+            issuedEpochMillis = in.readLong();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed session checkpoint", e);
+        }
+        if (System.currentTimeMillis() - issuedEpochMillis > maxAgeMillis) {
+            throw new IllegalStateException("Session checkpoint for " + checkpoint.getSessionId() + " has expired");
+        }
+        checkpoint.signature = Base64.getEncoder().encodeToString(Arrays.copyOfRange(bytes, length, bytes.length));
+        return checkpoint;
+    }
+
+    private static byte[] mac(byte[] key, byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    static SessionCheckpoint read(DataInputStream in) throws IOException {
+        if (in.readByte() != FORMAT) {
+            throw new IOException("Unknown session checkpoint format");
+        }
+        String sessionId = in.readUTF();
+        String username = in.readUTF();
+        String quizTitle = in.readUTF();
+        long quizFingerprint = in.readLong();
+        long seed = in.readLong();
+        long startedEpochMillis = in.readLong();
+        long elapsedMillis = in.readLong();
+        int questionCount = in.readInt();
+        if (questionCount < 0 || questionCount > 1 << 20) {
+            throw new IOException("Bad question count " + questionCount);
+        }
+        int[] order = new int[questionCount];
+        for (int i = 0; i < questionCount; i++) {
+            order[i] = in.readInt();
+        }
+        int answeredCount = in.readInt();
+        if (answeredCount < 0 || answeredCount > questionCount) {
+            throw new IOException("Bad answered count " + answeredCount);
+        }
+        long[] answers = new long[questionCount];
+        for (int i = 0; i < answeredCount; i++) {
+            answers[i] = in.readLong();
+        }
+        return new SessionCheckpoint(sessionId, username, quizTitle, quizFingerprint, seed,
+                startedEpochMillis, elapsedMillis, order, answers, answeredCount);
+    }
+}
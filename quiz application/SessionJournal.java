@@ -0,0 +1,158 @@
+package com.example.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Write-ahead journal of in-progress sessions, so a crash or restart does not
+// lose a half-taken quiz. A session is written in full once when it starts,
+// then each answer is a ~40 byte record, appended without waiting for the
+// fsync: RecordLog's group commit shares one force() across every answer in
+// flight, which keeps up with tens of thousands of answers per second. A
+// crash can lose the answers of the last few milliseconds. The engine waits
+// for start records (and the end record of a handoff), so it does not lose
+// a session the candidate has been given.
+// On open the journal is replayed and rewritten with only unfinished,
+// recent sessions, so it stays proportional to live sessions.
+public class SessionJournal implements Closeable {
+    static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final int LOG_QUEUE_CAPACITY = 65536;
+    private static final byte STARTED = 1;
+    private static final byte ANSWERED = 2;
+    private static final byte ENDED = 3;
+
+    private final RecordLog log;
+    // Unfinished sessions found on open, until resumed
+    private final Map<String, SessionCheckpoint> recovered = new ConcurrentHashMap<>();
+
+    private SessionJournal(Path file, long maxAgeMillis) throws IOException {
+        RecordLog.open(file, LOG_QUEUE_CAPACITY, this::replay).close();
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        recovered.values().removeIf(checkpoint -> checkpoint.getStartedEpochMillis() < cutoff);
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(compacted);
+        try (RecordLog rewrite = RecordLog.open(compacted, LOG_QUEUE_CAPACITY, record -> { })) {
+            for (SessionCheckpoint checkpoint : recovered.values()) {
+                rewrite.append(encodeStarted(checkpoint));
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.log = RecordLog.open(file, LOG_QUEUE_CAPACITY, recovered.size(), record -> { });
+    }
+
+    static SessionJournal open(Path file) throws IOException {
+        return new SessionJournal(file, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public List<SessionCheckpoint> getRecovered(String username) {
+        List<SessionCheckpoint> sessions = new ArrayList<>();
+        for (SessionCheckpoint checkpoint : recovered.values()) {
+            if (checkpoint.getUsername().equals(username)) {
+                sessions.add(checkpoint);
+            }
+        }
+        return sessions;
+    }
+
+    public int getRecoveredCount() {
+        return recovered.size();
+    }
+
+    // Claims a recovered session of this user for resuming; null if there is none.
+    SessionCheckpoint take(String sessionId, String username) {
+        SessionCheckpoint[] taken = new SessionCheckpoint[1];
+        recovered.computeIfPresent(sessionId, (id, checkpoint) -> {
+            if (!checkpoint.getUsername().equals(username)) {
+                return checkpoint;
+            }
+            taken[0] = checkpoint;
+            return null;
+        });
+        return taken[0];
+    }
+
+    // Completes once the session is on disk.
+    CompletableFuture<Void> started(SessionCheckpoint checkpoint) {
+        return log.append(encodeStarted(checkpoint));
+    }
+
+    void answered(String sessionId, int position, long mask, long elapsedMillis) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(24 + sessionId.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ANSWERED);
+            out.writeUTF(sessionId);
+            out.writeInt(position);
+            out.writeLong(mask);
+            out.writeLong(elapsedMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.append(bytes.toByteArray());
+    }
+
+    // Finished, timed out or handed to another node. Completes once on disk.
+    CompletableFuture<Void> ended(String sessionId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + sessionId.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ENDED);
+            out.writeUTF(sessionId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return log.append(bytes.toByteArray());
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private static byte[] encodeStarted(SessionCheckpoint checkpoint) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + checkpoint.getTotalQuestions() * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(STARTED);
+            checkpoint.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void replay(ByteBuffer record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                record.array(), record.arrayOffset() + record.position(), record.remaining()))) {
+            byte type = in.readByte();
+            if (type == STARTED) {
+                SessionCheckpoint checkpoint = SessionCheckpoint.read(in);
+                recovered.put(checkpoint.getSessionId(), checkpoint);
+            } else if (type == ANSWERED) {
+                SessionCheckpoint checkpoint = recovered.get(in.readUTF());
+                int position = in.readInt();
+                long mask = in.readLong();
+                long elapsedMillis = in.readLong();
+                if (checkpoint != null) {
+                    checkpoint.applyAnswer(position, mask, elapsedMillis);
+                }
+            } else if (type == ENDED) {
+                recovered.remove(in.readUTF());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
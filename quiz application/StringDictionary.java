@@ -0,0 +1,113 @@
+package com.example.demo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dictionary encoding for repeated strings (usernames, quiz titles).
+// Ids are dense and assigned in insertion order; new entries are appended to
+// the backing file so ids stay stable across restarts.
+class StringDictionary implements Closeable {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int size;
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+
+    StringDictionary(Path path) throws IOException {
+        if (Files.exists(path)) {
+            long complete = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    String value = in.readUTF();
+                    add(value);
+                    complete += encodedLength(value);
+                }
+            } catch (EOFException | UTFDataFormatException e) {
+                // End of dictionary, or an entry torn by a crash mid-append
+            }
+            // Drop a torn entry so the next append does not land after it
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                if (channel.size() > complete) {
+                    channel.truncate(complete);
+                    channel.force(true);
+                }
+            }
+        }
+        this.file = new FileOutputStream(path.toFile(), true);
+        this.out = new DataOutputStream(new BufferedOutputStream(file));
+    }
+
+    int idOf(String value) throws IOException {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            out.writeUTF(value);
+            out.flush();
+            return add(value);
+        }
+    }
+
+    // Id of an existing entry, or -1.
+    int find(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    String valueOf(int id) {
+        return values[id];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void force() throws IOException {
+        out.flush();
+        file.getFD().sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // Bytes writeUTF uses for value: a two-byte length and modified UTF-8.
+    private static int encodedLength(String value) {
+        int length = 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    private synchronized int add(String value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        // Publish the id only after the value is readable through values
+        ids.put(value, size);
+        return size++;
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Hierarchical timing wheel: one thread serves every timeout, so a deadline
+// costs a list insert instead of a ScheduledExecutorService task. Level 0 has
+// one slot per tick; each higher level has one slot per full turn of the
+// level below and cascades its slot down when that turn starts. Scheduling,
+// expiry and cancellation are O(1); a timeout moves down at most once per level.
+// Wheel state is touched only by the worker thread. Other threads hand new
+// and cancelled timeouts over through lock-free queues, drained each tick.
+public final class TimingWheel implements Closeable {
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Executor executor;
+    private final Bucket[][] wheels = new Bucket[LEVELS][SLOTS];
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private volatile boolean closed;
+    // Worker thread only
+    private long currentTick;
+
+    // Expired tasks run on executor so a slow task never stalls the wheel.
+    public TimingWheel(long tickMillis, Executor executor) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.executor = executor;
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Timeout schedule(long delay, TimeUnit unit, Runnable task) {
+        if (closed) {
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+        long delayNanos = unit.toNanos(delay);
+        if (delayNanos / tickNanos >= (1L << (SLOT_BITS * LEVELS)) - SLOTS) {
+            throw new IllegalArgumentException("Delay too long: " + delay + " " + unit);
+        }
+        // First tick boundary at or after the deadline, counted from start so it
+        // does not depend on when the worker gets round to placing the timeout
+        long deadlineTick = (System.nanoTime() - startNanos + Math.max(0, delayNanos) + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(this, task, deadlineTick);
+        scheduled.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // Timeouts waiting to fire, including ones not yet placed on the wheel.
+    public int getScheduledCount() {
+        return scheduled.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            long nextTickNanos = startNanos + (currentTick + 1) * tickNanos;
+            long waitNanos = nextTickNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+            // Catch up on every tick that has passed, e.g. after a GC pause
+            long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+            while (currentTick < targetTick && !closed) {
+                transferPending();
+                removeCancelled();
+                advance();
+            }
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() == Timeout.PENDING) {
+                // The current tick's slot has already been processed
+                place(timeout, currentTick + 1);
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void advance() {
+        currentTick++;
+        // At the start of a level's turn, spread its next slot over the levels below
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            Bucket bucket = wheels[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK];
+            Timeout timeout;
+            while ((timeout = bucket.poll()) != null) {
+                place(timeout, currentTick);
+            }
+        }
+        Bucket due = wheels[0][(int) currentTick & SLOT_MASK];
+        Timeout timeout;
+        while ((timeout = due.poll()) != null) {
+            if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                scheduled.decrementAndGet();
+                executor.execute(timeout.task);
+            }
+        }
+    }
+
+    // Lowest level whose current turn contains the deadline.
+    private void place(Timeout timeout, long earliestTick) {
+        long deadline = Math.max(timeout.deadlineTick, earliestTick);
+        int level = 0;
+        while (level < LEVELS - 1
+                && (deadline >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+        wheels[level][slot].add(timeout);
+    }
+
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Wheel thread only
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        // False if the task already fired or was cancelled before.
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.scheduled.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    // Intrusive doubly linked list so cancelled timeouts unlink in O(1).
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        Timeout poll() {
+            Timeout timeout = head;
+            if (timeout != null) {
+                remove(timeout);
+            }
+            return timeout;
+        }
+    }
+}